@@ -0,0 +1,88 @@
+package jojomodding.parsergenerator.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import jojomodding.parsergenerator.Main;
+import jojomodding.parsergenerator.converter.ParserGenerator;
+import jojomodding.parsergenerator.grammar.Grammar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building a PDA for each grammar in {@link Main}, for each kind of parser.
+ * <p>
+ * Not every grammar is of every kind. For those combinations, the time until the generator finds a conflict and gives up is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeneratorBenchmark {
+
+    @Param({"TE", "ex22", "ex33", "notLALR", "anbn", "LR2", "sameAB1", "sameAB2"})
+    public String grammar;
+
+    /**
+     * The kind of parser, as the arguments to {@link ParserGenerator#ParserGenerator(Grammar, int, int)}.
+     */
+    @Param({"SLR(0)", "LALR(1)", "LR(1)", "LALR(2)", "LR(2)"})
+    public String kind;
+
+    private Grammar<Character> input;
+    private int lrn;
+    private int lak;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setup() throws ReflectiveOperationException {
+        input = (Grammar<Character>) Main.class.getMethod(grammar).invoke(null);
+        switch (kind) {
+            case "SLR(0)" -> {
+                lrn = 0;
+                lak = -1;
+            }
+            case "LALR(1)" -> {
+                lrn = 1;
+                lak = 0;
+            }
+            case "LR(1)" -> {
+                lrn = 1;
+                lak = 1;
+            }
+            case "LALR(2)" -> {
+                lrn = 2;
+                lak = 0;
+            }
+            case "LR(2)" -> {
+                lrn = 2;
+                lak = 2;
+            }
+            default -> throw new IllegalArgumentException("Unknown kind " + kind);
+        }
+    }
+
+    /**
+     * Builds the PDA.
+     *
+     * @return the PDA, or the exception if the grammar is not of this kind.
+     */
+    @Benchmark
+    public Object build() {
+        try {
+            return new ParserGenerator<>(input, lrn, lak).build();
+        } catch (IllegalArgumentException e) {
+            return e;
+        }
+    }
+}
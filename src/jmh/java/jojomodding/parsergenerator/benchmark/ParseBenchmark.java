@@ -0,0 +1,94 @@
+package jojomodding.parsergenerator.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import jojomodding.parsergenerator.Main;
+import jojomodding.parsergenerator.converter.ParserGenerator;
+import jojomodding.parsergenerator.parsed.AbstractSyntax;
+import jojomodding.parsergenerator.pda.PushDownAutomaton;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link PushDownAutomaton#run(List)} on inputs of increasing size, to show how parsing scales.
+ * The inputs are generated once per trial, from a fixed seed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+    /**
+     * The language, i.e. a grammar from {@link Main}.
+     */
+    @Param({"TE", "anbn", "LR2", "sameAB1"})
+    public String language;
+
+    /**
+     * The approximate number of tokens.
+     */
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private PushDownAutomaton<Character> pda;
+    private List<Character> input;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(size);
+        switch (language) {
+            case "TE" -> {
+                pda = new ParserGenerator<>(Main.TE(), 1, 0).build();
+                input = new ArrayList<>();
+                Main.TElexer().kinds(PipelineBenchmark.expression(size * 3, random)).forEachRemaining(input::add);
+            }
+            case "anbn" -> {
+                pda = new ParserGenerator<>(Main.anbn(), 1, 0).build();
+                input = new ArrayList<>(Collections.nCopies(size / 2, 'a'));
+                input.addAll(Collections.nCopies(size / 2, 'b'));
+            }
+            case "LR2" -> {
+                pda = new ParserGenerator<>(Main.LR2(), 2, 2).build();
+                input = new ArrayList<>();
+                while (input.size() < size) {
+                    input.add('a');
+                    input.add('b');
+                    for (int i = random.nextInt(4); i > 0; i--) {
+                        input.add('a');
+                    }
+                    if (random.nextBoolean()) {
+                        input.add('c');
+                    }
+                }
+            }
+            case "sameAB1" -> {
+                pda = new ParserGenerator<>(Main.sameAB1(), 1, 0).build();
+                input = new ArrayList<>(Collections.nCopies(size / 2, 'a'));
+                input.addAll(Collections.nCopies(size / 2, 'b'));
+                Collections.shuffle(input, random);
+            }
+            default -> throw new IllegalArgumentException("Unknown language " + language);
+        }
+    }
+
+    @Benchmark
+    public AbstractSyntax<Character> run() {
+        return pda.run(input);
+    }
+}
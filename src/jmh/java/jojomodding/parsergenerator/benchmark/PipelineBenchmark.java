@@ -0,0 +1,85 @@
+package jojomodding.parsergenerator.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import jojomodding.parsergenerator.Main;
+import jojomodding.parsergenerator.converter.ParserGenerator;
+import jojomodding.parsergenerator.lexer.Lexer;
+import jojomodding.parsergenerator.parsed.AbstractSyntax;
+import jojomodding.parsergenerator.pda.PipelinedParser;
+import jojomodding.parsergenerator.pda.PushDownAutomaton;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares lexing and parsing on one thread with the {@link PipelinedParser}, on large inputs for the TE grammar.
+ * Both benchmarks lex the same input, so the difference is how much lexing and parsing overlap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+
+    /**
+     * The approximate number of characters of the input.
+     */
+    @Param({"10000", "1000000", "16000000"})
+    public int size;
+
+    private PushDownAutomaton<Character> pda;
+    private PipelinedParser<Character> pipelined;
+    private Lexer<Character> lexer;
+    private String input;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        pda = new ParserGenerator<>(Main.TE(), 1, 1).build();
+        pipelined = new PipelinedParser<>(pda);
+        lexer = Main.TElexer();
+        input = expression(size, new Random(size));
+    }
+
+    @Benchmark
+    public AbstractSyntax<Character> sequential() {
+        return pda.run(lexer.kinds(input));
+    }
+
+    @Benchmark
+    public AbstractSyntax<Character> pipelined() {
+        return pipelined.run(lexer.kinds(input));
+    }
+
+    /**
+     * Generates an arithmetic expression in the language of {@link Main#TElexer()}.
+     *
+     * @param length the approximate length.
+     * @param random the source of randomness.
+     * @return the expression.
+     */
+    static String expression(int length, Random random) {
+        StringBuilder sb = new StringBuilder(length + 64);
+        sb.append(random.nextInt(1000));
+        while (sb.length() < length) {
+            sb.append(random.nextBoolean() ? " + " : " * ");
+            if (random.nextInt(4) == 0) {
+                sb.append('(').append(random.nextInt(100000)).append(" + ").append(random.nextInt(10)).append(')');
+            } else {
+                sb.append(random.nextInt(1000000));
+            }
+        }
+        return sb.toString();
+    }
+}
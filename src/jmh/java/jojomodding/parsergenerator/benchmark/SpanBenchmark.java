@@ -0,0 +1,66 @@
+package jojomodding.parsergenerator.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import jojomodding.parsergenerator.Main;
+import jojomodding.parsergenerator.converter.ParserGenerator;
+import jojomodding.parsergenerator.parsed.AbstractSyntax;
+import jojomodding.parsergenerator.pda.PushDownAutomaton;
+import jojomodding.parsergenerator.pda.SpanTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the overhead of recording spans, by comparing {@link PushDownAutomaton#run(java.util.Iterator)} with
+ * {@link PushDownAutomaton#runWithSpans(java.util.Iterator, SpanTable)} on the same tokens of the TE grammar.
+ * The tokens are lexed once per trial, so only parsing is measured. Since the span table is reused, tracking spans
+ * should not allocate more per run, which the GC profiler of the {@code jmh} task shows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpanBenchmark {
+
+    /**
+     * The approximate number of characters of the input.
+     */
+    @Param({"10000", "1000000", "16000000"})
+    public int size;
+
+    private PushDownAutomaton<Character> pda;
+    private List<Character> tokens;
+    private SpanTable spans;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        pda = new ParserGenerator<>(Main.TE(), 1, 1).build();
+        tokens = new ArrayList<>();
+        Main.TElexer().kinds(PipelineBenchmark.expression(size, new Random(size))).forEachRemaining(tokens::add);
+        spans = new SpanTable();
+    }
+
+    @Benchmark
+    public AbstractSyntax<Character> run() {
+        return pda.run(tokens.iterator());
+    }
+
+    @Benchmark
+    public AbstractSyntax<Character> runWithSpans() {
+        return pda.runWithSpans(tokens.iterator(), spans);
+    }
+}
@@ -0,0 +1,86 @@
+package jojomodding.parsergenerator.benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import jojomodding.parsergenerator.converter.ParserGenerator;
+import jojomodding.parsergenerator.grammar.Grammar;
+import jojomodding.parsergenerator.grammar.GrammarGenerator;
+import jojomodding.parsergenerator.grammar.GrammarGenerator.Recursion;
+import jojomodding.parsergenerator.grammar.SentenceGenerator;
+import jojomodding.parsergenerator.parsed.AbstractSyntax;
+import jojomodding.parsergenerator.pda.PushDownAutomaton;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building and running LALR(1) parsers for random grammars of increasing size, from a {@link GrammarGenerator}.
+ * The grammars are guaranteed to be LR(1), and the inputs are random sentences from a {@link SentenceGenerator}.
+ * <p>
+ * Building large grammars takes seconds, so each build is timed once.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class SyntheticBenchmark {
+
+    /**
+     * The number of rules. There are a quarter as many non-terminals.
+     */
+    @Param({"10", "100", "1000", "10000"})
+    public int rules;
+
+    @Param({"RIGHT", "MIXED"})
+    public Recursion recursion;
+
+    /**
+     * The length of the input. Counting the sentences of the largest grammars up to this length takes hundreds of megabytes,
+     * so longer inputs are only measured on request.
+     */
+    @Param({"1000"})
+    public int length;
+
+    private Grammar<Character> grammar;
+    private PushDownAutomaton<Character> pda;
+    private List<Character> input;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        grammar = new GrammarGenerator().nonTerminals(Math.max(1, rules / 4)).rules(rules).terminals(16).recursion(recursion)
+                .guaranteeLR(true).generate(new Random(rules));
+        pda = new ParserGenerator<>(grammar, 1, 0).build();
+        SentenceGenerator<Character> sentences = new SentenceGenerator<>(grammar, length);
+        int n = length;
+        while (n > 0 && !sentences.hasSentence(n)) {
+            n--;
+        }
+        input = sentences.generate(n, new Random(length));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public PushDownAutomaton<Character> build() {
+        return new ParserGenerator<>(grammar, 1, 0).build();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public AbstractSyntax<Character> run() {
+        return pda.run(input);
+    }
+}
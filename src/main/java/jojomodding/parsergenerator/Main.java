@@ -1,16 +1,23 @@
 package jojomodding.parsergenerator;
 
+import static jojomodding.parsergenerator.grammar.ConcatenatingFormatter.concatenating;
 import static jojomodding.parsergenerator.grammar.NonTerminal.n;
 import static jojomodding.parsergenerator.grammar.ProductionRule.of;
 import static jojomodding.parsergenerator.grammar.Terminal.t;
+import static jojomodding.parsergenerator.lexer.TokenDefinition.literal;
+import static jojomodding.parsergenerator.lexer.TokenDefinition.skip;
+import static jojomodding.parsergenerator.lexer.TokenDefinition.token;
 
 import java.util.List;
 import java.util.Map;
 import jojomodding.parsergenerator.converter.ParserGenerator;
 import jojomodding.parsergenerator.grammar.Grammar;
+import jojomodding.parsergenerator.grammar.Precedence.Associativity;
 import jojomodding.parsergenerator.grammar.ProductionItem;
 import jojomodding.parsergenerator.grammar.ProductionRule;
 import jojomodding.parsergenerator.grammar.Terminal;
+import jojomodding.parsergenerator.lexer.Lexer;
+import jojomodding.parsergenerator.lexer.LexerGenerator;
 import jojomodding.parsergenerator.pda.PushDownAutomaton;
 import jojomodding.parsergenerator.pda.action.Action;
 import jojomodding.parsergenerator.pda.action.ActionAccept;
@@ -31,25 +38,56 @@ public class Main {
 //        System.out.println(pg.run("aec".chars().mapToObj(x -> (char) x).toList()));
 //        var pg = new ParserGenerator<>(ex22(), 1).build();
 //        System.out.println(pg.run("cdeecddcaaccd".chars().mapToObj(x -> (char) x).toList()));
+//        pg = new ParserGenerator<>(TE(), 1, 1).build();
+//        System.out.println(pg.run(TElexer().kinds("12 * 3 + (45 + 6)")));
 //        var pg = new ParserGenerator<>(sameAB2(), 1).build();
 //        System.out.println(pg.run("aabbbbaa".chars().mapToObj(x -> (char) x).toList()));
-        var pglalr = new ParserGenerator<>(anbn(), 1, 1).build();
-        var pg = new ParserGenerator<>(anbn(), 1, 0).build();
-        var pgslr = new ParserGenerator<>(anbn(), 0, -1).build();
+        var pglalr = new ParserGenerator<>(anbn(), 1, 1).build(System.out::println);
+        var pg = new ParserGenerator<>(anbn(), 1, 0).build(System.out::println);
+        var pgslr = new ParserGenerator<>(anbn(), 0, -1).build(System.out::println);
 //        new ParserGenerator<>(anbn(), 0).build();
     }
 
     public static Grammar<Character> TE() {
         Grammar<Character> ETF = new Grammar<>(List.of("E", "T", "F"), "E");
-        ETF.addProduction("E", new ProductionRule<>((x,y) -> y.get(0), n("T")));
-        ETF.addProduction("E", new ProductionRule<>((x,y) -> "(" + y.get(0) + "+" + y.get(2) + ")", n("E"), t('+'), n("T")));
-        ETF.addProduction("T", new ProductionRule<>((x,y) -> y.get(0), n("F")));
-        ETF.addProduction("T", new ProductionRule<>((x,y) -> "(" + y.get(0) + "*" + y.get(2) + ")", n("T"), t('*'), n("F")));
-        ETF.addProduction("F", new ProductionRule<>((x,y) -> y.get(1), t('('), n("E"), t(')')));
-        ETF.addProduction("F", new ProductionRule<>((x,y) -> "0", t('0')));
+        ETF.addProduction("E", new ProductionRule<>(concatenating((x,y) -> y.get(0)), n("T")));
+        ETF.addProduction("E", new ProductionRule<>(concatenating((x,y) -> "(" + y.get(0) + "+" + y.get(2) + ")"), n("E"), t('+'), n("T")));
+        ETF.addProduction("T", new ProductionRule<>(concatenating((x,y) -> y.get(0)), n("F")));
+        ETF.addProduction("T", new ProductionRule<>(concatenating((x,y) -> "(" + y.get(0) + "*" + y.get(2) + ")"), n("T"), t('*'), n("F")));
+        ETF.addProduction("F", new ProductionRule<>(concatenating((x,y) -> y.get(1)), t('('), n("E"), t(')')));
+        ETF.addProduction("F", new ProductionRule<>(concatenating((x,y) -> "0"), t('0')));
         return ETF;
     }
 
+    /**
+     * The language of {@link #TE()} as a single ambiguous level, E -> E + E | E * E | ( E ) | 0, made deterministic by declaring
+     * + and * left-associative, with * binding tighter. It results in the same trees with fewer states and no unit reductions.
+     */
+    public static Grammar<Character> TEflat() {
+        Grammar<Character> E = new Grammar<>(List.of("E"), "E");
+        E.addProduction("E", new ProductionRule<>(concatenating((x,y) -> "(" + y.get(0) + "+" + y.get(2) + ")"), n("E"), t('+'), n("E")));
+        E.addProduction("E", new ProductionRule<>(concatenating((x,y) -> "(" + y.get(0) + "*" + y.get(2) + ")"), n("E"), t('*'), n("E")));
+        E.addProduction("E", new ProductionRule<>(concatenating((x,y) -> y.get(1)), t('('), n("E"), t(')')));
+        E.addProduction("E", new ProductionRule<>(concatenating((x,y) -> "0"), t('0')));
+        E.declarePrecedence(Associativity.LEFT, '+');
+        E.declarePrecedence(Associativity.LEFT, '*');
+        return E;
+    }
+
+    /**
+     * A lexer for the language of {@link #TE()}, which turns each number into a single '0'.
+     */
+    public static Lexer<Character> TElexer() {
+        return new LexerGenerator<>(
+                token('0', "[0-9]+"),
+                literal('+', "+"),
+                literal('*', "*"),
+                literal('(', "("),
+                literal(')', ")"),
+                skip("\\s+")
+        ).build();
+    }
+
     public static Grammar<Character> ex22() {
         Grammar<Character> g = new Grammar<Character>(
                 List.of(n("S"), n("A"), n("B"), n("C"), n("D"), n("H"), n("K")),
@@ -0,0 +1,69 @@
+package jojomodding.parsergenerator.converter;
+
+/**
+ * Thrown when the construction of a parser exceeds its {@link ConstructionBudget budget} or is cancelled.
+ */
+public class ConstructionAbortedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Why the construction was aborted.
+     */
+    public enum Reason {
+        /**
+         * The automaton has too many states.
+         */
+        STATES,
+        /**
+         * The closures added too many items.
+         */
+        ITEMS,
+        /**
+         * The First() and Follow() sets are too large.
+         */
+        LOOKAHEADS,
+        /**
+         * The deadline passed.
+         */
+        DEADLINE,
+        /**
+         * The construction was cancelled, or the constructing thread was interrupted.
+         */
+        CANCELLED
+    }
+
+    private final Reason reason;
+    private final ConstructionStatistics statistics;
+
+    /**
+     * Creates a new exception.
+     *
+     * @param reason     why the construction was aborted.
+     * @param message    what was exceeded.
+     * @param statistics how far the construction had come.
+     */
+    public ConstructionAbortedException(Reason reason, String message, ConstructionStatistics statistics) {
+        super(message + " (" + statistics + ")");
+        this.reason = reason;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Gets why the construction was aborted.
+     *
+     * @return the reason.
+     */
+    public Reason getReason() {
+        return reason;
+    }
+
+    /**
+     * Gets how far the construction had come when it was aborted.
+     *
+     * @return the statistics.
+     */
+    public ConstructionStatistics getStatistics() {
+        return statistics;
+    }
+}
@@ -0,0 +1,137 @@
+package jojomodding.parsergenerator.converter;
+
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Limits how much work a {@link ParserGenerator} may do. LR(k) automata for k &gt;= 2 can be exponentially large, so a parser
+ * generator given an untrusted grammar should have a budget.
+ * <p>
+ * The budget is checked while computing the First() and Follow() sets, closures and the automaton. When it is exceeded, a
+ * {@link ConstructionAbortedException} is thrown. Construction is also aborted when the cancellation signal is raised or the
+ * constructing thread is interrupted. By default, there are no limits.
+ */
+public final class ConstructionBudget {
+
+    private int maxStates = Integer.MAX_VALUE;
+    private long maxItems = Long.MAX_VALUE;
+    private long maxLookaheads = Long.MAX_VALUE;
+    private Duration timeout = null;
+    private BooleanSupplier cancelled = () -> false;
+    private Consumer<ConstructionStatistics> progress = s -> {};
+
+    /**
+     * Sets the maximal number of states of the LR automaton.
+     *
+     * @param maxStates the maximal number of states.
+     * @return this budget.
+     */
+    public ConstructionBudget maxStates(int maxStates) {
+        if (maxStates <= 0) {
+            throw new IllegalArgumentException("Invalid state limit " + maxStates);
+        }
+        this.maxStates = maxStates;
+        return this;
+    }
+
+    /**
+     * Sets the maximal number of items added to states while computing closures.
+     *
+     * @param maxItems the maximal number of items.
+     * @return this budget.
+     */
+    public ConstructionBudget maxItems(long maxItems) {
+        if (maxItems <= 0) {
+            throw new IllegalArgumentException("Invalid item limit " + maxItems);
+        }
+        this.maxItems = maxItems;
+        return this;
+    }
+
+    /**
+     * Sets the maximal total size of the First() and Follow() sets, which grows exponentially with the lookahead.
+     *
+     * @param maxLookaheads the maximal number of lookahead words.
+     * @return this budget.
+     */
+    public ConstructionBudget maxLookaheads(long maxLookaheads) {
+        if (maxLookaheads <= 0) {
+            throw new IllegalArgumentException("Invalid lookahead limit " + maxLookaheads);
+        }
+        this.maxLookaheads = maxLookaheads;
+        return this;
+    }
+
+    /**
+     * Sets how long the construction may take, measured from the creation of the parser generator. For a PDA that is
+     * {@link ParserGenerator#buildLazy() built lazily}, this also limits how long building each state during a run may take.
+     *
+     * @param timeout the time limit.
+     * @return this budget.
+     */
+    public ConstructionBudget timeout(Duration timeout) {
+        if (timeout.isNegative()) {
+            throw new IllegalArgumentException("Invalid timeout " + timeout);
+        }
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * Sets a signal that cancels the construction once it returns true. It is polled frequently, so it should be cheap.
+     * It does not cancel the runs of a PDA that is built lazily.
+     *
+     * @param cancelled the signal.
+     * @return this budget.
+     */
+    public ConstructionBudget cancelWhen(BooleanSupplier cancelled) {
+        this.cancelled = cancelled;
+        return this;
+    }
+
+    /**
+     * Sets a callback that is told about the progress after each round of First()/Follow() computation and each new state.
+     *
+     * @param progress the callback.
+     * @return this budget.
+     */
+    public ConstructionBudget onProgress(Consumer<ConstructionStatistics> progress) {
+        this.progress = progress;
+        return this;
+    }
+
+    int getMaxStates() {
+        return maxStates;
+    }
+
+    long getMaxItems() {
+        return maxItems;
+    }
+
+    long getMaxLookaheads() {
+        return maxLookaheads;
+    }
+
+    /**
+     * Gets the time limit in nanoseconds, saturated at Long.MAX_VALUE.
+     */
+    long getTimeoutNanos() {
+        if (timeout == null) {
+            return Long.MAX_VALUE;
+        }
+        try {
+            return timeout.toNanos();
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    boolean isCancelled() {
+        return cancelled.getAsBoolean();
+    }
+
+    void reportProgress(ConstructionStatistics statistics) {
+        progress.accept(statistics);
+    }
+}
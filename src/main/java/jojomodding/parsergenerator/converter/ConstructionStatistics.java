@@ -0,0 +1,38 @@
+package jojomodding.parsergenerator.converter;
+
+import java.io.Serializable;
+
+/**
+ * How far the construction of a parser has come.
+ *
+ * @param phase       what the parser generator is currently doing.
+ * @param states      the number of states of the automaton built so far.
+ * @param items       the number of items added to states so far, while computing closures.
+ * @param lookaheads  the total size of all First() and Follow() sets.
+ * @param nanos       the time since the parser generator was created.
+ */
+public record ConstructionStatistics(Phase phase, int states, long items, long lookaheads, long nanos) implements Serializable {
+
+    /**
+     * The phases of constructing a parser.
+     */
+    public enum Phase {
+        /**
+         * Computing the First() and Follow() sets.
+         */
+        FIRST_FOLLOW,
+        /**
+         * Building the states of the LR automaton.
+         */
+        AUTOMATON,
+        /**
+         * Filling the action and goto tables.
+         */
+        TABLES
+    }
+
+    @Override
+    public String toString() {
+        return phase + ": " + states + " states, " + items + " items, " + lookaheads + " lookaheads, " + nanos / 1_000_000 + " ms";
+    }
+}
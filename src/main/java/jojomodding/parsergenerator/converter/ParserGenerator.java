@@ -1,26 +1,35 @@
 package jojomodding.parsergenerator.converter;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import jojomodding.parsergenerator.grammar.CompiledGrammar;
 import jojomodding.parsergenerator.grammar.Grammar;
 import jojomodding.parsergenerator.grammar.NonTerminal;
+import jojomodding.parsergenerator.grammar.Precedence.Associativity;
 import jojomodding.parsergenerator.grammar.ProductionItem;
 import jojomodding.parsergenerator.grammar.ProductionRule;
 import jojomodding.parsergenerator.grammar.Terminal;
 import jojomodding.parsergenerator.pda.PushDownAutomaton;
+import jojomodding.parsergenerator.pda.StateBuilder;
 import jojomodding.parsergenerator.pda.action.Action;
 import jojomodding.parsergenerator.pda.action.ActionAccept;
+import jojomodding.parsergenerator.pda.action.ActionErr;
 import jojomodding.parsergenerator.pda.action.ActionReduce;
 import jojomodding.parsergenerator.pda.action.ActionShift;
 import jojomodding.parsergenerator.utils.MutablePair;
@@ -42,9 +51,17 @@ public class ParserGenerator<T> {
      */
     private final int lak;
     /**
-     * The grammar to convert. This grammar is always reduced and extended.
+     * The grammar to convert. This is a snapshot of a copy of the given grammar, which is always reduced and extended.
      */
-    private final Grammar<T> grammar;
+    private final CompiledGrammar<T> grammar;
+    /**
+     * The non-terminals that can be parsed, i.e. the entry points. The initial states of the PDA are numbered in this order.
+     */
+    private final List<NonTerminal<T>> startSymbols;
+    /**
+     * For each start symbol S, the non-terminal S' of the extended grammar, whose only production rule is S' -> S.
+     */
+    private final List<NonTerminal<T>> extendedStarts;
     /**
      * The First_n() set, for each grammar. Note that if n==0, we pretend n==1. Before use, call computeFirstFollow()
      */
@@ -53,6 +70,30 @@ public class ParserGenerator<T> {
      * The First_n() set, for each grammar. Note that if n==0, we pretend n==1. Before use, call computeFirstFollow()
      */
     private final Map<NonTerminal<T>, Set<List<T>>> follow = new HashMap<>();
+    /**
+     * The closure of each set of items computed so far. States are mutable, so only their items are cached.
+     * A parser generator for an edited grammar takes over the closures that do not involve edited non-terminals.
+     */
+    private final Map<Set<ProductionRuleItem<T>>, Set<ProductionRuleItem<T>>> closures = new ConcurrentHashMap<>();
+    /**
+     * The conflicts found by the last build, which make the grammar not of the requested kind.
+     */
+    private final List<String> conflicts = new ArrayList<>();
+    /**
+     * The limits of the construction.
+     */
+    private final ConstructionBudget budget;
+    /**
+     * When this parser generator was created, according to System.nanoTime().
+     */
+    private final long startNanos = System.nanoTime();
+    /**
+     * What the parser generator is doing, and how much it has built so far.
+     */
+    private ConstructionStatistics.Phase phase = ConstructionStatistics.Phase.FIRST_FOLLOW;
+    private int states = 0;
+    private long items = 0;
+    private long lookaheads = 0;
 
     /**
      * Constructs a new parser generator.
@@ -62,20 +103,312 @@ public class ParserGenerator<T> {
      * If lak == 0, lrn == n, then we construct the LALR(n) parser.
      * In general, for lak <= lrn, we construct the LA(lak)LR(lrn-lak) parser.
      *
+     * The grammar is copied before it is reduced and extended, so it is not changed.
+     *
      * @param grammar the grammar for which a PDA is to be generated.
      * @param lrn       The lookahead size.
      */
     public ParserGenerator(Grammar<T> grammar, int lrn, int lak) {
-        grammar.reduce();
-        grammar.extend();
-        this.grammar = grammar;
+        this(grammar, lrn, lak, new ConstructionBudget());
+    }
+
+    /**
+     * Constructs a new parser generator whose work is limited by a budget. The budget already applies to this constructor, which
+     * computes the First() and Follow() sets.
+     *
+     * @param grammar the grammar for which a PDA is to be generated.
+     * @param lrn     The lookahead size.
+     * @param lak     The lookahead size used to tell states apart.
+     * @param budget  the limits of the construction.
+     * @throws ConstructionAbortedException if the budget is exceeded.
+     * @see #ParserGenerator(Grammar, int, int)
+     */
+    public ParserGenerator(Grammar<T> grammar, int lrn, int lak, ConstructionBudget budget) {
+        this(grammar, List.of(grammar.getInitial()), lrn, lak, budget);
+    }
+
+    /**
+     * Constructs a new parser generator for several entry points. The resulting PDA has an initial state for each of them,
+     * but shares all other states, so this is cheaper than generating a parser for each entry point.
+     *
+     * @param grammar      the grammar for which a PDA is to be generated. Its initial non-terminal does not matter.
+     * @param startSymbols the non-terminals that can be parsed.
+     * @param lrn          The lookahead size.
+     * @param lak          The lookahead size used to tell states apart.
+     * @throws IllegalArgumentException if a start symbol is unknown or does not generate a word.
+     * @see #ParserGenerator(Grammar, int, int)
+     * @see PushDownAutomaton#run(NonTerminal, java.util.Iterator)
+     */
+    public ParserGenerator(Grammar<T> grammar, List<NonTerminal<T>> startSymbols, int lrn, int lak) {
+        this(grammar, startSymbols, lrn, lak, new ConstructionBudget());
+    }
+
+    /**
+     * Constructs a new parser generator for several entry points, whose work is limited by a budget.
+     *
+     * @param grammar      the grammar for which a PDA is to be generated. Its initial non-terminal does not matter.
+     * @param startSymbols the non-terminals that can be parsed.
+     * @param lrn          The lookahead size.
+     * @param lak          The lookahead size used to tell states apart.
+     * @param budget       the limits of the construction.
+     * @throws IllegalArgumentException if a start symbol is unknown or does not generate a word.
+     * @throws ConstructionAbortedException if the budget is exceeded.
+     * @see #ParserGenerator(Grammar, List, int, int)
+     */
+    public ParserGenerator(Grammar<T> grammar, List<NonTerminal<T>> startSymbols, int lrn, int lak, ConstructionBudget budget) {
+        this(grammar, startSymbols, lrn, lak, budget, null);
+    }
+
+    /**
+     * Constructs a new parser generator, reusing the work of a previous one.
+     *
+     * @param previous a parser generator for a similar grammar, with the same start symbols and lookahead, or null.
+     */
+    private ParserGenerator(Grammar<T> grammar, List<NonTerminal<T>> startSymbols, int lrn, int lak, ConstructionBudget budget,
+            ParserGenerator<T> previous) {
+        this.budget = budget;
+        this.startSymbols = List.copyOf(startSymbols);
+        grammar = new Grammar<>(grammar);
+        if (this.startSymbols.equals(List.of(grammar.getInitial()))) {
+            grammar.reduce();
+            grammar.augment();
+            this.extendedStarts = List.of(grammar.getInitial());
+        } else {
+            this.extendedStarts = grammar.extend(this.startSymbols);
+            grammar.reduce();
+            for (int i = 0; i < extendedStarts.size(); i++) {
+                if (!grammar.hasNonTerminal(extendedStarts.get(i))) {
+                    throw new IllegalArgumentException("Start symbol " + this.startSymbols.get(i).name() + " does not generate a word!");
+                }
+            }
+        }
+        this.grammar = grammar.compile();
+        this.lrn_maybezero = lrn;
+        this.lrn = Integer.max(1, lrn);
+        this.lak = lak;
+        if ((lak == -1 && lrn != 0) || !(lak <= lrn && lak >= -1)) {
+            throw new IllegalArgumentException("Invalid LA LR combination!");
+        }
+        if (previous == null) {
+            computeFirstFollow();
+        } else {
+            reuse(previous);
+        }
+    }
+
+    /**
+     * Constructs a new parser generator for the same grammar and start symbols as another one, but a different class of parsers.
+     * The reduced and extended grammar is shared, as are the First() and Follow() sets if the lookahead size is the same, and the
+     * closures if the lookahead size passed is the same, since these do not depend on how states are told apart.
+     *
+     * @param base the other parser generator.
+     * @param lrn  The lookahead size.
+     * @param lak  The lookahead size used to tell states apart.
+     */
+    private ParserGenerator(ParserGenerator<T> base, int lrn, int lak) {
+        this.budget = base.budget;
+        this.startSymbols = base.startSymbols;
+        this.extendedStarts = base.extendedStarts;
+        this.grammar = base.grammar;
         this.lrn_maybezero = lrn;
         this.lrn = Integer.max(1, lrn);
         this.lak = lak;
         if ((lak == -1 && lrn != 0) || !(lak <= lrn && lak >= -1)) {
             throw new IllegalArgumentException("Invalid LA LR combination!");
         }
-        computeFirstFollow();
+        if (base.lrn == this.lrn) {
+            // the sets are never changed once computed, so they can be shared
+            first.putAll(base.first);
+            follow.putAll(base.follow);
+            lookaheads = base.lookaheads;
+        } else {
+            computeFirstFollow();
+        }
+        if (base.lrn_maybezero == lrn_maybezero) {
+            closures.putAll(base.closures);
+        }
+    }
+
+    /**
+     * Builds the PDA of the cheapest class of parsers that is adequate for a grammar. The classes are tried in order of their
+     * lookahead size, and for each lookahead size in order of the size of their automaton: First SLR, then LALR(k), LA(j)LR(k-j)
+     * for increasing j, and LR(k), for k = 1, 2, ... up to a maximum. Since the grammar is only reduced and extended once, the
+     * First() and Follow() sets are only computed once per lookahead size, and closures are shared between the classes that
+     * compute them the same way, each further attempt is cheaper than creating a parser generator from scratch.
+     *
+     * @param grammar      the grammar for which a PDA is to be generated.
+     * @param maxLookahead the largest lookahead size k to try.
+     * @param <T>          the type of terminals.
+     * @return the PDA, and which classes were tried and why they failed.
+     * @throws IllegalArgumentException if the grammar is not LR(maxLookahead), or maxLookahead is less than 1.
+     */
+    public static <T> ParserSelection<T> selectCheapest(Grammar<T> grammar, int maxLookahead) {
+        return selectCheapest(grammar, List.of(grammar.getInitial()), maxLookahead, new ConstructionBudget());
+    }
+
+    /**
+     * Builds the PDA of the cheapest class of parsers that is adequate for a grammar, with several entry points, and limits the
+     * construction of each class by a budget.
+     *
+     * @param grammar      the grammar for which a PDA is to be generated.
+     * @param startSymbols the non-terminals that can be parsed.
+     * @param maxLookahead the largest lookahead size k to try.
+     * @param budget       the limits of the construction of each class.
+     * @param <T>          the type of terminals.
+     * @return the PDA, and which classes were tried and why they failed.
+     * @throws IllegalArgumentException if the grammar is not LR(maxLookahead), maxLookahead is less than 1, or a start symbol is
+     *                                  unknown or does not generate a word.
+     * @throws ConstructionAbortedException if the budget is exceeded.
+     * @see #selectCheapest(Grammar, int)
+     */
+    public static <T> ParserSelection<T> selectCheapest(Grammar<T> grammar, List<NonTerminal<T>> startSymbols, int maxLookahead,
+            ConstructionBudget budget) {
+        if (maxLookahead < 1) {
+            throw new IllegalArgumentException("Invalid maximal lookahead " + maxLookahead);
+        }
+        List<int[]> classes = new ArrayList<>();
+        classes.add(new int[]{0, -1});
+        for (int k = 1; k <= maxLookahead; k++) {
+            for (int j = 0; j <= k; j++) {
+                classes.add(new int[]{k, j});
+            }
+        }
+        List<ParserSelection.Attempt> attempts = new ArrayList<>();
+        ParserGenerator<T> previous = null;
+        for (int[] c : classes) {
+            var generator = previous == null ? new ParserGenerator<>(grammar, startSymbols, c[0], c[1], budget)
+                    : new ParserGenerator<>(previous, c[0], c[1]);
+            try {
+                var pda = generator.build();
+                attempts.add(new ParserSelection.Attempt(generator.kind(), c[0], c[1], generator.states, List.of()));
+                return new ParserSelection<>(pda, attempts);
+            } catch (IllegalArgumentException e) {
+                if (generator.conflicts.isEmpty()) {
+                    // not a conflict, but e.g. too much lookahead to encode, which more lookahead does not fix
+                    throw e;
+                }
+                attempts.add(new ParserSelection.Attempt(generator.kind(), c[0], c[1], generator.states, generator.conflicts));
+            }
+            previous = generator;
+        }
+        throw new IllegalArgumentException("Grammar is not LR(" + maxLookahead + ")! Tried: "
+                + attempts.stream().map(ParserSelection.Attempt::toString).collect(Collectors.joining("; ")));
+    }
+
+    /**
+     * Creates a parser generator for an edited version of the grammar, with the same start symbols, lookahead and budget.
+     * Only the work that depends on the edits is redone: The First() and Follow() sets are only recomputed for the non-terminals
+     * they could have changed for, and closures are reused unless they involve a non-terminal whose rules or First() set changed.
+     * <p>
+     * This parser generator is not changed, and the PDAs built by the new one are the same as if it had been created from scratch.
+     *
+     * @param edited the edited grammar, which is copied.
+     * @return a parser generator for the edited grammar.
+     * @throws IllegalArgumentException if a start symbol is unknown or does not generate a word.
+     * @throws ConstructionAbortedException if the budget is exceeded.
+     */
+    public ParserGenerator<T> regenerate(Grammar<T> edited) {
+        List<NonTerminal<T>> starts = startSymbols;
+        if (extendedStarts.equals(List.of(grammar.getInitial()))) {
+            // a single start symbol is the initial non-terminal of the grammar
+            starts = List.of(edited.getInitial());
+        }
+        return new ParserGenerator<>(edited, starts, lrn_maybezero, lak, budget, this);
+    }
+
+    /**
+     * Takes over the First() and Follow() sets and closures of a parser generator for a similar grammar, where they are not
+     * affected by the differences of the grammars, and computes the remaining First() and Follow() sets.
+     *
+     * @param previous the parser generator for the similar grammar.
+     */
+    private void reuse(ParserGenerator<T> previous) {
+        // the non-terminals whose rules differ
+        Set<NonTerminal<T>> changed = new HashSet<>();
+        Set<NonTerminal<T>> all = new HashSet<>(grammar.getNonTerminals());
+        all.addAll(previous.grammar.getNonTerminals());
+        for (var nt : all) {
+            if (!Set.copyOf(grammar.getRules(nt)).equals(Set.copyOf(previous.grammar.getRules(nt)))) {
+                changed.add(nt);
+            }
+        }
+        // First(X) depends on the First() sets of the non-terminals in the rules of X
+        Set<NonTerminal<T>> firstAffected = usersOf(changed);
+        // Follow(Y) depends on Follow(X) for the rules X -> aYb, and on First(b)
+        Set<NonTerminal<T>> followAffected = new HashSet<>();
+        for (var nt : changed) {
+            for (var rule : previous.grammar.getRules(nt)) {
+                mentioned(rule, followAffected);
+            }
+            for (var rule : grammar.getRules(nt)) {
+                mentioned(rule, followAffected);
+            }
+        }
+        for (var nt : firstAffected) {
+            for (int p : grammar.getProductionsUsing(nt)) {
+                mentioned(grammar.getRule(p), followAffected);
+            }
+        }
+        Deque<NonTerminal<T>> worklist = new ArrayDeque<>(followAffected);
+        while (!worklist.isEmpty()) {
+            for (var rule : grammar.getRules(worklist.poll())) {
+                for (var item : rule.items()) {
+                    if (item instanceof NonTerminal<T> nt && followAffected.add(nt)) {
+                        worklist.add(nt);
+                    }
+                }
+            }
+        }
+        lookaheads = 0;
+        for (var T : grammar.getNonTerminals()) {
+            var oldFirst = previous.first.get(T);
+            var oldFollow = previous.follow.get(T);
+            first.put(T, oldFirst == null || firstAffected.contains(T) ? new HashSet<>() : new HashSet<>(oldFirst));
+            follow.put(T, oldFollow == null || followAffected.contains(T) ? new HashSet<>() : new HashSet<>(oldFollow));
+            lookaheads += first.get(T).size() + follow.get(T).size();
+        }
+        addLookaheads(follow.get(grammar.getInitial()), Set.of(List.of()));
+        solveFirstFollow();
+        // closures only depend on the rules and First() sets of the non-terminals in their items
+        Set<NonTerminal<T>> dirty = new HashSet<>(changed);
+        for (var T : grammar.getNonTerminals()) {
+            if (!first.get(T).equals(previous.first.get(T))) {
+                dirty.add(T);
+            }
+        }
+        previous.closures.forEach((kernel, closure) -> {
+            if (closure.stream().noneMatch(item -> dirty.contains(item.from())
+                    || item.after().items().stream().anyMatch(x -> x instanceof NonTerminal<T> nt && dirty.contains(nt)))) {
+                closures.put(kernel, closure);
+            }
+        });
+    }
+
+    /**
+     * Computes the non-terminals that use some non-terminals, directly or indirectly.
+     *
+     * @param used the used non-terminals.
+     * @return the non-terminals with a rule mentioning a used non-terminal or one of the results, including the used ones.
+     */
+    private Set<NonTerminal<T>> usersOf(Set<NonTerminal<T>> used) {
+        Set<NonTerminal<T>> users = new HashSet<>(used);
+        Deque<NonTerminal<T>> worklist = new ArrayDeque<>(used);
+        while (!worklist.isEmpty()) {
+            for (int p : grammar.getProductionsUsing(worklist.poll())) {
+                if (users.add(grammar.getLhs(p))) {
+                    worklist.add(grammar.getLhs(p));
+                }
+            }
+        }
+        return users;
+    }
+
+    private static <T> void mentioned(ProductionRule<T> rule, Set<NonTerminal<T>> into) {
+        for (var item : rule.items()) {
+            if (item instanceof NonTerminal<T> nt) {
+                into.add(nt);
+            }
+        }
     }
 
     private String kind() {
@@ -94,20 +427,54 @@ public class ParserGenerator<T> {
      * Builds the PDA, which has lookahead n, or 1 if n==0. It does so by constructing the LR(n) automaton, or a variation thereof.
      *
      * @return The PDA for this grammar.
-     * @throws IllegalArgumentException If the grammar is not of correct kind.
+     * @throws IllegalArgumentException If the grammar is not of correct kind, in which case the message names a conflict, or its
+     *                                  lookahead words are too many to encode.
      */
     public PushDownAutomaton<T> build() {
+        return build(null);
+    }
+
+    /**
+     * Builds the PDA like {@link #build()}, and describes its states, goto table and action table line by line.
+     *
+     * @param tables Receives the lines describing the tables, or null to not describe them.
+     * @return The PDA for this grammar.
+     * @throws IllegalArgumentException If the grammar is not of correct kind, in which case the message names a conflict, or its
+     *                                  lookahead words are too many to encode.
+     */
+    public PushDownAutomaton<T> build(Consumer<String> tables) {
+        conflicts.clear();
+        phase = ConstructionStatistics.Phase.AUTOMATON;
         var transitions = buildDFA();
+        phase = ConstructionStatistics.Phase.TABLES;
+        checkBudget();
         Map<CharacteristicState<T>, Integer> labeling = new HashMap<>();
-        CharacteristicState<T> initial = null, error = new CharacteristicState<>(lak);
+        CharacteristicState<T> error = new CharacteristicState<>(lak);
+        List<CharacteristicState<T>> initials = new ArrayList<>();
         labeling.put(error, -1);
-        for (var k : transitions.keySet()) {
-            if (k.getAll().stream().anyMatch(x -> x.from().equals(grammar.getInitial()) && x.before().items().isEmpty())) {
-                initial = k;
+        for (var start : extendedStarts) {
+            for (var k : transitions.keySet()) {
+                if (k.getAll().stream().anyMatch(x -> x.from().equals(start) && x.before().items().isEmpty())) {
+                    initials.add(k);
+                    labeling.put(k, labeling.size() - 1);
+                }
+            }
+        }
+        int i = initials.size();
+        // Number the states in breadth-first order along transitions sorted by symbol, so that the numbering does not depend on hashing.
+        // Then PDAs built from the same grammar have the same tables, even in different JVMs.
+        ArrayDeque<CharacteristicState<T>> queue = new ArrayDeque<>(initials);
+        while (!queue.isEmpty()) {
+            var successors = new ArrayList<>(transitions.get(queue.poll()).entrySet());
+            successors.sort(Comparator.comparing(x -> (x.getKey() instanceof Terminal<T> ? "t" : "n") + x.getKey().format()));
+            for (var succ : successors) {
+                if (!labeling.containsKey(succ.getValue())) {
+                    labeling.put(succ.getValue(), i);
+                    i++;
+                    queue.add(succ.getValue());
+                }
             }
         }
-        labeling.put(initial, 0);
-        int i = 1;
         for (var k : transitions.keySet()) {
             if (!labeling.containsKey(k)) {
                 labeling.put(k, i);
@@ -115,25 +482,30 @@ public class ParserGenerator<T> {
             }
         }
         var errorID = labeling.get(error);
-        System.out.println("Initial: " + labeling.get(initial));
+        if (tables != null) {
+            tables.accept("Initial: " + initials.stream().map(x -> "" + labeling.get(x)).collect(Collectors.joining(", ")));
+            tables.accept("GoTo table:");
+        }
         List<Entry<CharacteristicState<T>, Integer>> toSort = new ArrayList<>(labeling.entrySet());
         toSort.sort(Comparator.comparingInt(Entry::getValue));
         boolean hasConflicts = false;
-        System.out.println("GoTo table:");
         for (Entry<CharacteristicState<T>, Integer> e : toSort) {
-            System.out.println("  State: " + e.getValue() + " " + e.getKey());
-            for (var to : transitions.get(e.getKey()).entrySet()) {
-                var target = labeling.get(to.getValue());
-                if (target.equals(errorID)) {
-                    continue;
+            if (tables != null) {
+                tables.accept("  State: " + e.getValue() + " " + e.getKey());
+                for (var to : transitions.get(e.getKey()).entrySet()) {
+                    var target = labeling.get(to.getValue());
+                    if (!target.equals(errorID)) {
+                        tables.accept("    under " + to.getKey() + " -> " + target);
+                    }
                 }
-                System.out.println("    under " + to.getKey() + " -> " + target);
             }
-            if (!isStateAdequate(e.getKey(), "" + e.getValue())) {
+            if (!isStateAdequate(e.getKey(), "" + e.getValue(), conflicts)) {
                 hasConflicts = true;
             }
         }
-        System.out.println("Action table:");
+        if (tables != null) {
+            tables.accept("Action table:");
+        }
         List<Map<List<T>, Action<T>>> actionTable = new ArrayList<>(i);
         List<Map<ProductionItem<T>, Integer>> gotoTable = new ArrayList<>(i);
         for (int j = 0; j < i; j++) {
@@ -141,14 +513,18 @@ public class ParserGenerator<T> {
             gotoTable.add(new HashMap<>());
         }
         for (Entry<CharacteristicState<T>, Integer> e : toSort) {
-            System.out.println("  State: " + e.getValue() + " " + e.getKey());
+            if (tables != null) {
+                tables.accept("  State: " + e.getValue() + " " + e.getKey());
+            }
             if (e.getKey().getAll().isEmpty()) {
                 continue;
             }
             Map<ProductionItem<T>, Integer> gotoEntry = gotoTable.get(e.getValue());
             Map<List<T>, Action<T>> actionEntry = actionTable.get(e.getValue());
             BiConsumer<List<T>, Action<T>> addActionEntry = (a,b) -> {
-                System.out.println("    upon " + Utils.formatWord(a, Objects::toString, true) + " -> " + b.toString());
+                if (tables != null) {
+                    tables.accept("    upon " + Utils.formatWord(a, Objects::toString, true) + " -> " + b.toString());
+                }
                 actionEntry.put(a, b);
             };
             for (var to : transitions.get(e.getKey()).entrySet()) {
@@ -157,28 +533,239 @@ public class ParserGenerator<T> {
                 }
                 gotoEntry.put(to.getKey(), labeling.get(to.getValue()));
             }
-            for (var state : e.getKey().getAll()) {
-                if (state.firstAfterDot().isEmpty()) {
-                    if (!state.from().equals(grammar.getInitial())) {
-                        for (var la : lookaheadFor(state, false)) {
-                            addActionEntry.accept(la, new ActionReduce<>(state.from(), state.before()));
-                        }
-                    } else if (state.from().equals(grammar.getInitial()) && state.lookahead().equals(List.of())) {
-                        addActionEntry.accept(List.of(), new ActionAccept<>());
-                    }
-                } else if (state.isShift()) {
-                    for (List<T> lookahead : lookaheadFor(state, false)) {
-                        addActionEntry.accept(lookahead, new ActionShift<>());
+            actionsOf(e.getKey(), addActionEntry);
+        }
+        if (hasConflicts) {
+            throw new IllegalArgumentException("Grammar is not " + kind() + "! " + conflicts.size() + " conflicts, e.g. " + conflicts.get(0));
+        } else if (tables != null) {
+            tables.accept("Grammar is " + kind() + "!");
+        }
+        var pda = new PushDownAutomaton<>(grammar, lrn, actionTable, gotoTable, entryPoints());
+        budget.reportProgress(getStatistics());
+        return pda;
+    }
+
+    /**
+     * Builds a PDA whose states are only constructed once a run visits them. This is much faster than {@link #build()} if inputs
+     * only ever visit a small part of a large automaton. Conflicts are only detected once a run visits a state that has one.
+     * The limits on states and items of the budget of this parser generator also apply to the states built later on, and its
+     * time limit applies to building each of them. Cancelling or interrupting does not abort runs, though.
+     * <p>
+     * This is only possible for LR(n) and SLR(n) parsers, since the states of other parsers may still be merged after they were
+     * found.
+     *
+     * @return The PDA for this grammar, whose runs throw an IllegalStateException if they visit a state with a conflict.
+     * @throws IllegalArgumentException If this is an LALR parser generator, or a variation thereof, or its lookahead words are too
+     *                                  many to encode.
+     */
+    public PushDownAutomaton<T> buildLazy() {
+        if (lak != lrn_maybezero && lak != -1) {
+            throw new IllegalArgumentException("Can not build the " + kind() + " parser lazily!");
+        }
+        phase = ConstructionStatistics.Phase.AUTOMATON;
+        var builder = new LazyStateBuilder();
+        return new PushDownAutomaton<>(grammar, lrn, builder, entryPoints());
+    }
+
+    /**
+     * Gets the initial state of each start symbol.
+     *
+     * @return the start symbols, mapped to their index.
+     */
+    private Map<NonTerminal<T>, Integer> entryPoints() {
+        Map<NonTerminal<T>, Integer> entryPoints = new LinkedHashMap<>();
+        startSymbols.forEach(s -> entryPoints.put(s, entryPoints.size()));
+        return entryPoints;
+    }
+
+    /**
+     * Builds the states of the LR(n) automaton when a run first visits them.
+     * <p>
+     * Its PDA only calls it while holding its own lock, so it keeps the counters and conflicts of its construction itself,
+     * instead of sharing those of the parser generator with other PDAs and with {@link #build()}. What it shares, i.e. the
+     * closures and the First() and Follow() sets, is either thread-safe or no longer changed.
+     */
+    private final class LazyStateBuilder implements StateBuilder<T> {
+
+        /**
+         * The states found so far, by number.
+         */
+        private final List<CharacteristicState<T>> found = new ArrayList<>();
+        private final Map<CharacteristicState<T>, Integer> numbers = new HashMap<>();
+        private final List<String> conflicts = new ArrayList<>();
+        private long items = 0;
+        /**
+         * When building the current state started, according to System.nanoTime(). The time limit applies to each state.
+         */
+        private long stateStart = System.nanoTime();
+        /**
+         * Whether the initial states are being built by {@link #buildLazy()}, which can still be cancelled, rather than by a run.
+         */
+        private boolean initial = true;
+
+        private LazyStateBuilder() {
+            for (int i = 0; i < extendedStarts.size(); i++) {
+                number(initialState(i, this::addItem));
+            }
+            initial = false;
+        }
+
+        private int number(CharacteristicState<T> state) {
+            return numbers.computeIfAbsent(state, $ -> {
+                found.add(state);
+                return found.size() - 1;
+            });
+        }
+
+        private void addItem() {
+            items++;
+            checkBudget();
+        }
+
+        /**
+         * Checks the limits of the budget. During runs, cancelling or interrupting does not apply, since the thread belongs to the run.
+         */
+        private void checkBudget() {
+            ParserGenerator.this.checkBudget(getStatistics(), stateStart, initial);
+        }
+
+        private ConstructionStatistics getStatistics() {
+            return new ConstructionStatistics(ConstructionStatistics.Phase.AUTOMATON, found.size(), items, lookaheads,
+                    System.nanoTime() - startNanos);
+        }
+
+        @Override
+        public State<T> build(int number) {
+            var state = found.get(number);
+            stateStart = System.nanoTime();
+            checkBudget();
+            if (!isStateAdequate(state, "" + number, conflicts)) {
+                throw new IllegalStateException("Grammar is not " + kind() + "! " + conflicts.get(conflicts.size() - 1));
+            }
+            Map<ProductionItem<T>, Integer> transitions = new HashMap<>();
+            successors(state).forEach((item, kernel) -> transitions.put(item, number(closure(kernel, this::addItem))));
+            Map<List<T>, Action<T>> actions = new HashMap<>();
+            actionsOf(state, actions::put);
+            budget.reportProgress(getStatistics());
+            return new State<>(actions, transitions);
+        }
+
+        @Override
+        public int getStateCount() {
+            return found.size();
+        }
+    }
+
+    /**
+     * Computes the actions of a state.
+     *
+     * @param state the state.
+     * @param add   receives each lookahead word and the action upon it.
+     */
+    private void actionsOf(CharacteristicState<T> state, BiConsumer<List<T>, Action<T>> add) {
+        Map<List<T>, Action<T>> actions = new LinkedHashMap<>();
+        for (var item : state.getAll()) {
+            if (item.firstAfterDot().isEmpty()) {
+                if (!extendedStarts.contains(item.from())) {
+                    for (var la : lookaheadFor(item, false)) {
+                        actions.put(la, new ActionReduce<>(item.from(), item.before()));
                     }
+                } else if (item.lookahead().equals(List.of())) {
+                    actions.put(List.of(), new ActionAccept<>());
                 }
             }
         }
-        if (hasConflicts) {
-            throw new IllegalArgumentException("Grammar is not " + kind() + "!");
+        Set<List<T>> shifts = new HashSet<>();
+        for (var item : state.getAll()) {
+            if (item.isShift()) {
+                shifts.addAll(lookaheadFor(item, false));
+            }
+        }
+        for (var lookahead : shifts) {
+            // a conflict with a reduction is resolved by precedence, or else the state is not adequate anyway
+            Action<T> resolved = actions.get(lookahead) instanceof ActionReduce<T> red ? resolve(red.from(), red.to(), lookahead) : null;
+            actions.put(lookahead, resolved == null ? new ActionShift<>() : resolved);
+        }
+        actions.forEach(add);
+    }
+
+    /**
+     * Resolves a shift-reduce conflict by the precedence of the production rule and of the terminal to be shifted, as yacc does:
+     * The one with the higher level wins, and on the same level, left-associative terminals reduce, right-associative ones shift,
+     * and non-associative ones are an error.
+     *
+     * @param from the LHS of the production rule to reduce along.
+     * @param rule the RHS of the production rule to reduce along.
+     * @param word the lookahead word, which begins with the terminal to be shifted.
+     * @return the action to take, or null if the rule or the terminal has no precedence.
+     */
+    private Action<T> resolve(NonTerminal<T> from, ProductionRule<T> rule, List<T> word) {
+        if (word.isEmpty()) {
+            return null;
+        }
+        var rulePrecedence = grammar.getPrecedence(from, rule);
+        var terminalPrecedence = grammar.getPrecedence(word.get(0));
+        if (rulePrecedence.isEmpty() || terminalPrecedence.isEmpty()) {
+            return null;
+        }
+        int cmp = Integer.compare(rulePrecedence.get().level(), terminalPrecedence.get().level());
+        if (cmp > 0 || (cmp == 0 && terminalPrecedence.get().associativity() == Associativity.LEFT)) {
+            return new ActionReduce<>(from, rule);
+        } else if (cmp < 0 || terminalPrecedence.get().associativity() == Associativity.RIGHT) {
+            return new ActionShift<>();
         } else {
-            System.out.println("Grammar is " + kind() + "!");
+            return new ActionErr<>();
+        }
+    }
+
+
+    /**
+     * Gets how far the construction has come.
+     *
+     * @return the statistics.
+     */
+    public ConstructionStatistics getStatistics() {
+        return new ConstructionStatistics(phase, states, items, lookaheads, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Aborts the construction if the budget is exceeded, it was cancelled, or the thread was interrupted.
+     *
+     * @throws ConstructionAbortedException if the construction is to be aborted.
+     */
+    private void checkBudget() {
+        checkBudget(getStatistics(), startNanos, true);
+    }
+
+    /**
+     * Aborts a construction if the budget is exceeded, or it was cancelled or the thread was interrupted.
+     *
+     * @param statistics  how much the construction has built so far.
+     * @param since       from when the time limit is measured, according to System.nanoTime().
+     * @param cancellable whether cancelling and interrupting apply.
+     * @throws ConstructionAbortedException if the construction is to be aborted.
+     */
+    private void checkBudget(ConstructionStatistics statistics, long since, boolean cancellable) {
+        if (statistics.states() > budget.getMaxStates()) {
+            throw abort(ConstructionAbortedException.Reason.STATES, "More than " + budget.getMaxStates() + " states", statistics);
+        }
+        if (statistics.items() > budget.getMaxItems()) {
+            throw abort(ConstructionAbortedException.Reason.ITEMS, "More than " + budget.getMaxItems() + " items", statistics);
+        }
+        if (statistics.lookaheads() > budget.getMaxLookaheads()) {
+            throw abort(ConstructionAbortedException.Reason.LOOKAHEADS, "More than " + budget.getMaxLookaheads() + " lookaheads",
+                    statistics);
+        }
+        if (System.nanoTime() - since > budget.getTimeoutNanos()) {
+            throw abort(ConstructionAbortedException.Reason.DEADLINE, "Deadline exceeded", statistics);
         }
-        return new PushDownAutomaton<>(grammar, lrn, actionTable, gotoTable);
+        if (cancellable && (budget.isCancelled() || Thread.currentThread().isInterrupted())) {
+            throw abort(ConstructionAbortedException.Reason.CANCELLED, "Cancelled", statistics);
+        }
+    }
+
+    private ConstructionAbortedException abort(ConstructionAbortedException.Reason reason, String what, ConstructionStatistics statistics) {
+        return new ConstructionAbortedException(reason, what + " while building the " + kind() + " parser", statistics);
     }
 
     /**
@@ -197,15 +784,15 @@ public class ParserGenerator<T> {
         for (var nt : s.after().items()) {
             firsts = appendFirsts(firsts, nt);
         }
-        Stream<List<T>> k;
+        Supplier<Stream<List<T>>> k;
         if (lak == -1) {
-            k = follow.get(s.from()).stream();
+            k = () -> follow.get(s.from()).stream();
         } else if (lrn_maybezero == 0) {
-            k = Stream.concat(Stream.of(List.of()), grammar.getTerminals().stream().map(List::of));
+            k = () -> Stream.concat(Stream.of(List.of()), grammar.getTerminals().stream().map(List::of));
         } else {
-            k = Stream.of(s.lookahead());
+            k = () -> Stream.of(s.lookahead());
         }
-        return appendAll(firsts, () -> k);
+        return appendAll(firsts, k);
     }
 
     /**
@@ -213,26 +800,36 @@ public class ParserGenerator<T> {
      * a Shift-Reduce-Conflict.
      *
      * @param state     The state
-     * @param stateName The state name, used to print conflicts.
+     * @param stateName The state name, used to describe conflicts.
+     * @param conflicts where to add the conflicts.
      * @return True iff there is no conflict, otherwise false.
      */
-    private boolean isStateAdequate(CharacteristicState<T> state, String stateName) {
+    private boolean isStateAdequate(CharacteristicState<T> state, String stateName, List<String> conflicts) {
         List<ProductionRuleItem<T>> lst = new ArrayList<>(state.getAll());
+        // only reduce items and items before a terminal can conflict, so only their lookaheads are needed
+        List<Set<List<T>>> lookaheads = new ArrayList<>(lst.size());
+        for (var item : lst) {
+            lookaheads.add(item.isReduce() || item.isShift() ? lookaheadFor(item, false) : null);
+        }
         boolean adequate = true;
         for (int i = lst.size() - 1; i >= 0; i--) {
             var state1 = lst.get(i);
+            if (!state1.isReduce()) {
+                continue;
+            }
             for (int j = 0; j < lst.size(); j++) {
                 var state2 = lst.get(j);
-                if (i < j && state1.isReduce() && state2.isReduce() && !state1.equals(state2)) {
-                    if (lookaheadFor(state1, false).stream().anyMatch(lookaheadFor(state2, false)::contains)) {
-                        System.out.println("    Reduce-Reduce-Conflict in " + stateName + ": " + state1 + " vs " + state2);
+                if (i < j && state2.isReduce() && !state1.equals(state2)) {
+                    if (lookaheads.get(i).stream().anyMatch(lookaheads.get(j)::contains)) {
+                        conflict(conflicts, "Reduce-Reduce-Conflict in " + stateName + ": " + state1 + " vs " + state2);
                         adequate = false;
                     }
                 }
-                var state2FA = state2.firstAfterDot();
-                if (state1.isReduce() && state2FA.isPresent() && state2FA.get() instanceof Terminal<T> t) {
-                    if (lookaheadFor(state1, false).stream().anyMatch(lookaheadFor(state2, false)::contains)) {
-                        System.out.println("    Shift-Reduce-Conflict in " + stateName + ": " + state2 + " vs " + state1);
+                if (state2.isShift()) {
+                    var reduce = state1;
+                    if (lookaheads.get(i).stream().filter(lookaheads.get(j)::contains)
+                            .anyMatch(w -> resolve(reduce.from(), reduce.before(), w) == null)) {
+                        conflict(conflicts, "Shift-Reduce-Conflict in " + stateName + ": " + state2 + " vs " + state1);
                         adequate = false;
                     }
                 }
@@ -241,14 +838,24 @@ public class ParserGenerator<T> {
         return adequate;
     }
 
+    private void conflict(List<String> conflicts, String conflict) {
+        conflicts.add(conflict);
+    }
+
     /**
      * Computes the epsilon-closure of a state in the LR(n) automaton, in order to quickly constructs its power-set automaton.
      *
      * @param items the state, without epsilon transitions
+     * @param added called for each item that is added, to count it and check the budget.
      * @return The epsilon-closure of items.
      */
-    private CharacteristicState<T> closure(Set<ProductionRuleItem<T>> items) {
+    private CharacteristicState<T> closure(Set<ProductionRuleItem<T>> items, Runnable added) {
         var res = new CharacteristicState<T>(lak);
+        var cached = closures.get(items);
+        if (cached != null) {
+            cached.forEach(res::addCompacting);
+            return res;
+        }
         items.forEach(res::addCompacting);
         while (true) {
             boolean change = false;
@@ -258,9 +865,12 @@ public class ParserGenerator<T> {
                 }
                 if (item.firstAfterDot().get() instanceof NonTerminal<T> nt) {
                     Set<List<T>> followed = lookaheadFor(item.advanceOne(), true);
-                    for (var prod : grammar.getProductionRules().get(nt)) {
+                    for (var prod : grammar.getRules(nt)) {
                         for (var lookahead : followed) {
-                            change |= res.addCompacting(new ProductionRuleItem<>(nt, new ProductionRule<>(List.of(), prod.formatter()), prod, lookahead));
+                            if (res.addCompacting(new ProductionRuleItem<>(nt, new ProductionRule<>(List.of(), prod.formatter()), prod, lookahead))) {
+                                change = true;
+                                added.run();
+                            }
                         }
                     }
                 }
@@ -269,9 +879,44 @@ public class ParserGenerator<T> {
                 break;
             }
         }
+        closures.put(items, Set.copyOf(res.getAll()));
         return res;
     }
 
+    /**
+     * Computes an initial state of the LR(n) DFA.
+     *
+     * @param i the index of the start symbol.
+     * @param added called for each item of the closure that is added.
+     * @return the closure of the initial item S' -> .S of that start symbol S.
+     */
+    private CharacteristicState<T> initialState(int i, Runnable added) {
+        var start = extendedStarts.get(i);
+        var rule = grammar.getRules(start).get(0);
+        return closure(Set.of(new ProductionRuleItem<>(start, new ProductionRule<>(List.of(), rule.formatter()), rule, List.of())), added);
+    }
+
+    /**
+     * Computes the kernels of the successors of a state in the LR(n) DFA.
+     *
+     * @param state the state.
+     * @return for each item after which a dot occurs, the items of the state in which the dot was moved past it.
+     */
+    private Map<ProductionItem<T>, Set<ProductionRuleItem<T>>> successors(CharacteristicState<T> state) {
+        Map<ProductionItem<T>, Set<ProductionRuleItem<T>>> byInitial = new HashMap<>();
+        for (var item : state.getAll()) {
+            var head = item.firstAfterDot();
+            if (head.isEmpty()) continue;
+            byInitial.computeIfAbsent(head.get(), $ -> new HashSet<>()).add(item.advanceOne());
+        }
+        return byInitial;
+    }
+
+    private void addItem() {
+        items++;
+        checkBudget();
+    }
+
     /**
      * Builds the LR(n) DFA.
      *
@@ -280,48 +925,43 @@ public class ParserGenerator<T> {
     private Map<CharacteristicState<T>, Map<ProductionItem<T>, CharacteristicState<T>>> buildDFA() {
         Map<CharacteristicState<T>, Map<ProductionItem<T>, CharacteristicState<T>>> result = new HashMap<>();
         Map<CharacteristicState<T>, CharacteristicState<T>> uniqueify = new HashMap<>();
-        var startstate = closure(Set.of(new ProductionRuleItem<>(grammar.getInitial(), new ProductionRule<>(List.of(), grammar.getInitialProductionRule().formatter()), grammar.getInitialProductionRule(), List.of())));
-        uniqueify.put(startstate, startstate);
+        for (int i = 0; i < extendedStarts.size(); i++) {
+            var startstate = initialState(i, this::addItem);
+            uniqueify.put(startstate, startstate);
+        }
+        states = uniqueify.size();
         result.put(new CharacteristicState<>(lak), Map.of());
-        outer:
-        while (true) {
-            for (var state : uniqueify.values()) {
-                var map1 = result.get(state);
-                if (map1 != null) continue;
-                map1 = new HashMap<>();
-                result.put(state, map1);
-                Map<ProductionItem<T>, Set<ProductionRuleItem<T>>> byInitial = new HashMap<>();
-                for (var item : state.getAll()) {
-                    var head = item.firstAfterDot();
-                    if (head.isEmpty()) continue;
-                    byInitial.computeIfAbsent(head.get(), $ -> new HashSet<>()).add(item.advanceOne());
-                }
-                boolean change = false;
-                for (var e : byInitial.entrySet()) {
-                    var it = e.getKey();
-                    var start = e.getValue();
-                    var lfp = closure(start);
-                    var uniq = uniqueify.get(lfp);
-                    if (uniq == null) {
-                        uniqueify.put(lfp, lfp);
-                        map1.put(it, lfp);
-                        change = true;
-                    } else {
-                        map1.put(it, uniq);
-                        boolean uniqStale = false;
-                        for (var x : lfp.getAll()) {
-                            uniqStale |= uniq.addCompacting(x);
-                        }
-                        change |= uniqStale;
-                        if (uniqStale) {
-                            result.remove(uniq);
-                        }
+        // the states whose transitions are yet to be computed, or to be recomputed since items were merged into them
+        ArrayDeque<CharacteristicState<T>> worklist = new ArrayDeque<>(uniqueify.values());
+        while (!worklist.isEmpty()) {
+            var state = worklist.poll();
+            if (result.containsKey(state)) continue;
+            checkBudget();
+            Map<ProductionItem<T>, CharacteristicState<T>> map1 = new HashMap<>();
+            result.put(state, map1);
+            for (var e : successors(state).entrySet()) {
+                var it = e.getKey();
+                var start = e.getValue();
+                var lfp = closure(start, this::addItem);
+                var uniq = uniqueify.get(lfp);
+                if (uniq == null) {
+                    uniqueify.put(lfp, lfp);
+                    map1.put(it, lfp);
+                    worklist.add(lfp);
+                    states = uniqueify.size();
+                    budget.reportProgress(getStatistics());
+                } else {
+                    map1.put(it, uniq);
+                    boolean uniqStale = false;
+                    for (var x : lfp.getAll()) {
+                        uniqStale |= uniq.addCompacting(x);
+                    }
+                    if (uniqStale) {
+                        result.remove(uniq);
+                        worklist.add(uniq);
                     }
                 }
-                if(change)
-                    continue outer;
             }
-            break;
         }
         return result;
     }
@@ -355,19 +995,42 @@ public class ParserGenerator<T> {
         }
     }
 
+    /**
+     * Adds words to a First() or Follow() set, keeping track of the total size of these sets.
+     *
+     * @param to    the set.
+     * @param words the words.
+     * @return whether the set changed.
+     */
+    private boolean addLookaheads(Set<List<T>> to, Set<List<T>> words) {
+        int before = to.size();
+        to.addAll(words);
+        lookaheads += to.size() - before;
+        return to.size() != before;
+    }
+
     /**
      * Computes the First_n() and Follow_n() sets of each non-terminal.
      */
     public void computeFirstFollow() {
+        lookaheads = 0;
         for (var T : grammar.getNonTerminals()) {
             first.put(T, new HashSet<>());
             follow.put(T, new HashSet<>());
         }
         follow.get(grammar.getInitial()).add(List.of());
+        solveFirstFollow();
+    }
+
+    /**
+     * Extends the First_n() and Follow_n() sets until they are closed under the rules of the grammar.
+     */
+    private void solveFirstFollow() {
         while (true) {
             boolean change = false;
             for (var T : grammar.getNonTerminals()) {
-                for (var rule : grammar.getProductionRules().get(T)) {
+                for (var rule : grammar.getRules(T)) {
+                    checkBudget();
                     Set<List<T>> partialFirst = Set.of(List.of());
                     List<MutablePair<NonTerminal<T>, Set<List<T>>>> partialFollows = new ArrayList<>();
                     for (var item : rule.items()) {
@@ -380,12 +1043,13 @@ public class ParserGenerator<T> {
                     partialFollows.forEach(w -> w.setSecond(
                             w.getSecond().stream().flatMap(x -> follow.get(T).stream().map(y -> Utils.concatLimit(lrn, x, y)))
                                     .collect(Collectors.toUnmodifiableSet())));
-                    change |= first.get(T).addAll(partialFirst);
+                    change |= addLookaheads(first.get(T), partialFirst);
                     for (var e : partialFollows) {
-                        change |= follow.get(e.getFirst()).addAll(e.getSecond());
+                        change |= addLookaheads(follow.get(e.getFirst()), e.getSecond());
                     }
                 }
             }
+            budget.reportProgress(getStatistics());
             if (!change) {
                 break;
             }
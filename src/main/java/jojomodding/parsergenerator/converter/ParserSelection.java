@@ -0,0 +1,85 @@
+package jojomodding.parsergenerator.converter;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import jojomodding.parsergenerator.pda.PushDownAutomaton;
+
+/**
+ * The cheapest parser found by {@link ParserGenerator#selectCheapest(jojomodding.parsergenerator.grammar.Grammar, int)},
+ * together with the classes of parsers that were tried before.
+ *
+ * @param pda      the PDA of the first class of parsers that is adequate for the grammar.
+ * @param attempts the classes of parsers that were tried, in order. The last one succeeded.
+ * @param <T>      the type of terminals.
+ */
+public record ParserSelection<T>(PushDownAutomaton<T> pda, List<Attempt> attempts) {
+
+    /**
+     * Creates a new selection.
+     *
+     * @param pda      the PDA.
+     * @param attempts the attempts, of which the last one succeeded.
+     */
+    public ParserSelection {
+        attempts = List.copyOf(attempts);
+        if (attempts.isEmpty() || !attempts.get(attempts.size() - 1).succeeded()) {
+            throw new IllegalArgumentException("The last attempt must have succeeded!");
+        }
+    }
+
+    /**
+     * Gets the attempt that succeeded.
+     *
+     * @return the last attempt.
+     */
+    public Attempt selected() {
+        return attempts.get(attempts.size() - 1);
+    }
+
+    /**
+     * An attempt to build a parser of a certain class.
+     *
+     * @param kind      the class of parsers, e.g. LALR(1).
+     * @param lrn       the lookahead size, as passed to the parser generator.
+     * @param lak       the lookahead size used to tell states apart, as passed to the parser generator.
+     * @param states    the number of states of the automaton.
+     * @param conflicts the conflicts that made the automaton inadequate, or none if it is adequate.
+     */
+    public record Attempt(String kind, int lrn, int lak, int states, List<String> conflicts) {
+
+        /**
+         * Creates a new attempt.
+         *
+         * @param kind      the class of parsers.
+         * @param lrn       the lookahead size.
+         * @param lak       the lookahead size used to tell states apart.
+         * @param states    the number of states.
+         * @param conflicts the conflicts.
+         */
+        public Attempt {
+            conflicts = List.copyOf(conflicts);
+        }
+
+        /**
+         * Checks whether the automaton was adequate.
+         *
+         * @return true iff there were no conflicts.
+         */
+        public boolean succeeded() {
+            return conflicts.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            if (succeeded()) {
+                return kind + ": adequate, " + states + " states";
+            }
+            return kind + ": " + conflicts.size() + " conflicts in " + states + " states, e.g. " + conflicts.get(0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return attempts.stream().map(Attempt::toString).collect(Collectors.joining("\n"));
+    }
+}
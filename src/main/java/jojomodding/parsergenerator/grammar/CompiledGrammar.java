@@ -0,0 +1,381 @@
+package jojomodding.parsergenerator.grammar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+/**
+ * An immutable snapshot of a {@link Grammar}, indexed for fast lookup. Obtained by {@link Grammar#compile()}.
+ * <p>
+ * Non-terminals and productions are numbered densely in a canonical order: non-terminals by name, and productions by LHS and then
+ * by their RHS as a string. The snapshot knows the rules of each non-terminal, the productions each non-terminal is used in,
+ * and which non-terminals are nullable. Since it never changes, it can be shared between threads, and nothing is copied on access.
+ *
+ * @param <T> the type of characters the grammar is over.
+ */
+public final class CompiledGrammar<T> {
+
+    private final NonTerminal<T> initial;
+    private final List<NonTerminal<T>> nonTerminals;
+    private final Map<NonTerminal<T>, Integer> nonTerminalIds;
+    private final Set<NonTerminal<T>> nonTerminalSet;
+    private final Set<T> terminals;
+    /**
+     * The LHS of each production.
+     */
+    private final int[] lhs;
+    private final List<ProductionRule<T>> rules;
+    /**
+     * The RHS of each production, where non-terminal i is encoded as i and each terminal as -1.
+     */
+    private final int[][] rhs;
+    /**
+     * For each non-terminal, its rules.
+     */
+    private final List<List<ProductionRule<T>>> rulesOf;
+    private final Map<NonTerminal<T>, Set<ProductionRule<T>>> ruleSets;
+    /**
+     * For each non-terminal, the productions in whose RHS it occurs, each once.
+     */
+    private final int[][] usedIn;
+    private final boolean[] nullable;
+    private final Map<T, Precedence> precedences;
+    private final Map<NonTerminal<T>, Map<ProductionRule<T>, T>> precedenceOverrides;
+
+    /**
+     * Compiles a grammar.
+     *
+     * @param grammar the grammar.
+     */
+    CompiledGrammar(Grammar<T> grammar) {
+        this.initial = grammar.getInitial();
+        var productionRules = grammar.getProductionRules();
+        this.nonTerminals = grammar.getNonTerminals().stream().sorted(Comparator.comparing(NonTerminal::name)).toList();
+        this.nonTerminalIds = new HashMap<>();
+        nonTerminals.forEach(nt -> nonTerminalIds.put(nt, nonTerminalIds.size()));
+        this.nonTerminalSet = Set.copyOf(nonTerminals);
+        this.terminals = Set.copyOf(grammar.getTerminals());
+        List<Integer> lhs = new ArrayList<>();
+        List<ProductionRule<T>> rules = new ArrayList<>();
+        this.rulesOf = new ArrayList<>(nonTerminals.size());
+        this.ruleSets = new HashMap<>();
+        for (int nt = 0; nt < nonTerminals.size(); nt++) {
+            var sorted = productionRules.getOrDefault(nonTerminals.get(nt), Set.of()).stream()
+                    .sorted(Comparator.comparing(ProductionRule::toString)).toList();
+            rulesOf.add(sorted);
+            ruleSets.put(nonTerminals.get(nt), Set.copyOf(sorted));
+            for (var rule : sorted) {
+                lhs.add(nt);
+                rules.add(rule);
+            }
+        }
+        this.lhs = lhs.stream().mapToInt(Integer::intValue).toArray();
+        this.rules = List.copyOf(rules);
+        this.rhs = new int[rules.size()][];
+        List<Set<Integer>> usedIn = new ArrayList<>(nonTerminals.size());
+        for (int nt = 0; nt < nonTerminals.size(); nt++) {
+            usedIn.add(new LinkedHashSet<>());
+        }
+        for (int p = 0; p < rules.size(); p++) {
+            var items = rules.get(p).items();
+            rhs[p] = new int[items.size()];
+            for (int i = 0; i < items.size(); i++) {
+                Integer id = items.get(i) instanceof NonTerminal<T> nt ? nonTerminalIds.get(nt) : null;
+                rhs[p][i] = id == null ? -1 : id;
+                if (id != null) {
+                    usedIn.get(id).add(p);
+                }
+            }
+        }
+        this.usedIn = usedIn.stream().map(s -> s.stream().mapToInt(Integer::intValue).toArray()).toArray(int[][]::new);
+        this.nullable = closeOver(p -> Arrays.stream(rhs[p]).noneMatch(item -> item < 0), null);
+        this.precedences = grammar.getPrecedences();
+        this.precedenceOverrides = grammar.getPrecedenceOverrides();
+    }
+
+    /**
+     * Propagates a property of non-terminals along productions, in linear time: A non-terminal has the property if one of its
+     * productions is eligible and all non-terminals in it have the property.
+     * Each production counts how many of its distinct non-terminals do not yet have the property, and the non-terminals that
+     * have just obtained it are kept in a worklist, from which the counts of the productions they are used in are decremented.
+     *
+     * @param eligible  which productions may give the property.
+     * @param completed if not null, where to record which productions have only non-terminals with the property.
+     * @return which non-terminals have the property.
+     */
+    private boolean[] closeOver(IntPredicate eligible, boolean[] completed) {
+        boolean[] result = new boolean[nonTerminals.size()];
+        int[] missing = new int[rhs.length];
+        int[] worklist = new int[nonTerminals.size()];
+        int size = 0;
+        for (int p = 0; p < rhs.length; p++) {
+            missing[p] = (int) Arrays.stream(rhs[p]).filter(item -> item >= 0).distinct().count();
+            if (missing[p] == 0) {
+                if (completed != null) {
+                    completed[p] = true;
+                }
+                if (eligible.test(p) && !result[lhs[p]]) {
+                    result[lhs[p]] = true;
+                    worklist[size++] = lhs[p];
+                }
+            }
+        }
+        while (size > 0) {
+            int nt = worklist[--size];
+            for (int p : usedIn[nt]) {
+                if (--missing[p] == 0) {
+                    if (completed != null) {
+                        completed[p] = true;
+                    }
+                    if (eligible.test(p) && !result[lhs[p]]) {
+                        result[lhs[p]] = true;
+                        worklist[size++] = lhs[p];
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Computes the non-terminals that are productive, and reachable from the initial one along productions that only mention
+     * productive non-terminals. These are the non-terminals kept by {@link Grammar#reduce()}. Takes linear time.
+     *
+     * @return the useful non-terminals.
+     */
+    Set<NonTerminal<T>> usefulNonTerminals() {
+        boolean[] productiveProductions = new boolean[rhs.length];
+        boolean[] productive = closeOver(p -> true, productiveProductions);
+        Set<NonTerminal<T>> useful = new HashSet<>();
+        Integer start = nonTerminalIds.get(initial);
+        if (start == null || !productive[start]) {
+            return useful;
+        }
+        boolean[] reachable = new boolean[nonTerminals.size()];
+        int[] worklist = new int[nonTerminals.size()];
+        int size = 0;
+        reachable[start] = true;
+        worklist[size++] = start;
+        int[][] productionsOf = new int[nonTerminals.size()][];
+        int[] counts = new int[nonTerminals.size()];
+        for (int nt : lhs) {
+            counts[nt]++;
+        }
+        for (int nt = 0; nt < productionsOf.length; nt++) {
+            productionsOf[nt] = new int[counts[nt]];
+            counts[nt] = 0;
+        }
+        for (int p = 0; p < lhs.length; p++) {
+            productionsOf[lhs[p]][counts[lhs[p]]++] = p;
+        }
+        while (size > 0) {
+            int nt = worklist[--size];
+            useful.add(nonTerminals.get(nt));
+            for (int p : productionsOf[nt]) {
+                if (!productiveProductions[p]) {
+                    continue;
+                }
+                for (int item : rhs[p]) {
+                    if (item >= 0 && !reachable[item]) {
+                        reachable[item] = true;
+                        worklist[size++] = item;
+                    }
+                }
+            }
+        }
+        return useful;
+    }
+
+    /**
+     * Gets the initial non-terminal symbol.
+     *
+     * @return the initial non-terminal symbol.
+     */
+    public NonTerminal<T> getInitial() {
+        return initial;
+    }
+
+    /**
+     * Gets the initial production rule, for an extended grammar.
+     *
+     * @return the initial production rule.
+     * @throws IllegalArgumentException if the grammar is not extended.
+     */
+    public ProductionRule<T> getInitialProductionRule() {
+        var initialRules = getRules(initial);
+        if (initialRules.size() != 1 || initialRules.get(0).items().size() != 1
+                || !(initialRules.get(0).items().get(0) instanceof NonTerminal<T>)) {
+            throw new IllegalArgumentException("Grammar must be extended!");
+        }
+        return initialRules.get(0);
+    }
+
+    /**
+     * Gets all non-terminals.
+     *
+     * @return the non-terminals, as an unmodifiable set.
+     */
+    public Set<NonTerminal<T>> getNonTerminals() {
+        return nonTerminalSet;
+    }
+
+    /**
+     * Gets all terminals of the grammar, including those that occurred in rules that were removed.
+     *
+     * @return the terminals, as an unmodifiable set.
+     */
+    public Set<T> getTerminals() {
+        return terminals;
+    }
+
+    /**
+     * Gets the number of non-terminals. Non-terminals have the ids 0 to this number minus one.
+     *
+     * @return the number of non-terminals.
+     */
+    public int getNonTerminalCount() {
+        return nonTerminals.size();
+    }
+
+    /**
+     * Gets a non-terminal by its id.
+     *
+     * @param id the id.
+     * @return the non-terminal.
+     * @throws IndexOutOfBoundsException if there is no non-terminal with that id.
+     */
+    public NonTerminal<T> getNonTerminal(int id) {
+        return nonTerminals.get(id);
+    }
+
+    /**
+     * Gets the id of a non-terminal.
+     *
+     * @param nt the non-terminal.
+     * @return its id, or -1 if the grammar does not have it.
+     */
+    public int getNonTerminalId(NonTerminal<T> nt) {
+        return nonTerminalIds.getOrDefault(nt, -1);
+    }
+
+    /**
+     * Gets the rules of a non-terminal.
+     *
+     * @param nt the non-terminal.
+     * @return its rules, as an unmodifiable list, which is empty if the grammar does not have the non-terminal.
+     */
+    public List<ProductionRule<T>> getRules(NonTerminal<T> nt) {
+        int id = getNonTerminalId(nt);
+        return id < 0 ? List.of() : rulesOf.get(id);
+    }
+
+    /**
+     * Gets the number of productions. Productions have the ids 0 to this number minus one, and those of each non-terminal are
+     * consecutive.
+     *
+     * @return the number of productions.
+     */
+    public int getProductionCount() {
+        return rules.size();
+    }
+
+    /**
+     * Gets the LHS of a production.
+     *
+     * @param p the id of the production.
+     * @return its LHS.
+     */
+    public NonTerminal<T> getLhs(int p) {
+        return nonTerminals.get(lhs[p]);
+    }
+
+    /**
+     * Gets the RHS of a production.
+     *
+     * @param p the id of the production.
+     * @return its RHS.
+     */
+    public ProductionRule<T> getRule(int p) {
+        return rules.get(p);
+    }
+
+    /**
+     * Gets the productions in whose RHS a non-terminal occurs.
+     *
+     * @param nt the non-terminal.
+     * @return the ids of the productions, each once.
+     */
+    public int[] getProductionsUsing(NonTerminal<T> nt) {
+        int id = getNonTerminalId(nt);
+        return id < 0 ? new int[0] : usedIn[id].clone();
+    }
+
+    /**
+     * Checks whether a non-terminal can derive the empty word.
+     *
+     * @param nt the non-terminal.
+     * @return true iff it is nullable.
+     */
+    public boolean isNullable(NonTerminal<T> nt) {
+        int id = getNonTerminalId(nt);
+        return id >= 0 && nullable[id];
+    }
+
+    /**
+     * Check if the grammar has the production rule from -> to.
+     *
+     * @param from the LHS
+     * @param to   the RHS
+     * @return if from -> to is a production rule in the grammar.
+     */
+    public boolean hasProductionRule(NonTerminal<T> from, ProductionRule<T> to) {
+        var set = ruleSets.get(from);
+        return set != null && set.contains(to);
+    }
+
+    /**
+     * Gets the declared precedence of a terminal.
+     *
+     * @param terminal the terminal.
+     * @return its precedence, or nothing if none was declared.
+     * @see Grammar#getPrecedence(Object)
+     */
+    public Optional<Precedence> getPrecedence(T terminal) {
+        return Optional.ofNullable(precedences.get(terminal));
+    }
+
+    /**
+     * Gets the precedence of a production rule.
+     *
+     * @param from the LHS
+     * @param to   the RHS
+     * @return its precedence, or nothing if it has none.
+     * @see Grammar#getPrecedence(NonTerminal, ProductionRule)
+     */
+    public Optional<Precedence> getPrecedence(NonTerminal<T> from, ProductionRule<T> to) {
+        return Optional.ofNullable(Grammar.precedenceOf(precedences, precedenceOverrides, from, to));
+    }
+
+    /**
+     * Creates a mutable grammar with the same rules.
+     *
+     * @return a new grammar.
+     */
+    public Grammar<T> toGrammar() {
+        Grammar<T> grammar = new Grammar<>(nonTerminals, initial);
+        for (int p = 0; p < rules.size(); p++) {
+            grammar.addProduction(getLhs(p), rules.get(p));
+        }
+        grammar.getTerminals().addAll(terminals);
+        grammar.setPrecedences(precedences, precedenceOverrides);
+        return grammar;
+    }
+}
@@ -0,0 +1,30 @@
+package jojomodding.parsergenerator.grammar;
+
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * A {@link ProductionRule#formatter() formatter} that only concatenates the texts of the children with literals,
+ * where neither the literals nor which children appear depend on what the texts of the children are.
+ * <p>
+ * This lets a {@link jojomodding.parsergenerator.parsed.TreeRenderer} find the layout of the formatter once and write trees
+ * literal by literal, without building the text of any subtree. Other formatters are applied to the rendered texts of the
+ * children, so marking a formatter that inspects them yields wrong texts.
+ *
+ * @param <T> the type of terminals.
+ */
+@FunctionalInterface
+public interface ConcatenatingFormatter<T> extends BiFunction<NonTerminal<T>, List<String>, String> {
+
+    /**
+     * Marks a formatter as only concatenating the texts of the children. This only helps the compiler to pick this type for a
+     * lambda, e.g. {@code new ProductionRule<>(concatenating((x, y) -> "(" + y.get(0) + ")"), ...)}. Like other lambdas without
+     * captured variables, the formatter is then the same object each time, so production rules built by the same code are equal.
+     *
+     * @param formatter the formatter, e.g. a lambda.
+     * @return the same formatter.
+     */
+    static <T> ConcatenatingFormatter<T> concatenating(ConcatenatingFormatter<T> formatter) {
+        return formatter;
+    }
+}
@@ -2,14 +2,18 @@ package jojomodding.parsergenerator.grammar;
 
 import static jojomodding.parsergenerator.grammar.ProductionRule.of;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import jojomodding.parsergenerator.grammar.Precedence.Associativity;
+import jojomodding.parsergenerator.parsed.TreeRenderer;
 import jojomodding.parsergenerator.utils.Utils;
 
 /**
@@ -39,6 +43,26 @@ public class Grammar<T> {
      */
     private NonTerminal<T> initial;
 
+    /**
+     * The declared precedence of terminals.
+     */
+    private final Map<T, Precedence> precedences;
+
+    /**
+     * For some production rules, the terminal whose precedence they have instead of that of their last terminal.
+     */
+    private final Map<NonTerminal<T>, Map<ProductionRule<T>, T>> precedenceOf;
+
+    /**
+     * The snapshot of this grammar returned by {@link #compile()}, or null if the grammar changed since.
+     */
+    private CompiledGrammar<T> compiled;
+
+    /**
+     * Renders the trees over this grammar, and caches the layouts of their formatters.
+     */
+    private final TreeRenderer renderer = new TreeRenderer();
+
     /**
      * Creates a new grammar.
      *
@@ -56,6 +80,8 @@ public class Grammar<T> {
             productionRules.put(T, new HashSet<>());
         }
         terminals = new HashSet<>();
+        precedences = new HashMap<>();
+        precedenceOf = new HashMap<>();
     }
 
     /**
@@ -68,6 +94,22 @@ public class Grammar<T> {
         this(nonTerminals.stream().map(NonTerminal<T>::new).collect(Collectors.toUnmodifiableSet()), new NonTerminal<>(initial));
     }
 
+    /**
+     * Creates a copy of a grammar. Changes to either grammar do not affect the other.
+     *
+     * @param other the grammar to copy.
+     */
+    public Grammar(Grammar<T> other) {
+        this.nonTerminals = new HashSet<>(other.nonTerminals);
+        this.productionRules = new HashMap<>();
+        other.productionRules.forEach((k, v) -> productionRules.put(k, new HashSet<>(v)));
+        this.terminals = new HashSet<>(other.terminals);
+        this.initial = other.initial;
+        this.precedences = new HashMap<>(other.precedences);
+        this.precedenceOf = new HashMap<>();
+        other.precedenceOf.forEach((k, v) -> precedenceOf.put(k, new HashMap<>(v)));
+    }
+
     /**
      * Check if a non-terminal is defined by this grammar.
      *
@@ -106,7 +148,9 @@ public class Grammar<T> {
         if (!nonTerminals.contains(T) || !to.isWellFormed(this)) {
             throw new IllegalArgumentException("Invalid production rule!");
         }
-        this.productionRules.get(T).add(to);
+        if (this.productionRules.get(T).add(to)) {
+            compiled = null;
+        }
         to.items().stream().flatMap(x -> x instanceof Terminal<T> tt ? Stream.of(tt.terminal()) : Stream.empty()).forEach(
                 terminals::add);
     }
@@ -134,6 +178,123 @@ public class Grammar<T> {
         addProduction(T, new ProductionRule<>(List.of(to)));
     }
 
+    /**
+     * Declares the precedence of some terminals, like %left, %right and %nonassoc in yacc. All terminals of one declaration
+     * have the same level, and each declaration binds tighter than the ones before it.
+     * A production rule has the precedence of its last terminal, unless set by {@link #setPrecedence(NonTerminal, ProductionRule, Object)}.
+     * The parser generator uses these to resolve shift-reduce conflicts, so that e.g. E -> E + E | E * E | 0 is deterministic.
+     *
+     * @param associativity how the terminals group.
+     * @param terminals     the terminals, which need not occur in the grammar, so that they can be used for rules.
+     * @throws IllegalArgumentException if a terminal already has a precedence.
+     */
+    @SafeVarargs
+    public final void declarePrecedence(Associativity associativity, T... terminals) {
+        int level = precedences.values().stream().mapToInt(Precedence::level).max().orElse(0) + 1;
+        for (T t : terminals) {
+            if (precedences.containsKey(t)) {
+                throw new IllegalArgumentException("Precedence of " + t + " is already declared!");
+            }
+        }
+        for (T t : terminals) {
+            precedences.put(t, new Precedence(level, associativity));
+        }
+        compiled = null;
+    }
+
+    /**
+     * Gives a production rule the precedence of a terminal, like %prec in yacc.
+     * This is needed if the last terminal of the rule does not determine how it binds, e.g. for a unary minus.
+     *
+     * @param from     the LHS
+     * @param to       the RHS
+     * @param terminal the terminal whose precedence the rule gets.
+     * @throws IllegalArgumentException if the grammar has no such rule, or the terminal has no declared precedence.
+     */
+    public void setPrecedence(NonTerminal<T> from, ProductionRule<T> to, T terminal) {
+        if (!hasProductionRule(from, to)) {
+            throw new IllegalArgumentException("Invalid production rule!");
+        }
+        if (!precedences.containsKey(terminal)) {
+            throw new IllegalArgumentException("Precedence of " + terminal + " is not declared!");
+        }
+        precedenceOf.computeIfAbsent(from, $ -> new HashMap<>()).put(to, terminal);
+        compiled = null;
+    }
+
+    /**
+     * Gets the declared precedence of a terminal.
+     *
+     * @param terminal the terminal.
+     * @return its precedence, or nothing if none was declared.
+     */
+    public Optional<Precedence> getPrecedence(T terminal) {
+        return Optional.ofNullable(precedences.get(terminal));
+    }
+
+    /**
+     * Gets the precedence of a production rule, which is that of the terminal set for it, or otherwise that of its last terminal.
+     *
+     * @param from the LHS
+     * @param to   the RHS
+     * @return its precedence, or nothing if that terminal has no declared precedence or there is none.
+     */
+    public Optional<Precedence> getPrecedence(NonTerminal<T> from, ProductionRule<T> to) {
+        return Optional.ofNullable(precedenceOf(precedences, precedenceOf, from, to));
+    }
+
+    /**
+     * Looks up the precedence of a production rule.
+     *
+     * @return the precedence, or null.
+     */
+    static <T> Precedence precedenceOf(Map<T, Precedence> precedences, Map<NonTerminal<T>, Map<ProductionRule<T>, T>> precedenceOf,
+            NonTerminal<T> from, ProductionRule<T> to) {
+        T terminal = precedenceOf.getOrDefault(from, Map.of()).get(to);
+        if (terminal == null) {
+            for (var item : to.items()) {
+                if (item instanceof Terminal<T> t) {
+                    terminal = t.terminal();
+                }
+            }
+        }
+        return terminal == null ? null : precedences.get(terminal);
+    }
+
+    /**
+     * Gets the declared precedences of terminals.
+     *
+     * @return the precedences, as an unmodifiable map.
+     */
+    Map<T, Precedence> getPrecedences() {
+        return Map.copyOf(precedences);
+    }
+
+    /**
+     * Gets the terminals whose precedence was set for production rules.
+     *
+     * @return for each LHS and RHS, the terminal, as an unmodifiable map.
+     */
+    Map<NonTerminal<T>, Map<ProductionRule<T>, T>> getPrecedenceOverrides() {
+        Map<NonTerminal<T>, Map<ProductionRule<T>, T>> copy = new HashMap<>();
+        precedenceOf.forEach((k, v) -> copy.put(k, Map.copyOf(v)));
+        return Map.copyOf(copy);
+    }
+
+    /**
+     * Takes over the precedences of another grammar.
+     *
+     * @param precedences the declared precedences of terminals.
+     * @param overrides   the terminals whose precedence was set for production rules.
+     */
+    void setPrecedences(Map<T, Precedence> precedences, Map<NonTerminal<T>, Map<ProductionRule<T>, T>> overrides) {
+        this.precedences.clear();
+        this.precedences.putAll(precedences);
+        this.precedenceOf.clear();
+        overrides.forEach((k, v) -> precedenceOf.put(k, new HashMap<>(v)));
+        compiled = null;
+    }
+
     /**
      * Checks whether this grammar is extended. An extended grammar has an initial non-terminal S' that only has one production rule S' -> S for some
      * other non-terminal S
@@ -159,90 +320,96 @@ public class Grammar<T> {
         if (isExtended()) {
             return;
         }
+        augment();
+    }
+
+    /**
+     * Extends this grammar with a fresh initial non-terminal S' and the production rule S' -> S for the old initial non-terminal S,
+     * even if it is already extended. Unlike {@link #extend()}, this keeps the production rule S -> A of a grammar whose initial
+     * non-terminal only has that one, so that the trees of a parser for this grammar have S at the root.
+     */
+    public void augment() {
         String name = Utils.freshName("Start", x -> nonTerminals.contains(new NonTerminal<T>(x)));
         var S = new NonTerminal<T>(name);
         nonTerminals.add(S);
         productionRules.put(S, new HashSet<>());
         addProduction(S, of(initial));
         initial = S;
+        compiled = null;
     }
 
     /**
-     * Computes the productive non-terminals.
-     * A non-terminal is productive if it can generate a string.
-     * @param considered the set of non-terminals which are to be included in the analysis.
-     * @return A set containing all productive non-terminals also contained in considered.
-     */
-    private Set<NonTerminal<T>> computeProductiveNonterminals(Set<NonTerminal<T>> considered) {
-        Set<NonTerminal<T>> productive = new HashSet<>();
-        boolean change;
-        do {
-            change = false;
-            outer:
-            for (NonTerminal<T> T : considered) {
-                if (productive.contains(T)) {
-                    continue;
-                }
-                for (var prod : productionRules.get(T)) {
-                    if (prod.items().stream().allMatch(x ->
-                            x instanceof Terminal<T> || (x instanceof NonTerminal<T> nt && productive.contains(nt))
-                    )) {
-                        change |= productive.add(T);
-                        continue outer;
-                    }
-                }
-            }
-        } while (change);
-        return productive;
-    }
-
-    /**
-     * Computes the reachable non-terminals.
-     * These are all non-terminals that can be generated when starting at the initial state.
-     * @return The set of all reachable non-terminals.
-     */
-    private Set<NonTerminal<T>> computeReachableNonterminals() {
-        Set<NonTerminal<T>> reachable = new HashSet<>();
-        reachable.add(initial);
-        boolean change;
-        do {
-            change = false;
-            for (NonTerminal<T> T : Set.copyOf(reachable)) {
-                for (var prod : productionRules.get(T)) {
-                    for (var elem : prod.items()) {
-                        if (elem instanceof NonTerminal<T> nbr) {
-                            change |= reachable.add(nbr);
-                        }
-                    }
-                }
+     * Extends this grammar for several entry points.
+     * For each entry point S, a fresh non-terminal S' with the single production rule S' -> S is added.
+     * A fresh initial non-terminal with a production rule to each S' keeps all of them reachable.
+     * The initial non-terminal is not meant to be parsed itself; instead, each S' serves as the initial non-terminal of an extended grammar.
+     * @param entryPoints the non-terminals to parse, which must be distinct.
+     * @return the added non-terminals S', in the order of the entry points.
+     * @throws IllegalArgumentException if there are no entry points, or some are not defined by this grammar or occur twice.
+     */
+    public List<NonTerminal<T>> extend(List<NonTerminal<T>> entryPoints) {
+        if (entryPoints.isEmpty() || Set.copyOf(entryPoints).size() != entryPoints.size()) {
+            throw new IllegalArgumentException("Entry points must be distinct, and there must be one!");
+        }
+        for (var entry : entryPoints) {
+            if (!nonTerminals.contains(entry)) {
+                throw new IllegalArgumentException("Unknown entry point " + entry.name());
             }
-        } while (change);
-        return reachable;
+        }
+        var root = new NonTerminal<T>(Utils.freshName("Start", x -> nonTerminals.contains(new NonTerminal<T>(x))));
+        nonTerminals.add(root);
+        productionRules.put(root, new HashSet<>());
+        List<NonTerminal<T>> extended = new ArrayList<>();
+        for (var entry : entryPoints) {
+            var S = new NonTerminal<T>(Utils.freshName(entry.name() + "'", x -> nonTerminals.contains(new NonTerminal<T>(x))));
+            nonTerminals.add(S);
+            productionRules.put(S, new HashSet<>());
+            addProduction(S, of(entry));
+            addProduction(root, of(S));
+            extended.add(S);
+        }
+        initial = root;
+        compiled = null;
+        return extended;
     }
 
     /**
      * Ensures that this grammar is reduced.
      * A grammar is reduced if all states are productive and reachable.
-     * This method remove all states that are not such.
+     * This method remove all states that are not such, and all production rules mentioning them.
+     * Takes time linear in the size of the grammar.
      * @throws IllegalArgumentException if the grammar is empty.
      */
     public void reduce() {
-        Set<NonTerminal<T>> productiveAndReachable = new HashSet<>(nonTerminals);
-        while (true) {
-            var reachable = computeReachableNonterminals();
-            boolean change = false;
-            change |= productiveAndReachable.retainAll(reachable);
-            var productive = computeProductiveNonterminals(productiveAndReachable);
-            change |= productiveAndReachable.retainAll(productive);
-            if (!change) {
-                break;
-            }
-        }
-        if (productiveAndReachable.isEmpty() || !productiveAndReachable.contains(initial)) {
+        Set<NonTerminal<T>> productiveAndReachable = compile().usefulNonTerminals();
+        if (!productiveAndReachable.contains(initial)) {
             throw new IllegalArgumentException("Your Grammar must contain at least one word!");
         }
         this.nonTerminals.retainAll(productiveAndReachable);
         this.productionRules.keySet().retainAll(productiveAndReachable);
+        for (var rules : productionRules.values()) {
+            rules.removeIf(rule -> !rule.isWellFormed(this));
+        }
+        compiled = null;
+    }
+
+    /**
+     * Gets an immutable, indexed snapshot of this grammar. The snapshot is cached until this grammar changes.
+     * @return the snapshot.
+     */
+    public CompiledGrammar<T> compile() {
+        if (compiled == null) {
+            compiled = new CompiledGrammar<>(this);
+        }
+        return compiled;
+    }
+
+    /**
+     * Gets the renderer of the trees over this grammar, which is shared so that each formatter's layout is only found once.
+     * @return the renderer.
+     */
+    public TreeRenderer getRenderer() {
+        return renderer;
     }
 
     /**
@@ -0,0 +1,280 @@
+package jojomodding.parsergenerator.grammar;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generates random reduced grammars over characters, e.g. to find out how the parser generator scales.
+ * The non-terminals are named N0, N1, ..., with N0 being the initial one, and the terminals are 'a', 'b', ...
+ * <p>
+ * Each non-terminal Ni gets a base rule that only mentions terminals and non-terminals Nj with j greater than i, so every
+ * non-terminal is productive. Together, the base rules form a tree that mentions each non-terminal other than N0 once, so every
+ * non-terminal is reachable. All further rules are shaped according to the {@link Recursion recursion}.
+ * <p>
+ * If requested, the grammar is LR(1): Then each rule begins with a terminal with which no other rule for the same non-terminal
+ * begins, and there are no epsilon rules. Such a grammar is LL(1), and therefore LR(k) for every k &gt;= 1.
+ */
+public final class GrammarGenerator {
+
+    /**
+     * The highest number of terminals, so that they remain in the basic multilingual plane.
+     */
+    private static final int MAX_TERMINALS = 0xD800 - 'a';
+
+    /**
+     * How the rules beyond the base rules are shaped.
+     */
+    public enum Recursion {
+        /**
+         * Rules only mention non-terminals with a higher index, so the language is finite.
+         */
+        NONE,
+        /**
+         * Rules are of the form A -> A x, for some non-empty x.
+         */
+        LEFT,
+        /**
+         * Rules are of the form A -> x A, for some non-empty x.
+         */
+        RIGHT,
+        /**
+         * Rules mention arbitrary non-terminals at arbitrary positions.
+         */
+        MIXED
+    }
+
+    private int nonTerminals = 10;
+    private int rules = 30;
+    private int terminals = 8;
+    private int maxLength = 4;
+    private double nullable = 0;
+    private Recursion recursion = Recursion.MIXED;
+    private boolean guaranteeLR = false;
+
+    /**
+     * Sets the number of non-terminals, 10 by default.
+     *
+     * @param nonTerminals the number of non-terminals.
+     * @return this generator.
+     */
+    public GrammarGenerator nonTerminals(int nonTerminals) {
+        if (nonTerminals <= 0) {
+            throw new IllegalArgumentException("There must be a non-terminal!");
+        }
+        this.nonTerminals = nonTerminals;
+        return this;
+    }
+
+    /**
+     * Sets the total number of rules, 30 by default. It must be at least the number of non-terminals.
+     *
+     * @param rules the number of rules.
+     * @return this generator.
+     */
+    public GrammarGenerator rules(int rules) {
+        if (rules <= 0) {
+            throw new IllegalArgumentException("There must be a rule!");
+        }
+        this.rules = rules;
+        return this;
+    }
+
+    /**
+     * Sets the number of terminals, 8 by default. If the grammar is to be LR(1), more terminals are used when a non-terminal has more rules.
+     *
+     * @param terminals the number of terminals.
+     * @return this generator.
+     */
+    public GrammarGenerator terminals(int terminals) {
+        if (terminals <= 0 || terminals > MAX_TERMINALS) {
+            throw new IllegalArgumentException("Invalid number of terminals " + terminals);
+        }
+        this.terminals = terminals;
+        return this;
+    }
+
+    /**
+     * Sets the maximal length of the RHS of a rule, 4 by default.
+     *
+     * @param maxLength the maximal length.
+     * @return this generator.
+     */
+    public GrammarGenerator maxLength(int maxLength) {
+        if (maxLength <= 0) {
+            throw new IllegalArgumentException("Rules must be allowed to have items!");
+        }
+        this.maxLength = maxLength;
+        return this;
+    }
+
+    /**
+     * Sets the probability with which a rule beyond the base rules is an epsilon rule, 0 by default.
+     * Each non-terminal has at most one epsilon rule.
+     *
+     * @param nullable the probability.
+     * @return this generator.
+     */
+    public GrammarGenerator nullable(double nullable) {
+        if (!(nullable >= 0 && nullable <= 1)) {
+            throw new IllegalArgumentException("Invalid probability " + nullable);
+        }
+        this.nullable = nullable;
+        return this;
+    }
+
+    /**
+     * Sets the shape of the rules beyond the base rules, {@link Recursion#MIXED} by default.
+     *
+     * @param recursion the shape.
+     * @return this generator.
+     */
+    public GrammarGenerator recursion(Recursion recursion) {
+        this.recursion = recursion;
+        return this;
+    }
+
+    /**
+     * Sets whether the grammar must be LR(1), false by default. This is not possible with left recursion or epsilon rules.
+     *
+     * @param guaranteeLR whether the grammar must be LR(1).
+     * @return this generator.
+     */
+    public GrammarGenerator guaranteeLR(boolean guaranteeLR) {
+        this.guaranteeLR = guaranteeLR;
+        return this;
+    }
+
+    /**
+     * Generates a grammar.
+     *
+     * @param random the source of randomness. The same seed results in the same grammar.
+     * @return the grammar, which is reduced and has exactly the requested number of rules.
+     * @throws IllegalArgumentException if the settings are contradictory.
+     */
+    public Grammar<Character> generate(Random random) {
+        if (rules < nonTerminals) {
+            throw new IllegalArgumentException("Each non-terminal needs a rule!");
+        }
+        if (guaranteeLR && (recursion == Recursion.LEFT || nullable > 0)) {
+            throw new IllegalArgumentException("Can only guarantee LR(1) without left recursion and epsilon rules!");
+        }
+        // the number of items other than the leading terminal that makes the grammar LR(1)
+        int capacity = guaranteeLR ? maxLength - 1 : maxLength;
+        if (capacity == 0 && nonTerminals > 1) {
+            throw new IllegalArgumentException("Rules are too short to mention non-terminals!");
+        }
+        if ((recursion == Recursion.LEFT || recursion == Recursion.RIGHT) && capacity < (guaranteeLR ? 1 : 2)) {
+            throw new IllegalArgumentException("Rules are too short for recursion!");
+        }
+        List<NonTerminal<Character>> nts = new ArrayList<>(nonTerminals);
+        for (int i = 0; i < nonTerminals; i++) {
+            nts.add(new NonTerminal<>("N" + i));
+        }
+        // a random spanning tree, in which each node comes after its parent and has at most capacity children
+        List<List<Integer>> children = new ArrayList<>(nonTerminals);
+        for (int i = 0; i < nonTerminals; i++) {
+            children.add(new ArrayList<>());
+            if (i > 0) {
+                int parent = random.nextInt(i);
+                while (children.get(parent).size() == capacity) {
+                    parent++;
+                }
+                children.get(parent).add(i);
+            }
+        }
+        List<List<List<ProductionItem<Character>>>> rhs = new ArrayList<>(nonTerminals);
+        List<Set<List<ProductionItem<Character>>>> seen = new ArrayList<>(nonTerminals);
+        for (int i = 0; i < nonTerminals; i++) {
+            rhs.add(new ArrayList<>());
+            seen.add(new HashSet<>());
+        }
+        for (int i = 0; i < nonTerminals; i++) {
+            List<ProductionItem<Character>> body = new ArrayList<>();
+            for (int child : children.get(i)) {
+                body.add(nts.get(child));
+            }
+            // only add terminals, so that the shortest sentence grows at most linearly with the number of non-terminals
+            int length = Math.max(Math.max(guaranteeLR ? 0 : 1, body.size()), random.nextInt(capacity + 1));
+            while (body.size() < length) {
+                body.add(terminal(random));
+            }
+            Collections.shuffle(body, random);
+            rhs.get(i).add(body);
+            seen.get(i).add(body);
+        }
+        boolean[] hasEpsilon = new boolean[nonTerminals];
+        for (int r = nonTerminals; r < rules; r++) {
+            int i = random.nextInt(nonTerminals);
+            List<ProductionItem<Character>> body;
+            if (!guaranteeLR && !hasEpsilon[i] && random.nextDouble() < nullable) {
+                hasEpsilon[i] = true;
+                body = new ArrayList<>();
+            } else {
+                // with a leading terminal that distinguishes the rules, the bodies need not be distinct
+                int attempt = 0;
+                do {
+                    if (attempt++ == 100) {
+                        throw new IllegalArgumentException("Can not find another rule for " + nts.get(i).name() + "!");
+                    }
+                    body = extraRule(i, capacity, nts, random);
+                } while (!guaranteeLR && seen.get(i).contains(body));
+            }
+            rhs.get(i).add(body);
+            seen.get(i).add(body);
+        }
+        Grammar<Character> grammar = new Grammar<>(nts, nts.get(0));
+        for (int i = 0; i < nonTerminals; i++) {
+            if (guaranteeLR && rhs.get(i).size() > MAX_TERMINALS) {
+                throw new IllegalArgumentException("Too many rules for " + nts.get(i).name() + "!");
+            }
+            int key = 0;
+            for (var body : rhs.get(i)) {
+                List<ProductionItem<Character>> items = body;
+                if (guaranteeLR) {
+                    items = new ArrayList<>(body.size() + 1);
+                    items.add(new Terminal<>((char) ('a' + key++)));
+                    items.addAll(body);
+                }
+                grammar.addProduction(nts.get(i), new ProductionRule<>(items));
+            }
+        }
+        return grammar;
+    }
+
+    /**
+     * Generates a rule for Ni beyond its base rule.
+     */
+    private List<ProductionItem<Character>> extraRule(int i, int capacity, List<NonTerminal<Character>> nts, Random random) {
+        List<ProductionItem<Character>> body = new ArrayList<>();
+        int length = 1 + random.nextInt(Math.max(1, capacity));
+        switch (recursion) {
+            case NONE -> {
+                while (body.size() < length) {
+                    body.add(i + 1 < nonTerminals && random.nextBoolean() ? nts.get(i + 1 + random.nextInt(nonTerminals - i - 1)) : terminal(random));
+                }
+            }
+            case LEFT, RIGHT -> {
+                int minimum = guaranteeLR ? 0 : 1;
+                int others = minimum + random.nextInt(capacity - minimum);
+                while (body.size() < others) {
+                    body.add(random.nextBoolean() ? nts.get(random.nextInt(nonTerminals)) : terminal(random));
+                }
+                body.add(recursion == Recursion.LEFT ? 0 : body.size(), nts.get(i));
+            }
+            case MIXED -> {
+                while (body.size() < length) {
+                    body.add(random.nextBoolean() ? nts.get(random.nextInt(nonTerminals)) : terminal(random));
+                }
+            }
+        }
+        return body;
+    }
+
+    private Terminal<Character> terminal(Random random) {
+        return new Terminal<>((char) ('a' + random.nextInt(terminals)));
+    }
+}
@@ -0,0 +1,31 @@
+package jojomodding.parsergenerator.grammar;
+
+/**
+ * The precedence of a terminal or production rule, which resolves shift-reduce conflicts as in yacc.
+ * When the parser can either reduce along a rule or shift a terminal, it reduces if the rule has the higher level,
+ * and shifts if the terminal has the higher level. On the same level, the associativity decides.
+ *
+ * @param level         the level. Higher levels bind tighter.
+ * @param associativity how operators on the same level group.
+ * @see Grammar#declarePrecedence(Associativity, Object[])
+ */
+public record Precedence(int level, Associativity associativity) {
+
+    /**
+     * How operators of the same precedence level group.
+     */
+    public enum Associativity {
+        /**
+         * a + b + c is (a + b) + c, i.e. reduce.
+         */
+        LEFT,
+        /**
+         * a ^ b ^ c is a ^ (b ^ c), i.e. shift.
+         */
+        RIGHT,
+        /**
+         * a = b = c is an error.
+         */
+        NONASSOC
+    }
+}
@@ -16,7 +16,7 @@ import jojomodding.parsergenerator.utils.Utils;
 public record ProductionRule<T>(List<ProductionItem<T>> items, BiFunction<NonTerminal<T>, List<String>, String> formatter) {
 
     public ProductionRule(List<ProductionItem<T>> items) {
-        this(items, (element, children) -> "(" + element.name() + ":=" + Utils.formatWord(children, Function.identity()) + ")");
+        this(items, (ConcatenatingFormatter<T>) (element, children) -> "(" + element.name() + ":=" + Utils.formatWord(children, Function.identity()) + ")");
     }
 
     @SafeVarargs
@@ -0,0 +1,466 @@
+package jojomodding.parsergenerator.grammar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates random sentences of a given length from a grammar, by counting derivations.
+ * <p>
+ * For each non-terminal and each length up to some maximum, the generator counts the derivations of words of that length.
+ * A sentence is then derived top-down, choosing each rule and how to split the length among its items with probability
+ * proportional to the number of derivations that remain. So each derivation of the requested length is equally likely, except that
+ * <ul>
+ *     <li>there is only one derivation of the empty word from each nullable non-terminal, and</li>
+ *     <li>rules that derive a non-terminal from the same cycle of unit rules (e.g. A -> B and B -> A, or A -> B C where C is nullable)
+ *     are not counted, since otherwise there could be infinitely many derivations. Instead, each non-terminal on such a cycle derives
+ *     everything the others derive.</li>
+ * </ul>
+ * Counting takes time quadratic in the maximal length, and memory linear in it times the total length of all rules.
+ * Counts are kept as doubles and rescaled geometrically, so that they do not overflow for long sentences.
+ *
+ * @param <T> the type of terminals.
+ */
+public final class SentenceGenerator<T> {
+
+    /**
+     * Counts are rescaled once they get larger than this.
+     */
+    private static final double RESCALE_LIMIT = 1e100;
+
+    private final int maxLength;
+    private final List<T> terminals;
+    private final int initial;
+    /**
+     * For each rule, its items, where non-terminal i is encoded as i and terminal i as -1 - i.
+     */
+    private final int[][] rules;
+    private final int[] ruleLhs;
+    /**
+     * For each non-terminal, the rules of the non-terminals on the same cycle of unit rules, including its own.
+     */
+    private final int[][] componentRules;
+    private final int[] component;
+    /**
+     * For each rule and position i, how many items j &gt;= i are non-terminals on the same cycle of unit rules as the LHS,
+     * while all other items from i on are nullable.
+     */
+    private final int[][] unitItems;
+    /**
+     * For each cycle of unit rules and length n, the (scaled) number of derivations of words of length n from its non-terminals.
+     */
+    private final double[][] counts;
+    /**
+     * For each rule, position i and length n, the (scaled) number of derivations of words of length n from the items from i on.
+     */
+    private final double[][][] suffixes;
+    /**
+     * The weight of a terminal. A derivation of a word of length n is counted as x^n instead of 1.
+     */
+    private double x = 1;
+
+    /**
+     * Creates a generator, and counts the derivations.
+     *
+     * @param grammar   the grammar.
+     * @param maxLength the maximal length of sentences to be generated.
+     */
+    public SentenceGenerator(Grammar<T> grammar, int maxLength) {
+        if (maxLength < 0) {
+            throw new IllegalArgumentException("Invalid length " + maxLength);
+        }
+        this.maxLength = maxLength;
+        // sort everything, so that the same seed gives the same sentence in every JVM
+        var productionRules = grammar.getProductionRules();
+        List<NonTerminal<T>> nts = productionRules.keySet().stream().sorted(Comparator.comparing(NonTerminal::name)).toList();
+        Map<NonTerminal<T>, Integer> ntIndex = new HashMap<>();
+        nts.forEach(nt -> ntIndex.put(nt, ntIndex.size()));
+        Map<T, Integer> terminalIndex = new HashMap<>();
+        this.terminals = new ArrayList<>();
+        List<int[]> rules = new ArrayList<>();
+        List<Integer> lhs = new ArrayList<>();
+        for (var nt : nts) {
+            for (var rule : productionRules.get(nt).stream().sorted(Comparator.comparing(ProductionRule::toString)).toList()) {
+                int[] items = new int[rule.items().size()];
+                for (int i = 0; i < items.length; i++) {
+                    if (rule.items().get(i) instanceof NonTerminal<T> n) {
+                        items[i] = ntIndex.get(n);
+                    } else if (rule.items().get(i) instanceof Terminal<T> t) {
+                        items[i] = -1 - terminalIndex.computeIfAbsent(t.terminal(), $ -> {
+                            terminals.add(t.terminal());
+                            return terminals.size() - 1;
+                        });
+                    }
+                }
+                rules.add(items);
+                lhs.add(ntIndex.get(nt));
+            }
+        }
+        this.rules = rules.toArray(new int[0][]);
+        this.ruleLhs = lhs.stream().mapToInt(Integer::intValue).toArray();
+        this.initial = ntIndex.get(grammar.getInitial());
+        boolean[] nullable = nullable(nts.size());
+        int[][] components = unitComponents(nts.size(), nullable);
+        this.component = new int[nts.size()];
+        this.componentRules = new int[nts.size()][];
+        this.counts = new double[components.length][maxLength + 1];
+        for (int c = 0; c < components.length; c++) {
+            for (int nt : components[c]) {
+                component[nt] = c;
+            }
+        }
+        for (int c = 0; c < components.length; c++) {
+            List<Integer> members = new ArrayList<>();
+            for (int r = 0; r < this.rules.length; r++) {
+                if (component[ruleLhs[r]] == c) {
+                    members.add(r);
+                }
+            }
+            int[] memberRules = members.stream().mapToInt(Integer::intValue).toArray();
+            for (int nt : components[c]) {
+                componentRules[nt] = memberRules;
+            }
+        }
+        this.unitItems = new int[this.rules.length][];
+        this.suffixes = new double[this.rules.length][][];
+        for (int r = 0; r < this.rules.length; r++) {
+            int[] items = this.rules[r];
+            unitItems[r] = new int[items.length + 1];
+            suffixes[r] = new double[items.length + 1][maxLength + 1];
+            for (int i = 0; i < items.length; i++) {
+                for (int j = i; j < items.length; j++) {
+                    if (items[j] >= 0 && component[items[j]] == component[ruleLhs[r]] && nullableExcept(items, i, j, nullable)) {
+                        unitItems[r][i]++;
+                    }
+                }
+            }
+        }
+        count(components, nullable);
+    }
+
+    /**
+     * Computes which non-terminals are nullable.
+     */
+    private boolean[] nullable(int nonTerminals) {
+        boolean[] nullable = new boolean[nonTerminals];
+        boolean change;
+        do {
+            change = false;
+            for (int r = 0; r < rules.length; r++) {
+                if (!nullable[ruleLhs[r]] && nullableExcept(rules[r], 0, -1, nullable)) {
+                    nullable[ruleLhs[r]] = true;
+                    change = true;
+                }
+            }
+        } while (change);
+        return nullable;
+    }
+
+    /**
+     * Checks whether all items from some position on are nullable, except one.
+     */
+    private static boolean nullableExcept(int[] items, int from, int except, boolean[] nullable) {
+        for (int i = from; i < items.length; i++) {
+            if (i != except && (items[i] < 0 || !nullable[items[i]])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the strongly connected components of the unit rules, where A -> B is a unit rule if A has a rule in which all items
+     * but B are nullable. Uses Tarjan's algorithm, iteratively.
+     *
+     * @return the components, each after all components reachable from it.
+     */
+    private int[][] unitComponents(int nonTerminals, boolean[] nullable) {
+        List<List<Integer>> edges = new ArrayList<>();
+        for (int nt = 0; nt < nonTerminals; nt++) {
+            edges.add(new ArrayList<>());
+        }
+        for (int r = 0; r < rules.length; r++) {
+            for (int j = 0; j < rules[r].length; j++) {
+                if (rules[r][j] >= 0 && nullableExcept(rules[r], 0, j, nullable)) {
+                    edges.get(ruleLhs[r]).add(rules[r][j]);
+                }
+            }
+        }
+        int[] index = new int[nonTerminals];
+        int[] low = new int[nonTerminals];
+        boolean[] onStack = new boolean[nonTerminals];
+        Arrays.fill(index, -1);
+        int[] stack = new int[nonTerminals];
+        int sp = 0;
+        int[] callStack = new int[nonTerminals];
+        int[] nextEdge = new int[nonTerminals];
+        int next = 0;
+        List<int[]> components = new ArrayList<>();
+        for (int root = 0; root < nonTerminals; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            callStack[depth++] = root;
+            index[root] = low[root] = next++;
+            stack[sp++] = root;
+            onStack[root] = true;
+            while (depth > 0) {
+                int v = callStack[depth - 1];
+                if (nextEdge[v] < edges.get(v).size()) {
+                    int w = edges.get(v).get(nextEdge[v]++);
+                    if (index[w] < 0) {
+                        index[w] = low[w] = next++;
+                        stack[sp++] = w;
+                        onStack[w] = true;
+                        callStack[depth++] = w;
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                    continue;
+                }
+                depth--;
+                if (depth > 0) {
+                    low[callStack[depth - 1]] = Math.min(low[callStack[depth - 1]], low[v]);
+                }
+                if (low[v] == index[v]) {
+                    int start = sp;
+                    do {
+                        onStack[stack[--start]] = false;
+                    } while (stack[start] != v);
+                    components.add(Arrays.copyOfRange(stack, start, sp));
+                    sp = start;
+                }
+            }
+        }
+        return components.toArray(new int[0][]);
+    }
+
+    /**
+     * Gets the (scaled) number of derivations of words of length n from an item.
+     */
+    private double weight(int item, int n) {
+        if (item < 0) {
+            return n == 1 ? x : 0;
+        }
+        return counts[component[item]][n];
+    }
+
+    /**
+     * Fills the tables, one length after another.
+     */
+    private void count(int[][] components, boolean[] nullable) {
+        for (int nt = 0; nt < component.length; nt++) {
+            counts[component[nt]][0] = nullable[nt] ? 1 : 0;
+        }
+        for (int r = 0; r < rules.length; r++) {
+            int[] items = rules[r];
+            suffixes[r][items.length][0] = 1;
+            for (int i = items.length - 1; i >= 0; i--) {
+                suffixes[r][i][0] = weight(items[i], 0) * suffixes[r][i + 1][0];
+            }
+        }
+        double[] pending = new double[rules.length];
+        for (int n = 1; n <= maxLength; n++) {
+            // first, everything that only needs shorter lengths
+            for (int r = 0; r < rules.length; r++) {
+                int[] items = rules[r];
+                for (int i = items.length - 1; i >= 0; i--) {
+                    double sum = 0;
+                    double[] rest = suffixes[r][i + 1];
+                    for (int k = 1; k < n; k++) {
+                        double w = weight(items[i], k);
+                        if (w != 0) {
+                            sum += w * rest[n - k];
+                        }
+                    }
+                    suffixes[r][i][n] = sum;
+                }
+            }
+            // then the derivations of length n, for each component after all components reachable by unit rules
+            for (int[] members : components) {
+                double total = 0;
+                for (int r : componentRules[members[0]]) {
+                    int[] items = rules[r];
+                    double excluded = 0;
+                    for (int i = items.length - 1; i >= 0; i--) {
+                        boolean unit = items[i] >= 0 && component[items[i]] == component[members[0]];
+                        excluded = suffixes[r][i][n] + (unit ? 0 : weight(items[i], n)) * suffixes[r][i + 1][0]
+                                + weight(items[i], 0) * excluded;
+                    }
+                    pending[r] = excluded;
+                    total += excluded;
+                }
+                counts[component[members[0]]][n] = total;
+            }
+            // finally, the derivations of length n from suffixes, including those along unit rules
+            for (int r = 0; r < rules.length; r++) {
+                int[] items = rules[r];
+                for (int i = items.length - 1; i >= 0; i--) {
+                    suffixes[r][i][n] += weight(items[i], n) * suffixes[r][i + 1][0] + weight(items[i], 0) * suffixes[r][i + 1][n];
+                }
+            }
+            double max = 0;
+            for (double[] count : counts) {
+                max = Math.max(max, count[n]);
+            }
+            if (max > RESCALE_LIMIT) {
+                rescale(n, Math.pow(max, -1.0 / n));
+            }
+        }
+    }
+
+    /**
+     * Multiplies all counts of words of length m by y^m, for all m up to n, which keeps them consistent.
+     */
+    private void rescale(int n, double y) {
+        double[] factors = new double[n + 1];
+        factors[0] = 1;
+        for (int m = 1; m <= n; m++) {
+            factors[m] = factors[m - 1] * y;
+        }
+        x *= y;
+        for (double[] count : counts) {
+            for (int m = 1; m <= n; m++) {
+                count[m] *= factors[m];
+            }
+        }
+        for (double[][] rule : suffixes) {
+            for (double[] suffix : rule) {
+                for (int m = 1; m <= n; m++) {
+                    suffix[m] *= factors[m];
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether the grammar has a sentence of some length.
+     *
+     * @param length the length.
+     * @return whether a sentence of that length can be generated.
+     * @throws IllegalArgumentException if the length is longer than the maximal length.
+     */
+    public boolean hasSentence(int length) {
+        if (length < 0 || length > maxLength) {
+            throw new IllegalArgumentException("Invalid length " + length);
+        }
+        return counts[component[initial]][length] > 0;
+    }
+
+    /**
+     * Generates a random sentence.
+     *
+     * @param length the length of the sentence.
+     * @param random the source of randomness.
+     * @return the sentence.
+     * @throws IllegalArgumentException if the grammar has no sentence of that length, or it is longer than the maximal length.
+     */
+    public List<T> generate(int length, Random random) {
+        if (!hasSentence(length)) {
+            throw new IllegalArgumentException("No sentence of length " + length);
+        }
+        List<T> sentence = new ArrayList<>(length);
+        // the items still to be derived, and the lengths of the words they derive, the leftmost on top
+        int[] items = new int[16];
+        int[] lengths = new int[16];
+        int sp = 0;
+        items[sp] = initial;
+        lengths[sp++] = length;
+        while (sp > 0) {
+            int item = items[--sp];
+            int n = lengths[sp];
+            if (item < 0) {
+                sentence.add(terminals.get(-1 - item));
+                continue;
+            }
+            if (n == 0) {
+                continue;
+            }
+            int r = chooseRule(item, n, random);
+            int[] rule = rules[r];
+            int[] split = new int[rule.length];
+            int remaining = n;
+            for (int i = 0; i < rule.length; i++) {
+                split[i] = chooseLength(r, i, n, remaining, random);
+                remaining -= split[i];
+            }
+            if (sp + rule.length > items.length) {
+                items = Arrays.copyOf(items, 2 * (sp + rule.length));
+                lengths = Arrays.copyOf(lengths, items.length);
+            }
+            for (int i = rule.length - 1; i >= 0; i--) {
+                items[sp] = rule[i];
+                lengths[sp++] = split[i];
+            }
+        }
+        return sentence;
+    }
+
+    /**
+     * Gets the (scaled) number of derivations of words of length n from the items of a rule from i on, where all items before i
+     * derive the empty word and n is the length derived by the whole rule. Those along unit rules on the same cycle are excluded.
+     */
+    private double excluded(int r, int i, int n) {
+        return Math.max(0, suffixes[r][i][n] - unitItems[r][i] * counts[component[ruleLhs[r]]][n]);
+    }
+
+    private int chooseRule(int nt, int n, Random random) {
+        int[] candidates = componentRules[nt];
+        double total = 0;
+        for (int r : candidates) {
+            total += excluded(r, 0, n);
+        }
+        double target = random.nextDouble() * total;
+        int chosen = -1;
+        for (int r : candidates) {
+            double w = excluded(r, 0, n);
+            if (w > 0) {
+                chosen = r;
+                target -= w;
+                if (target < 0) {
+                    break;
+                }
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * Chooses the length of the word derived by item i of rule r.
+     *
+     * @param n         the length derived by the whole rule.
+     * @param remaining the length derived by the items from i on.
+     */
+    private int chooseLength(int r, int i, int n, int remaining, Random random) {
+        int[] rule = rules[r];
+        double[] rest = suffixes[r][i + 1];
+        boolean first = remaining == n;
+        boolean unit = rule[i] >= 0 && component[rule[i]] == component[ruleLhs[r]];
+        double total = first ? excluded(r, i, n) : suffixes[r][i][remaining];
+        double target = random.nextDouble() * total;
+        int chosen = -1;
+        for (int k = 0; k <= remaining; k++) {
+            double w;
+            if (k == 0 && first) {
+                w = weight(rule[i], 0) * excluded(r, i + 1, n);
+            } else if (k == n && unit) {
+                w = 0;
+            } else {
+                w = weight(rule[i], k) * rest[remaining - k];
+            }
+            if (w > 0) {
+                chosen = k;
+                target -= w;
+                if (target < 0) {
+                    break;
+                }
+            }
+        }
+        return chosen;
+    }
+}
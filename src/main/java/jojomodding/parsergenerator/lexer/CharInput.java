@@ -0,0 +1,27 @@
+package jojomodding.parsergenerator.lexer;
+
+/**
+ * A source of characters, addressed by position, that a {@link Lexer} can read from.
+ * Positions are longs, so that inputs can be larger than what fits into a String.
+ * The lexer reads positions mostly in ascending order, but may go back to the end of the last token when it has read too far.
+ */
+public interface CharInput {
+
+    /**
+     * Reads a character.
+     *
+     * @param position the position, which is never negative.
+     * @return the character at that position, or -1 if the position is at or after the end of the input.
+     */
+    int charAt(long position);
+
+    /**
+     * Wraps a char sequence.
+     *
+     * @param s the char sequence
+     * @return an input reading from s.
+     */
+    static CharInput of(CharSequence s) {
+        return position -> position < s.length() ? s.charAt((int) position) : -1;
+    }
+}
@@ -0,0 +1,166 @@
+package jojomodding.parsergenerator.lexer;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A lexer, which splits a sequence of chars into tokens, using a minimal DFA.
+ * It always matches the longest possible token; among definitions matching equally much, the first one wins.
+ * Instances are immutable and can be shared between threads.
+ *
+ * @param <K> the type of token kinds.
+ */
+public final class Lexer<K> {
+
+    /**
+     * The token definitions, by decreasing priority.
+     */
+    private final List<TokenDefinition<K>> definitions;
+    /**
+     * The class of each char.
+     */
+    private final int[] charClass;
+    /**
+     * The transitions of the DFA, indexed by state and char class. -1 if there is no transition.
+     * The initial state is 0.
+     */
+    private final int[][] transitions;
+    /**
+     * For each state, the index of the token definition it accepts, or -1.
+     */
+    private final int[] accepts;
+
+    Lexer(List<TokenDefinition<K>> definitions, int[] charClass, int[][] transitions, int[] accepts) {
+        this.definitions = definitions;
+        this.charClass = charClass;
+        this.transitions = transitions;
+        this.accepts = accepts;
+    }
+
+    /**
+     * Gets the number of states of the DFA.
+     *
+     * @return the number of states.
+     */
+    public int stateCount() {
+        return transitions.length;
+    }
+
+    /**
+     * Splits an input into tokens. Skipped text does not produce tokens. The tokens are read lazily.
+     * The iterator throws an IllegalArgumentException if some part of the input does not match any token definition.
+     *
+     * @param input the input.
+     * @return the tokens of the input.
+     */
+    public Iterator<Token<K>> tokenize(CharInput input) {
+        return new Iterator<>() {
+            private long position = 0;
+            private Token<K> next = null;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null) {
+                    if (input.charAt(position) < 0) {
+                        return false;
+                    }
+                    next = match(input, position);
+                    position = next.end();
+                    if (next.kind() == null) {
+                        next = null;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public Token<K> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                var res = next;
+                next = null;
+                return res;
+            }
+        };
+    }
+
+    /**
+     * Splits an input into tokens.
+     *
+     * @param input the input.
+     * @return the tokens of the input.
+     * @see #tokenize(CharInput)
+     */
+    public Iterator<Token<K>> tokenize(CharSequence input) {
+        return tokenize(CharInput.of(input));
+    }
+
+    /**
+     * Splits an input into tokens, only keeping their kinds. This is what a parser for a grammar over K consumes.
+     *
+     * @param input the input.
+     * @return the kinds of the tokens of the input.
+     * @see #tokenize(CharInput)
+     */
+    public Iterator<K> kinds(CharInput input) {
+        var tokens = tokenize(input);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return tokens.hasNext();
+            }
+
+            @Override
+            public K next() {
+                return tokens.next().kind();
+            }
+        };
+    }
+
+    /**
+     * Splits an input into tokens, only keeping their kinds.
+     *
+     * @param input the input.
+     * @return the kinds of the tokens of the input.
+     * @see #kinds(CharInput)
+     */
+    public Iterator<K> kinds(CharSequence input) {
+        return kinds(CharInput.of(input));
+    }
+
+    /**
+     * Matches the longest token at a position.
+     *
+     * @param input the input.
+     * @param start the position.
+     * @return the longest token at that position. Its kind is null if it is skipped.
+     * @throws IllegalArgumentException if there is no such token.
+     */
+    private Token<K> match(CharInput input, long start) {
+        int state = 0;
+        int accepted = -1;
+        long acceptedEnd = start;
+        long pos = start;
+        while (true) {
+            int c = input.charAt(pos);
+            if (c < 0) {
+                break;
+            }
+            state = transitions[state][charClass[c]];
+            if (state < 0) {
+                break;
+            }
+            pos++;
+            if (accepts[state] >= 0) {
+                accepted = accepts[state];
+                acceptedEnd = pos;
+            }
+        }
+        if (accepted < 0) {
+            throw new IllegalArgumentException("No token matches at position " + start + "!");
+        }
+        return new Token<>(definitions.get(accepted).kind(), start, acceptedEnd);
+    }
+}
@@ -0,0 +1,239 @@
+package jojomodding.parsergenerator.lexer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * This class converts a list of token definitions into a lexer.
+ * The regular expressions are compiled into a single NFA, which is then made deterministic and minimized.
+ * If several definitions match the longest possible prefix of the input, the one given first wins.
+ *
+ * @param <K> the type of token kinds.
+ */
+public class LexerGenerator<K> {
+
+    /**
+     * The token definitions, by decreasing priority.
+     */
+    private final List<TokenDefinition<K>> definitions;
+
+    /**
+     * Constructs a new lexer generator.
+     *
+     * @param definitions the token definitions, by decreasing priority.
+     */
+    public LexerGenerator(List<TokenDefinition<K>> definitions) {
+        this.definitions = List.copyOf(definitions);
+    }
+
+    /**
+     * Constructs a new lexer generator.
+     *
+     * @param definitions the token definitions, by decreasing priority.
+     */
+    @SafeVarargs
+    public LexerGenerator(TokenDefinition<K>... definitions) {
+        this(List.of(definitions));
+    }
+
+    /**
+     * Builds the lexer.
+     *
+     * @return the lexer, with a minimal DFA.
+     * @throws IllegalArgumentException if some regular expression is malformed or matches the empty string.
+     */
+    public Lexer<K> build() {
+        Nfa nfa = new Nfa();
+        int nfaStart = nfa.newState();
+        for (int i = 0; i < definitions.size(); i++) {
+            nfa.addEpsilon(nfaStart, RegexParser.parse(nfa, definitions.get(i).pattern(), i));
+        }
+
+        int[] charClass = new int[Character.MAX_VALUE + 1];
+        int classes = computeAlphabet(nfa, charClass);
+        List<int[]> coveredClasses = new ArrayList<>();
+        for (int s = 0; s < nfa.size(); s++) {
+            int[] ranges = nfa.ranges.get(s);
+            if (ranges == null) {
+                coveredClasses.add(new int[0]);
+                continue;
+            }
+            TreeSet<Integer> covered = new TreeSet<>();
+            for (int i = 0; i < ranges.length; i += 2) {
+                for (int c = ranges[i]; c <= ranges[i + 1]; c++) {
+                    covered.add(charClass[c]);
+                }
+            }
+            coveredClasses.add(covered.stream().mapToInt(Integer::intValue).toArray());
+        }
+
+        // Subset construction
+        Map<BitSet, Integer> ids = new HashMap<>();
+        List<BitSet> sets = new ArrayList<>();
+        List<int[]> transitions = new ArrayList<>();
+        BitSet start = new BitSet();
+        start.set(nfaStart);
+        nfa.closure(start);
+        ids.put(start, 0);
+        sets.add(start);
+        for (int i = 0; i < sets.size(); i++) {
+            BitSet[] next = new BitSet[classes];
+            var set = sets.get(i);
+            for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+                for (int c : coveredClasses.get(s)) {
+                    if (next[c] == null) {
+                        next[c] = new BitSet();
+                    }
+                    next[c].set(nfa.target.get(s));
+                }
+            }
+            int[] row = new int[classes];
+            for (int c = 0; c < classes; c++) {
+                if (next[c] == null) {
+                    row[c] = -1;
+                    continue;
+                }
+                nfa.closure(next[c]);
+                row[c] = ids.computeIfAbsent(next[c], x -> {
+                    sets.add(x);
+                    return sets.size() - 1;
+                });
+            }
+            transitions.add(row);
+        }
+        int[] accepts = new int[sets.size()];
+        for (int i = 0; i < sets.size(); i++) {
+            accepts[i] = -1;
+            var set = sets.get(i);
+            for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+                int a = nfa.accepts.get(s);
+                if (a >= 0 && (accepts[i] < 0 || a < accepts[i])) {
+                    accepts[i] = a;
+                }
+            }
+        }
+        if (accepts[0] >= 0) {
+            throw new IllegalArgumentException("Token definition " + definitions.get(accepts[0]) + " matches the empty string!");
+        }
+        pruneDeadStates(transitions, accepts);
+        return minimize(charClass, classes, transitions, accepts);
+    }
+
+    /**
+     * Partitions the chars into classes that are not distinguished by any transition of the NFA.
+     *
+     * @param nfa       the NFA.
+     * @param charClass an array, which is filled with the class of each char.
+     * @return the number of classes.
+     */
+    private static int computeAlphabet(Nfa nfa, int[] charClass) {
+        TreeSet<Integer> boundaries = new TreeSet<>();
+        boundaries.add((int) Character.MIN_VALUE);
+        for (int[] ranges : nfa.ranges) {
+            if (ranges == null) {
+                continue;
+            }
+            for (int i = 0; i < ranges.length; i += 2) {
+                boundaries.add(ranges[i]);
+                if (ranges[i + 1] < Character.MAX_VALUE) {
+                    boundaries.add(ranges[i + 1] + 1);
+                }
+            }
+        }
+        int cls = -1;
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            if (boundaries.contains(c)) {
+                cls++;
+            }
+            charClass[c] = cls;
+        }
+        return cls + 1;
+    }
+
+    /**
+     * Removes transitions into states from which no accepting state is reachable, so that the lexer stops reading as early as possible.
+     *
+     * @param transitions the transition table, which is modified.
+     * @param accepts     for each state, the accepted token definition or -1.
+     */
+    private static void pruneDeadStates(List<int[]> transitions, int[] accepts) {
+        boolean[] live = new boolean[accepts.length];
+        boolean change = true;
+        while (change) {
+            change = false;
+            for (int s = 0; s < accepts.length; s++) {
+                if (live[s]) {
+                    continue;
+                }
+                boolean l = accepts[s] >= 0;
+                for (int t : transitions.get(s)) {
+                    l |= t >= 0 && live[t];
+                }
+                if (l) {
+                    live[s] = true;
+                    change = true;
+                }
+            }
+        }
+        for (int[] row : transitions) {
+            for (int c = 0; c < row.length; c++) {
+                if (row[c] >= 0 && !live[row[c]]) {
+                    row[c] = -1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Minimizes the DFA by iteratively splitting states that either accept different tokens or have transitions into different blocks.
+     *
+     * @param charClass   the class of each char.
+     * @param classes     the number of char classes.
+     * @param transitions the transition table.
+     * @param accepts     for each state, the accepted token definition or -1.
+     * @return the lexer for the minimized DFA.
+     */
+    private Lexer<K> minimize(int[] charClass, int classes, List<int[]> transitions, int[] accepts) {
+        int states = accepts.length;
+        int[] block = new int[states];
+        int blocks = 0;
+        while (true) {
+            Map<List<Integer>, Integer> signatures = new HashMap<>();
+            int[] next = new int[states];
+            for (int s = 0; s < states; s++) {
+                List<Integer> signature = new ArrayList<>(classes + 2);
+                signature.add(block[s]);
+                signature.add(accepts[s]);
+                for (int t : transitions.get(s)) {
+                    signature.add(t < 0 ? -1 : block[t]);
+                }
+                next[s] = signatures.computeIfAbsent(signature, $ -> signatures.size());
+            }
+            block = next;
+            if (signatures.size() == blocks) {
+                break;
+            }
+            blocks = signatures.size();
+        }
+        // the start state is in block 0, since it is the first one assigned.
+        int[][] minTransitions = new int[blocks][];
+        int[] minAccepts = new int[blocks];
+        for (int s = 0; s < states; s++) {
+            if (minTransitions[block[s]] != null) {
+                continue;
+            }
+            int[] row = Arrays.copyOf(transitions.get(s), classes);
+            for (int c = 0; c < classes; c++) {
+                row[c] = row[c] < 0 ? -1 : block[row[c]];
+            }
+            minTransitions[block[s]] = row;
+            minAccepts[block[s]] = accepts[s];
+        }
+        return new Lexer<>(definitions, charClass, minTransitions, minAccepts);
+    }
+}
@@ -0,0 +1,136 @@
+package jojomodding.parsergenerator.lexer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An input backed by a memory-mapped file, which can be larger than 2 GiB.
+ * Only one window of the file is mapped at a time, and the operating system pages it in on demand,
+ * so the heap usage does not depend on the size of the file.
+ * Each byte is read as one char, i.e. the file is decoded as ISO-8859-1.
+ * <p>
+ * The input can be used as a {@link CharInput} for a {@link Lexer}, or be read directly as a stream of tokens for a PDA over bytes or chars.
+ * Instances are not thread-safe.
+ */
+public final class MappedFileInput implements CharInput, Closeable {
+
+    /**
+     * The size of the mapped window. Windows always start at a multiple of this.
+     */
+    private static final long WINDOW = 1L << 26;
+
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer window = null;
+    /**
+     * The position in the file at which the current window starts, or -1 if none is mapped.
+     */
+    private long windowStart = -1;
+
+    /**
+     * Opens a file.
+     *
+     * @param path the file.
+     * @throws IOException if the file can not be opened.
+     */
+    public MappedFileInput(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+    }
+
+    /**
+     * Gets the length of the file.
+     *
+     * @return the length, in bytes.
+     */
+    public long length() {
+        return size;
+    }
+
+    /**
+     * Reads a byte.
+     *
+     * @param position the position
+     * @return the byte, as an unsigned value, or -1 if the position is at or after the end of the file.
+     * @throws UncheckedIOException if the file can not be mapped.
+     */
+    @Override
+    public int charAt(long position) {
+        if (position >= size) {
+            return -1;
+        }
+        long offset = position - windowStart;
+        if (windowStart < 0 || offset < 0 || offset >= window.limit()) {
+            windowStart = position - position % WINDOW;
+            try {
+                window = channel.map(MapMode.READ_ONLY, windowStart, Math.min(WINDOW, size - windowStart));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            offset = position - windowStart;
+        }
+        return window.get((int) offset) & 0xFF;
+    }
+
+    /**
+     * Reads the file as a sequence of chars, to be used as input to a PDA.
+     *
+     * @return the chars of the file.
+     */
+    public Iterator<Character> chars() {
+        return new Iterator<>() {
+            private long position = 0;
+
+            @Override
+            public boolean hasNext() {
+                return position < size;
+            }
+
+            @Override
+            public Character next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return (char) charAt(position++);
+            }
+        };
+    }
+
+    /**
+     * Reads the file as a sequence of bytes, to be used as input to a PDA.
+     *
+     * @return the bytes of the file.
+     */
+    public Iterator<Byte> bytes() {
+        return new Iterator<>() {
+            private long position = 0;
+
+            @Override
+            public boolean hasNext() {
+                return position < size;
+            }
+
+            @Override
+            public Byte next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return (byte) charAt(position++);
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
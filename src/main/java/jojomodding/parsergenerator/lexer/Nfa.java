@@ -0,0 +1,76 @@
+package jojomodding.parsergenerator.lexer;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A non-deterministic finite automaton with epsilon transitions over char, used as an intermediate step when generating a lexer.
+ * Each state has at most one transition under a set of characters, which is given as a sorted array of disjoint inclusive ranges
+ * {@code [lo0, hi0, lo1, hi1, ...]}.
+ */
+class Nfa {
+
+    /**
+     * For each state, the states reachable by an epsilon transition.
+     */
+    final List<BitSet> epsilon = new ArrayList<>();
+    /**
+     * For each state, the characters under which it has a transition, or null.
+     */
+    final List<int[]> ranges = new ArrayList<>();
+    /**
+     * For each state, the target of its character transition.
+     */
+    final List<Integer> target = new ArrayList<>();
+    /**
+     * For each state, the index of the token definition it accepts, or -1.
+     */
+    final List<Integer> accepts = new ArrayList<>();
+
+    /**
+     * Creates a new state.
+     *
+     * @return the new state.
+     */
+    int newState() {
+        epsilon.add(new BitSet());
+        ranges.add(null);
+        target.add(-1);
+        accepts.add(-1);
+        return epsilon.size() - 1;
+    }
+
+    void addEpsilon(int from, int to) {
+        epsilon.get(from).set(to);
+    }
+
+    void addTransition(int from, int[] chars, int to) {
+        if (ranges.get(from) != null) {
+            throw new IllegalStateException("State already has a transition!");
+        }
+        ranges.set(from, chars);
+        target.set(from, to);
+    }
+
+    int size() {
+        return epsilon.size();
+    }
+
+    /**
+     * Extends a set of states by all states reachable with epsilon transitions.
+     *
+     * @param states the set, which is modified.
+     */
+    void closure(BitSet states) {
+        BitSet todo = (BitSet) states.clone();
+        while (!todo.isEmpty()) {
+            int s = todo.nextSetBit(0);
+            todo.clear(s);
+            BitSet next = (BitSet) epsilon.get(s).clone();
+            next.andNot(states);
+            states.or(next);
+            todo.or(next);
+        }
+    }
+}
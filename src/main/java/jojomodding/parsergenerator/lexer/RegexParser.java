@@ -0,0 +1,245 @@
+package jojomodding.parsergenerator.lexer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parses the regular expressions of {@link TokenDefinition}s into an {@link Nfa}, using Thompson's construction.
+ * The syntax is given by
+ * <pre>
+ * alt    := concat ('|' concat)*
+ * concat := repeat*
+ * repeat := atom ('*' | '+' | '?')*
+ * atom   := '(' alt ')' | '[' '^'? range+ ']' | '.' | '\' char | char
+ * </pre>
+ */
+class RegexParser {
+
+    /**
+     * The ranges containing every char.
+     */
+    private static final int[] ANY = {Character.MIN_VALUE, Character.MAX_VALUE};
+    private static final int[] DIGIT = {'0', '9'};
+    private static final int[] WORD = {'0', '9', 'A', 'Z', '_', '_', 'a', 'z'};
+    private static final int[] SPACE = {'\t', '\n', '\f', '\r', ' ', ' '};
+
+    private final Nfa nfa;
+    private final String pattern;
+    private int pos = 0;
+
+    /**
+     * A part of the automaton with a single entry and a single exit state.
+     */
+    private record Fragment(int start, int end) {
+
+    }
+
+    private RegexParser(Nfa nfa, String pattern) {
+        this.nfa = nfa;
+        this.pattern = pattern;
+    }
+
+    /**
+     * Adds a regular expression to an NFA.
+     *
+     * @param nfa     the NFA
+     * @param pattern the regular expression
+     * @param accepts the index of the token definition to accept when the regular expression matched
+     * @return the start state of the regular expression
+     * @throws IllegalArgumentException if the regular expression is malformed.
+     */
+    static int parse(Nfa nfa, String pattern, int accepts) {
+        var parser = new RegexParser(nfa, pattern);
+        var fragment = parser.alt();
+        if (parser.pos != pattern.length()) {
+            throw parser.error("Unexpected " + pattern.charAt(parser.pos));
+        }
+        nfa.accepts.set(fragment.end(), accepts);
+        return fragment.start();
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + pos + " in regular expression " + pattern);
+    }
+
+    private boolean atEnd() {
+        return pos >= pattern.length();
+    }
+
+    private char peek() {
+        return pattern.charAt(pos);
+    }
+
+    private Fragment alt() {
+        var first = concat();
+        if (atEnd() || peek() != '|') {
+            return first;
+        }
+        int start = nfa.newState(), end = nfa.newState();
+        nfa.addEpsilon(start, first.start());
+        nfa.addEpsilon(first.end(), end);
+        while (!atEnd() && peek() == '|') {
+            pos++;
+            var next = concat();
+            nfa.addEpsilon(start, next.start());
+            nfa.addEpsilon(next.end(), end);
+        }
+        return new Fragment(start, end);
+    }
+
+    private Fragment concat() {
+        int start = nfa.newState();
+        int end = start;
+        while (!atEnd() && peek() != '|' && peek() != ')') {
+            var next = repeat();
+            nfa.addEpsilon(end, next.start());
+            end = next.end();
+        }
+        return new Fragment(start, end);
+    }
+
+    private Fragment repeat() {
+        var inner = atom();
+        while (!atEnd() && (peek() == '*' || peek() == '+' || peek() == '?')) {
+            char op = pattern.charAt(pos++);
+            int start = nfa.newState(), end = nfa.newState();
+            nfa.addEpsilon(start, inner.start());
+            nfa.addEpsilon(inner.end(), end);
+            if (op != '+') {
+                nfa.addEpsilon(start, end);
+            }
+            if (op != '?') {
+                nfa.addEpsilon(inner.end(), inner.start());
+            }
+            inner = new Fragment(start, end);
+        }
+        return inner;
+    }
+
+    private Fragment atom() {
+        if (atEnd()) {
+            throw error("Unexpected end");
+        }
+        char c = pattern.charAt(pos++);
+        int[] chars;
+        switch (c) {
+            case '(' -> {
+                var inner = alt();
+                if (atEnd() || peek() != ')') {
+                    throw error("Expected )");
+                }
+                pos++;
+                return inner;
+            }
+            case '*', '+', '?', ')' -> throw error("Unexpected " + c);
+            case '[' -> chars = charClass();
+            case '.' -> chars = ANY;
+            case '\\' -> chars = escape();
+            default -> chars = new int[]{c, c};
+        }
+        int start = nfa.newState(), end = nfa.newState();
+        nfa.addTransition(start, chars, end);
+        return new Fragment(start, end);
+    }
+
+    private int[] escape() {
+        if (atEnd()) {
+            throw error("Unexpected end");
+        }
+        char c = pattern.charAt(pos++);
+        return switch (c) {
+            case 'd' -> DIGIT;
+            case 'w' -> WORD;
+            case 's' -> SPACE;
+            case 'n' -> new int[]{'\n', '\n'};
+            case 'r' -> new int[]{'\r', '\r'};
+            case 't' -> new int[]{'\t', '\t'};
+            default -> new int[]{c, c};
+        };
+    }
+
+    private int[] charClass() {
+        boolean negated = !atEnd() && peek() == '^';
+        if (negated) {
+            pos++;
+        }
+        List<int[]> parts = new ArrayList<>();
+        do {
+            int[] lo = classAtom();
+            boolean single = lo.length == 2 && lo[0] == lo[1];
+            if (single && !atEnd() && peek() == '-' && pos + 1 < pattern.length() && pattern.charAt(pos + 1) != ']') {
+                pos++;
+                int[] hi = classAtom();
+                if (hi.length != 2 || hi[0] != hi[1] || hi[0] < lo[0]) {
+                    throw error("Invalid range");
+                }
+                parts.add(new int[]{lo[0], hi[0]});
+            } else {
+                parts.add(lo);
+            }
+        } while (atEnd() || peek() != ']');
+        pos++;
+        int[] union = union(parts);
+        return negated ? complement(union) : union;
+    }
+
+    private int[] classAtom() {
+        if (atEnd()) {
+            throw error("Unterminated character class");
+        }
+        char c = pattern.charAt(pos++);
+        return c == '\\' ? escape() : new int[]{c, c};
+    }
+
+    /**
+     * Computes the union of sets of characters.
+     *
+     * @param parts the sets, each as ranges.
+     * @return the union, as sorted disjoint ranges.
+     */
+    static int[] union(List<int[]> parts) {
+        List<int[]> all = new ArrayList<>();
+        for (int[] part : parts) {
+            for (int i = 0; i < part.length; i += 2) {
+                all.add(new int[]{part[i], part[i + 1]});
+            }
+        }
+        all.sort((a, b) -> Integer.compare(a[0], b[0]));
+        int[] res = new int[2 * all.size()];
+        int n = 0;
+        for (int[] r : all) {
+            if (n > 0 && r[0] <= res[n - 1] + 1) {
+                res[n - 1] = Math.max(res[n - 1], r[1]);
+            } else {
+                res[n++] = r[0];
+                res[n++] = r[1];
+            }
+        }
+        return Arrays.copyOf(res, n);
+    }
+
+    /**
+     * Computes the complement of a set of characters.
+     *
+     * @param ranges the set, as sorted disjoint ranges.
+     * @return the complement, as sorted disjoint ranges.
+     */
+    static int[] complement(int[] ranges) {
+        int[] res = new int[ranges.length + 2];
+        int n = 0;
+        int next = Character.MIN_VALUE;
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (ranges[i] > next) {
+                res[n++] = next;
+                res[n++] = ranges[i] - 1;
+            }
+            next = ranges[i + 1] + 1;
+        }
+        if (next <= Character.MAX_VALUE) {
+            res[n++] = next;
+            res[n++] = Character.MAX_VALUE;
+        }
+        return Arrays.copyOf(res, n);
+    }
+}
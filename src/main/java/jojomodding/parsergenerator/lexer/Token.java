@@ -0,0 +1,31 @@
+package jojomodding.parsergenerator.lexer;
+
+/**
+ * A token produced by a {@link Lexer}.
+ *
+ * @param kind  the kind of the token, which is the terminal the parser sees.
+ * @param start the position of the first character of the token in the input.
+ * @param end   the position after the last character of the token in the input.
+ * @param <K>   the type of token kinds.
+ */
+public record Token<K>(K kind, long start, long end) {
+
+    /**
+     * Reads the text of this token.
+     *
+     * @param input the input this token was read from.
+     * @return the characters this token spans.
+     */
+    public String text(CharInput input) {
+        StringBuilder sb = new StringBuilder((int) (end - start));
+        for (long i = start; i < end; i++) {
+            sb.append((char) input.charAt(i));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return kind + "@" + start + ".." + end;
+    }
+}
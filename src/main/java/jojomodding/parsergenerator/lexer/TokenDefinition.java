@@ -0,0 +1,64 @@
+package jojomodding.parsergenerator.lexer;
+
+/**
+ * The definition of a token by a regular expression.
+ * <p>
+ * The supported syntax is a subset of the usual one: alternatives {@code a|b}, grouping {@code (a)}, the postfix operators {@code *}, {@code +}
+ * and {@code ?}, any character {@code .}, character classes like {@code [a-z_]} or {@code [^"]}, the classes {@code \d}, {@code \w} and
+ * {@code \s}, the escapes {@code \n}, {@code \r} and {@code \t}, and a backslash before any other character to take it literally.
+ *
+ * @param kind    the kind of token this produces, or null if matched text is skipped.
+ * @param pattern the regular expression.
+ * @param <K>     the type of token kinds.
+ */
+public record TokenDefinition<K>(K kind, String pattern) {
+
+    /**
+     * Defines a token.
+     *
+     * @param kind    the kind of token.
+     * @param pattern the regular expression.
+     * @return the token definition.
+     */
+    public static <K> TokenDefinition<K> token(K kind, String pattern) {
+        return new TokenDefinition<>(kind, pattern);
+    }
+
+    /**
+     * Defines a token that matches a fixed string.
+     *
+     * @param kind the kind of token.
+     * @param text the string it matches.
+     * @return the token definition.
+     */
+    public static <K> TokenDefinition<K> literal(K kind, String text) {
+        StringBuilder sb = new StringBuilder();
+        for (char c : text.toCharArray()) {
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(c);
+            } else {
+                sb.append('\\').append(c);
+            }
+        }
+        return new TokenDefinition<>(kind, sb.toString());
+    }
+
+    /**
+     * Defines text that is skipped, like whitespace or comments.
+     *
+     * @param pattern the regular expression.
+     * @return the token definition.
+     */
+    public static <K> TokenDefinition<K> skip(String pattern) {
+        return new TokenDefinition<>(null, pattern);
+    }
+
+    /**
+     * Checks whether matches of this definition are skipped.
+     *
+     * @return true iff matches do not produce tokens.
+     */
+    public boolean isSkipped() {
+        return kind == null;
+    }
+}
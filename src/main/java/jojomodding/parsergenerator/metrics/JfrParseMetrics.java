@@ -0,0 +1,47 @@
+package jojomodding.parsergenerator.metrics;
+
+/**
+ * Emits a {@link SlowParseEvent} for each run that takes at least some time, if the event is enabled in the current recording.
+ * The event begins when the run starts and ends when it is accepted or rejected, so its start time and duration are those of the run.
+ */
+public final class JfrParseMetrics implements ParseMetrics {
+
+    private final long thresholdNanos;
+
+    /**
+     * Creates new metrics.
+     *
+     * @param thresholdNanos the minimal time of a run to be reported, in nanoseconds.
+     */
+    public JfrParseMetrics(long thresholdNanos) {
+        this.thresholdNanos = thresholdNanos;
+    }
+
+    /**
+     * Records a run without having been told when it started. The event then only marks the end of the run.
+     */
+    @Override
+    public void record(ParseStatistics statistics) {
+        begin().end(statistics);
+    }
+
+    @Override
+    public Run begin() {
+        SlowParseEvent event = new SlowParseEvent();
+        if (!event.isEnabled()) {
+            return statistics -> { };
+        }
+        event.begin();
+        return statistics -> {
+            event.end();
+            if (statistics.nanos() < thresholdNanos || !event.shouldCommit()) {
+                return;
+            }
+            event.inputLength = statistics.inputLength();
+            event.reductions = statistics.totalReductions();
+            event.maxStackDepth = statistics.maxStackDepth();
+            event.accepted = statistics.accepted();
+            event.commit();
+        };
+    }
+}
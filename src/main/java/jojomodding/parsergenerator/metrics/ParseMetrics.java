@@ -0,0 +1,71 @@
+package jojomodding.parsergenerator.metrics;
+
+/**
+ * Receives the statistics of runs of a PDA, see {@link jojomodding.parsergenerator.pda.PushDownAutomaton#withMetrics(ParseMetrics)}.
+ * This is the point at which to connect a metrics library. Implementations must be thread-safe if the PDA is used by several threads.
+ * <p>
+ * The statistics are collected in primitive counters during the run, and reported once when it ends,
+ * so implementations are not called on the hot path. Implementations that measure the run themselves, like
+ * {@link JfrParseMetrics}, can also be told when it starts, see {@link #begin()}.
+ */
+@FunctionalInterface
+public interface ParseMetrics {
+
+    /**
+     * Called when a run was accepted or rejected.
+     *
+     * @param statistics what happened during the run. The arrays are not used by the PDA afterwards.
+     */
+    void record(ParseStatistics statistics);
+
+    /**
+     * Called when a run starts. The PDA reports the statistics of the run to the result when it ends, instead of calling
+     * {@link #record(ParseStatistics)} directly.
+     *
+     * @return where to report the run. By default, this records it.
+     */
+    default Run begin() {
+        return this::record;
+    }
+
+    /**
+     * A run that has started, see {@link #begin()}.
+     */
+    @FunctionalInterface
+    interface Run {
+
+        /**
+         * Called when the run was accepted or rejected.
+         *
+         * @param statistics what happened during the run. The arrays are not used by the PDA afterwards.
+         */
+        void end(ParseStatistics statistics);
+    }
+
+    /**
+     * Combines this with other metrics.
+     *
+     * @param other the other metrics.
+     * @return metrics reporting to both.
+     */
+    default ParseMetrics andThen(ParseMetrics other) {
+        ParseMetrics first = this;
+        return new ParseMetrics() {
+            @Override
+            public void record(ParseStatistics statistics) {
+                first.record(statistics);
+                other.record(statistics);
+            }
+
+            @Override
+            public Run begin() {
+                Run run = first.begin();
+                Run otherRun = other.begin();
+                return statistics -> {
+                    run.end(statistics);
+                    otherRun.end(statistics);
+                };
+            }
+        };
+    }
+}
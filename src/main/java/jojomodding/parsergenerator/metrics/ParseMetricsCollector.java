@@ -0,0 +1,149 @@
+package jojomodding.parsergenerator.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sums up the statistics of all runs. Thread-safe.
+ */
+public final class ParseMetricsCollector implements ParseMetrics {
+
+    private final LongAdder parses = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder tokens = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator maxStackDepth = new LongAccumulator(Math::max, 0);
+    private final AtomicLongArray reductions;
+    private final AtomicLongArray stateVisits;
+    private final AtomicLong unknown = new AtomicLong();
+
+    /**
+     * Creates a new collector.
+     *
+     * @param productions the number of productions of the PDA.
+     * @param states      the number of states of the PDA.
+     */
+    public ParseMetricsCollector(int productions, int states) {
+        this.reductions = new AtomicLongArray(productions);
+        this.stateVisits = new AtomicLongArray(states);
+    }
+
+    @Override
+    public void record(ParseStatistics statistics) {
+        parses.increment();
+        if (!statistics.accepted()) {
+            rejected.increment();
+        }
+        tokens.add(statistics.inputLength());
+        nanos.add(statistics.nanos());
+        maxNanos.accumulate(statistics.nanos());
+        maxStackDepth.accumulate(statistics.maxStackDepth());
+        add(reductions, statistics.reductions());
+        add(stateVisits, statistics.stateVisits());
+    }
+
+    /**
+     * Adds counts to the totals. The counts may be longer, since a lazily built PDA finds new states while it runs; then the
+     * counts that do not fit are dropped, and the statistics are counted as mismatched.
+     */
+    private void add(AtomicLongArray totals, long[] counts) {
+        boolean dropped = false;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                continue;
+            }
+            if (i < totals.length()) {
+                totals.addAndGet(i, counts[i]);
+            } else {
+                dropped = true;
+            }
+        }
+        if (dropped) {
+            unknown.incrementAndGet();
+        }
+    }
+
+    /**
+     * Gets the number of runs.
+     *
+     * @return the number of accepted and rejected runs.
+     */
+    public long parses() {
+        return parses.sum();
+    }
+
+    /**
+     * Gets the number of rejected runs.
+     *
+     * @return the number of runs whose input was not in the language.
+     */
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Gets the number of tokens read, i.e. the number of shifts.
+     *
+     * @return the total input length.
+     */
+    public long tokens() {
+        return tokens.sum();
+    }
+
+    /**
+     * Gets the time spent in all runs.
+     *
+     * @return the total time in nanoseconds.
+     */
+    public long totalNanos() {
+        return nanos.sum();
+    }
+
+    /**
+     * Gets the time of the slowest run.
+     *
+     * @return the maximal time in nanoseconds.
+     */
+    public long maxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Gets the maximal stack depth over all runs.
+     *
+     * @return the maximal number of states on the stack.
+     */
+    public long maxStackDepth() {
+        return maxStackDepth.get();
+    }
+
+    /**
+     * Gets how often a production was reduced.
+     *
+     * @param production the production id.
+     * @return the number of reductions.
+     */
+    public long reductions(int production) {
+        return reductions.get(production);
+    }
+
+    /**
+     * Gets how often the PDA acted in a state.
+     *
+     * @param state the state.
+     * @return the number of visits.
+     */
+    public long stateVisits(int state) {
+        return stateVisits.get(state);
+    }
+
+    @Override
+    public String toString() {
+        return "parses=" + parses() + ", rejected=" + rejected() + ", tokens=" + tokens() + ", totalNanos=" + totalNanos()
+                + ", maxNanos=" + maxNanos() + ", maxStackDepth=" + maxStackDepth() + ", reductions=" + reductions
+                + (unknown.get() == 0 ? "" : ", mismatched=" + unknown.get());
+    }
+}
@@ -0,0 +1,27 @@
+package jojomodding.parsergenerator.metrics;
+
+/**
+ * What happened during one run of a PDA.
+ *
+ * @param inputLength   the number of tokens read, which is also the number of shifts.
+ * @param reductions    for each production id, how often it was reduced.
+ * @param stateVisits   for each state, how often the PDA acted in it.
+ * @param maxStackDepth the maximal number of states on the stack.
+ * @param nanos         the time from the start of the run until it was accepted or rejected.
+ * @param accepted      whether the input was accepted.
+ */
+public record ParseStatistics(long inputLength, long[] reductions, long[] stateVisits, int maxStackDepth, long nanos, boolean accepted) {
+
+    /**
+     * Gets the total number of reductions.
+     *
+     * @return the number of reductions.
+     */
+    public long totalReductions() {
+        long total = 0;
+        for (long r : reductions) {
+            total += r;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,30 @@
+package jojomodding.parsergenerator.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A JDK Flight Recorder event for a run of a PDA that took longer than some threshold. Its duration is the time of the run.
+ */
+@Name("jojomodding.parsergenerator.SlowParse")
+@Label("Slow Parse")
+@Category("Parser Generator")
+@Description("A run of a PDA that took longer than the configured threshold")
+public class SlowParseEvent extends Event {
+
+    @Label("Input Length")
+    @Description("The number of tokens read")
+    long inputLength;
+
+    @Label("Reductions")
+    long reductions;
+
+    @Label("Maximal Stack Depth")
+    int maxStackDepth;
+
+    @Label("Accepted")
+    boolean accepted;
+}
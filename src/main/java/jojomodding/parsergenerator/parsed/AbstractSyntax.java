@@ -4,8 +4,22 @@ import java.util.LinkedList;
 
 /**
  * The abstract syntax, representing a parsed string, according to some grammar.
+ * <p>
+ * Syntax is compared structurally: two tokens are equal if their tokens are, and two trees are equal if they expand the same
+ * production rule into equal children.
  */
 public interface AbstractSyntax<T> {
 
+    /**
+     * Gets the number of tokens this spans.
+     * @return the number of tokens.
+     */
+    int width();
+
+    /**
+     * Gets the number of this node in the {@link jojomodding.parsergenerator.pda.SpanTable span table} of the run that built it.
+     * @return the ordinal, or -1 if the node was built without tracking spans.
+     */
+    int ordinal();
 
 }
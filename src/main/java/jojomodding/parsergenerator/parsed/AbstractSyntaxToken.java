@@ -1,13 +1,33 @@
 package jojomodding.parsergenerator.parsed;
 
-import java.util.LinkedList;
+import java.util.Objects;
 
 /**
  * A leaf in the ASt, representing a single token.
  * @param token the token.
+ * @param ordinal the number of this leaf in the span table of the run that built it, or -1. Not compared by equals.
  * @param <T> the type of the token.
  */
-public record AbstractSyntaxToken<T>(T token) implements AbstractSyntax<T> {
+public record AbstractSyntaxToken<T>(T token, int ordinal) implements AbstractSyntax<T> {
+
+    public AbstractSyntaxToken(T token) {
+        this(token, -1);
+    }
+
+    @Override
+    public int width() {
+        return 1;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof AbstractSyntaxToken<?> other && Objects.equals(token, other.token);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(token);
+    }
 
     @Override
     public String toString() {
@@ -1,10 +1,12 @@
 package jojomodding.parsergenerator.parsed;
 
+import java.util.ArrayDeque;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 import jojomodding.parsergenerator.converter.ProductionRuleItem;
 import jojomodding.parsergenerator.grammar.Grammar;
 import jojomodding.parsergenerator.grammar.NonTerminal;
@@ -15,6 +17,9 @@ import jojomodding.parsergenerator.utils.Utils;
 
 /**
  * An abstract syntax tree inner node, representing an expanded production rule.
+ * <p>
+ * Two nodes are equal if they expand the same production rule into equal children. The state and the grammar are not compared.
+ * Nodes may be shared between several parents, see {@link TreeInterner}.
  */
 public class AbstractSyntaxTree<T> implements AbstractSyntax<T>{
 
@@ -38,6 +43,31 @@ public class AbstractSyntaxTree<T> implements AbstractSyntax<T>{
      */
     private final List<AbstractSyntax<T>> children;
 
+    /**
+     * The state of the PDA in which parsing this node began, or -1 if unknown.
+     */
+    private final int state;
+
+    /**
+     * The id of the production, as assigned by the PDA, or -1 if unknown.
+     */
+    private final int productionId;
+
+    /**
+     * The number of this node in the span table of the run that built it, or -1.
+     */
+    private final int ordinal;
+
+    /**
+     * The number of tokens this node spans.
+     */
+    private final int width;
+
+    /**
+     * The hash code, computed from those of the children.
+     */
+    private final int hash;
+
     /**
      * Construct a new AST node, for a production rule X -> aBc
      * @param grammar the grammar
@@ -47,10 +77,49 @@ public class AbstractSyntaxTree<T> implements AbstractSyntax<T>{
      * @throws IllegalArgumentException if the AST node is not well-formed according to the grammar.
      */
     public AbstractSyntaxTree(Grammar<T> grammar, NonTerminal<T> element, ProductionRule<T> generated, List<AbstractSyntax<T>> children) {
+        this(grammar, element, generated, children, -1);
+    }
+
+    /**
+     * Construct a new AST node, for a production rule X -> aBc, that was produced by a PDA.
+     * @param grammar the grammar
+     * @param element the production rule LHS, i.e. X
+     * @param generated the production rule RHS, i.e. aBc
+     * @param children the children, i.e. what aBc expanded into.
+     * @param state the state of the PDA on top of the stack before parsing the first child, i.e. the one exposed when reducing.
+     * @throws IllegalArgumentException if the AST node is not well-formed according to the grammar.
+     */
+    public AbstractSyntaxTree(Grammar<T> grammar, NonTerminal<T> element, ProductionRule<T> generated, List<AbstractSyntax<T>> children,
+            int state) {
+        this(grammar, element, generated, children, state, -1, -1);
+    }
+
+    /**
+     * Construct a new AST node, for a production rule X -> aBc, that was produced by a PDA.
+     * @param grammar the grammar
+     * @param element the production rule LHS, i.e. X
+     * @param generated the production rule RHS, i.e. aBc
+     * @param children the children, i.e. what aBc expanded into.
+     * @param state the state of the PDA on top of the stack before parsing the first child, i.e. the one exposed when reducing.
+     * @param productionId the id of the production rule assigned by the PDA, see {@link jojomodding.parsergenerator.pda.PushDownAutomaton#getProduction(int)}.
+     * @param ordinal the number of this node in the span table of the run that built it, or -1.
+     * @throws IllegalArgumentException if the AST node is not well-formed according to the grammar.
+     */
+    public AbstractSyntaxTree(Grammar<T> grammar, NonTerminal<T> element, ProductionRule<T> generated, List<AbstractSyntax<T>> children,
+            int state, int productionId, int ordinal) {
         this.grammar = grammar;
+        this.productionId = productionId;
+        this.ordinal = ordinal;
         this.element = element;
         this.generated = generated;
         this.children = children;
+        this.state = state;
+        int width = 0;
+        for (var child : children) {
+            width += child.width();
+        }
+        this.width = width;
+        this.hash = hash(element, generated, children);
         if (!grammar.hasProductionRule(element, generated))
             throw new IllegalArgumentException("AST for nonexistent production rule!");
         Iterator<AbstractSyntax<T>> childrenIter = children.iterator();
@@ -77,64 +146,263 @@ public class AbstractSyntaxTree<T> implements AbstractSyntax<T>{
             throw new IllegalArgumentException("There are more children/token than required!");
     }
 
+    /**
+     * Gets the nonterminal / production rule LHS represented.
+     * @return the production rule LHS
+     */
+    public NonTerminal<T> getElement() {
+        return element;
+    }
+
+    /**
+     * Gets the production rule RHS that was expanded.
+     * @return the production rule RHS
+     */
+    public ProductionRule<T> getGenerated() {
+        return generated;
+    }
+
+    /**
+     * Gets the children the production rule expanded into.
+     * @return the children, one for each item of the production rule RHS
+     */
+    public List<AbstractSyntax<T>> getChildren() {
+        return Collections.unmodifiableList(children);
+    }
+
+    /**
+     * Gets the state of the PDA in which parsing this node began.
+     * Parsing the same tokens from this state again results in the same node, as long as the lookahead after it is the same.
+     * @return the state, or -1 if unknown.
+     */
+    public int getState() {
+        return state;
+    }
+
+    /**
+     * Gets the id of the production rule, which is dense and can be used to dispatch on the production, e.g. by a switch or an array.
+     * @return the id assigned by the PDA, or -1 if unknown.
+     * @see jojomodding.parsergenerator.pda.TreeFold
+     */
+    public int getProductionId() {
+        return productionId;
+    }
+
+    @Override
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public int ordinal() {
+        return ordinal;
+    }
+
+    /**
+     * Constructs an AST node for the same production rule, but with different children. The new node has no span.
+     * @param children the new children
+     * @return the new AST node
+     * @throws IllegalArgumentException if the AST node is not well-formed according to the grammar.
+     */
+    public AbstractSyntaxTree<T> withChildren(List<AbstractSyntax<T>> children) {
+        return new AbstractSyntaxTree<>(grammar, element, generated, children, state, productionId, -1);
+    }
+
+    /**
+     * Computes the hash code of a node.
+     * @param element the production rule LHS
+     * @param generated the production rule RHS
+     * @param children the children
+     * @return the hash code of a node with that production and those children.
+     */
+    static int hash(NonTerminal<?> element, ProductionRule<?> generated, List<? extends AbstractSyntax<?>> children) {
+        int hash = element.hashCode() * 31 + generated.hashCode();
+        for (var child : children) {
+            hash = hash * 31 + child.hashCode();
+        }
+        return hash;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Compares two trees structurally. This does not recurse, so it works for deep trees,
+     * and it skips shared subtrees, so comparing DAGs from a {@link TreeInterner} is cheap.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AbstractSyntaxTree<?> other) || hash != other.hash) {
+            return false;
+        }
+        ArrayDeque<AbstractSyntax<?>> left = new ArrayDeque<>(List.of(this));
+        ArrayDeque<AbstractSyntax<?>> right = new ArrayDeque<>(List.of(other));
+        while (!left.isEmpty()) {
+            var a = left.pop();
+            var b = right.pop();
+            if (a == b) {
+                continue;
+            }
+            if (a instanceof AbstractSyntaxTree<?> ta && b instanceof AbstractSyntaxTree<?> tb) {
+                if (ta.hash != tb.hash || ta.width != tb.width || ta.children.size() != tb.children.size() || !ta.element.equals(tb.element)
+                        || !ta.generated.equals(tb.generated)) {
+                    return false;
+                }
+                left.addAll(ta.children);
+                right.addAll(tb.children);
+            } else if (a instanceof AbstractSyntaxTree<?> || b instanceof AbstractSyntaxTree<?> || !a.equals(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Renders this tree using the formatters of its production rules. This works for trees of any depth, see {@link TreeRenderer}.
+     * The renderer is shared by all trees over the same grammar.
+     */
     @Override
     public String toString() {
-        return generated.formatter().apply(element, children.stream().map(Object::toString).collect(Collectors.toList()));
+        return grammar.getRenderer().render(this);
     }
 
+    /**
+     * Prints how this tree is derived, item by item, consuming its tokens from the input.
+     * To observe an actual run of a PDA instead, use a {@link jojomodding.parsergenerator.pda.ParseEventReader}.
+     * @param input the remaining input, from which the tokens of this tree are removed
+     * @param statePrefix printed before each state
+     * @see #traceRun(LinkedList, String, Consumer)
+     */
     public void printRun(LinkedList<T> input, String statePrefix) {
-        System.out.println("Input: " + Utils.formatWord(input, Objects::toString));
-        var state = new ProductionRuleItem<T>(this.element, ProductionRule.empty(), this.generated, List.of());
-        System.out.println("State: " + statePrefix + state.formatWihtoutLookahead());
-        var subIter = this.children.iterator();
-        while (!state.isReduce()) {
-            var first = state.firstAfterDot().get();
-            var child = subIter.next();
+        traceRun(input, statePrefix, System.out::println);
+    }
+
+    /**
+     * Describes how this tree is derived, item by item, consuming its tokens from the input.
+     * @param input the remaining input, from which the tokens of this tree are removed
+     * @param statePrefix written before each state
+     * @param lines receives the description, line by line
+     */
+    public void traceRun(LinkedList<T> input, String statePrefix, Consumer<String> lines) {
+        ArrayDeque<Expansion<T>> stack = new ArrayDeque<>();
+        stack.push(new Expansion<>(this, statePrefix));
+        lines.accept("Input: " + Utils.formatWord(input, Objects::toString));
+        lines.accept("State: " + statePrefix + stack.peek().state.formatWihtoutLookahead());
+        while (!stack.isEmpty()) {
+            var top = stack.peek();
+            if (top.state.isReduce()) {
+                lines.accept("Reduce " + top.state.formatWihtoutLookahead());
+                stack.pop();
+                if (!stack.isEmpty()) {
+                    stack.peek().advance(input, lines);
+                }
+                continue;
+            }
+            var first = top.state.firstAfterDot().get();
+            var child = top.children.next();
             if (first instanceof NonTerminal<T> nt) {
                 AbstractSyntaxTree<T> childTree = (AbstractSyntaxTree<T>) child;
-                System.out.println("Expand " + nt.name() + " to " + new ProductionRuleItem<T>(childTree.element, ProductionRule.empty(), childTree.generated, List.of()).formatWihtoutLookahead());
-                System.out.println();
-                childTree.printRun(input, statePrefix + state.formatWihtoutLookahead() + " ");
+                lines.accept("Expand " + nt.name() + " to " + new ProductionRuleItem<T>(childTree.element, ProductionRule.empty(), childTree.generated, List.of()).formatWihtoutLookahead());
+                lines.accept("");
+                var expansion = new Expansion<>(childTree, top.statePrefix + top.state.formatWihtoutLookahead() + " ");
+                stack.push(expansion);
+                lines.accept("Input: " + Utils.formatWord(input, Objects::toString));
+                lines.accept("State: " + expansion.statePrefix + expansion.state.formatWihtoutLookahead());
             } else if (first instanceof Terminal<T> t) {
-                System.out.println("Shift " + t.format());
+                lines.accept("Shift " + t.format());
                 input.removeFirst();
+                top.advance(input, lines);
             }
-            System.out.println();
-            state = state.advanceOne();
-            System.out.println("Input: " + Utils.formatWord(input, Objects::toString));
-            System.out.println("State: " + statePrefix + state.formatWihtoutLookahead());
         }
-        System.out.println("Reduce " + state.formatWihtoutLookahead());
     }
 
+    /**
+     * Prints the rightmost derivation of this tree in reverse, as a sequence of shifts and reductions.
+     * To observe an actual run of a PDA instead, use a {@link jojomodding.parsergenerator.pda.ParseEventReader}.
+     * @param input the remaining input, from which the tokens of this tree are removed
+     * @param prefix the symbols on the stack, which is updated as this tree is reduced
+     * @param statePrefix printed before each state
+     * @see #traceRMD(LinkedList, LinkedList, String, Consumer)
+     */
     public void printRMD(LinkedList<T> input, LinkedList<ProductionItem<T>> prefix, String statePrefix) {
-        var state = new ProductionRuleItem<T>(this.element, ProductionRule.empty(), this.generated, List.of());
-        var subIter = this.children.iterator();
-        while (!state.isReduce()) {
-            var first = state.firstAfterDot().get();
-            var child = subIter.next();
-            if (first instanceof NonTerminal<T> nt) {
-                AbstractSyntaxTree<T> childTree = (AbstractSyntaxTree<T>) child;
-                childTree.printRMD(input, prefix, statePrefix + state.formatWihtoutLookahead() + " ");
+        traceRMD(input, prefix, statePrefix, System.out::println);
+    }
+
+    /**
+     * Describes the rightmost derivation of this tree in reverse, as a sequence of shifts and reductions.
+     * @param input the remaining input, from which the tokens of this tree are removed
+     * @param prefix the symbols on the stack, which is updated as this tree is reduced
+     * @param statePrefix written before each state
+     * @param lines receives the description, line by line
+     */
+    public void traceRMD(LinkedList<T> input, LinkedList<ProductionItem<T>> prefix, String statePrefix, Consumer<String> lines) {
+        ArrayDeque<Expansion<T>> stack = new ArrayDeque<>();
+        stack.push(new Expansion<>(this, statePrefix));
+        while (!stack.isEmpty()) {
+            var top = stack.peek();
+            if (top.state.isReduce()) {
+                lines.accept("Input: " + Utils.formatWord(input, Objects::toString));
+                lines.accept("Prefix: " + Utils.formatWord(prefix, ProductionItem::format));
+                lines.accept("State: " + top.statePrefix + top.state.formatWihtoutLookahead());
+                lines.accept("Reduce " + top.state.formatWihtoutLookahead());
+                lines.accept("");
+                for (var x : top.tree.generated.items()) {
+                    prefix.removeLast();
+                }
+                prefix.addLast(top.tree.element);
+                stack.pop();
+                if (!stack.isEmpty()) {
+                    stack.peek().state = stack.peek().state.advanceOne();
+                }
+                continue;
+            }
+            var first = top.state.firstAfterDot().get();
+            var child = top.children.next();
+            if (first instanceof NonTerminal<T>) {
+                stack.push(new Expansion<>((AbstractSyntaxTree<T>) child, top.statePrefix + top.state.formatWihtoutLookahead() + " "));
             } else if (first instanceof Terminal<T> t) {
-                System.out.println("Input: " + Utils.formatWord(input, Objects::toString));
-                System.out.println("Prefix: " + Utils.formatWord(prefix, ProductionItem::format));
-                System.out.println("State: " + statePrefix + state.formatWihtoutLookahead());
-                System.out.println("Shift " + t.format());
-                System.out.println();
+                lines.accept("Input: " + Utils.formatWord(input, Objects::toString));
+                lines.accept("Prefix: " + Utils.formatWord(prefix, ProductionItem::format));
+                lines.accept("State: " + top.statePrefix + top.state.formatWihtoutLookahead());
+                lines.accept("Shift " + t.format());
+                lines.accept("");
                 input.removeFirst();
                 prefix.addLast(first);
+                top.state = top.state.advanceOne();
             }
-            state = state.advanceOne();
         }
-        System.out.println("Input: " + Utils.formatWord(input, Objects::toString));
-        System.out.println("Prefix: " + Utils.formatWord(prefix, ProductionItem::format));
-        System.out.println("State: " + statePrefix + state.formatWihtoutLookahead());
-        System.out.println("Reduce " + state.formatWihtoutLookahead());
-        System.out.println();
-        for(var x : this.generated.items()) {
-            prefix.removeLast();
+    }
+
+    /**
+     * A node whose derivation is being printed.
+     */
+    private static final class Expansion<T> {
+
+        private final AbstractSyntaxTree<T> tree;
+        private final String statePrefix;
+        private final Iterator<AbstractSyntax<T>> children;
+        private ProductionRuleItem<T> state;
+
+        private Expansion(AbstractSyntaxTree<T> tree, String statePrefix) {
+            this.tree = tree;
+            this.statePrefix = statePrefix;
+            this.children = tree.children.iterator();
+            this.state = new ProductionRuleItem<T>(tree.element, ProductionRule.empty(), tree.generated, List.of());
+        }
+
+        /**
+         * Moves past the current item after it has been derived, and describes the new state.
+         */
+        private void advance(LinkedList<T> input, Consumer<String> lines) {
+            lines.accept("");
+            state = state.advanceOne();
+            lines.accept("Input: " + Utils.formatWord(input, Objects::toString));
+            lines.accept("State: " + statePrefix + state.formatWihtoutLookahead());
         }
-        prefix.addLast(this.element);
     }
 }
@@ -0,0 +1,87 @@
+package jojomodding.parsergenerator.parsed;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Traversals of syntax trees, using an explicit stack instead of recursion, so that they work for trees of any depth.
+ * The traversals are lazy. Shared subtrees are visited once for each occurrence.
+ */
+public final class Traversal {
+
+    private Traversal() {
+    }
+
+    /**
+     * Visits each node before its children.
+     *
+     * @param root the root.
+     * @return the nodes in preorder.
+     */
+    public static <T> Iterable<AbstractSyntax<T>> preorder(AbstractSyntax<T> root) {
+        return () -> new Iterator<>() {
+            private final ArrayDeque<AbstractSyntax<T>> stack = new ArrayDeque<>(List.of(root));
+
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public AbstractSyntax<T> next() {
+                var node = stack.pop();
+                if (node instanceof AbstractSyntaxTree<T> tree) {
+                    var children = tree.getChildren();
+                    for (int i = children.size() - 1; i >= 0; i--) {
+                        stack.push(children.get(i));
+                    }
+                }
+                return node;
+            }
+        };
+    }
+
+    /**
+     * Visits each node after its children. This is the order in which a PDA builds the nodes.
+     *
+     * @param root the root.
+     * @return the nodes in postorder.
+     */
+    public static <T> Iterable<AbstractSyntax<T>> postorder(AbstractSyntax<T> root) {
+        return () -> new Iterator<>() {
+            private final ArrayDeque<AbstractSyntax<T>> nodes = new ArrayDeque<>(List.of(root));
+            /**
+             * For each node on the stack, how many of its children were visited.
+             */
+            private final ArrayDeque<Integer> visited = new ArrayDeque<>(List.of(0));
+
+            @Override
+            public boolean hasNext() {
+                return !nodes.isEmpty();
+            }
+
+            @Override
+            public AbstractSyntax<T> next() {
+                if (nodes.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                while (true) {
+                    var node = nodes.peek();
+                    int done = visited.peek();
+                    if (node instanceof AbstractSyntaxTree<T> tree && done < tree.getChildren().size()) {
+                        visited.pop();
+                        visited.push(done + 1);
+                        nodes.push(tree.getChildren().get(done));
+                        visited.push(0);
+                    } else {
+                        nodes.pop();
+                        visited.pop();
+                        return node;
+                    }
+                }
+            }
+        };
+    }
+}
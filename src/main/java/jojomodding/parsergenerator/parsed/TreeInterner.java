@@ -0,0 +1,135 @@
+package jojomodding.parsergenerator.parsed;
+
+import java.util.List;
+import jojomodding.parsergenerator.grammar.Grammar;
+import jojomodding.parsergenerator.grammar.NonTerminal;
+import jojomodding.parsergenerator.grammar.ProductionRule;
+
+/**
+ * Builds syntax nodes such that identical subtrees are shared, which turns trees into DAGs.
+ * A node is identical to a previously built one if it has the same token, or the same production,
+ * the same state and the very same children. Since children are interned before their parents, this finds all shared subtrees
+ * that are still in the table.
+ * <p>
+ * The table is bounded: it is a direct-mapped cache in which a node replaces whichever node had the same slot before.
+ * Sharing is thus best-effort, but the memory used by the table itself never grows.
+ * <p>
+ * An interner is not thread-safe, but may be used for several runs one after another, which then also share nodes.
+ *
+ * @param <T> the type of tokens.
+ */
+public final class TreeInterner<T> {
+
+    private final AbstractSyntax<?>[] slots;
+    private final int mask;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * Creates a new interner.
+     *
+     * @param capacity the minimal number of slots, which is rounded up to a power of two.
+     */
+    public TreeInterner(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new AbstractSyntax<?>[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Creates a new interner with 64k slots.
+     */
+    public TreeInterner() {
+        this(1 << 16);
+    }
+
+    /**
+     * Gets the leaf for a token.
+     *
+     * @param token the token.
+     * @return a leaf for that token, shared if possible.
+     */
+    @SuppressWarnings("unchecked")
+    public AbstractSyntaxToken<T> token(T token) {
+        int slot = spread(token.hashCode()) & mask;
+        if (slots[slot] instanceof AbstractSyntaxToken<?> leaf && leaf.token().equals(token)) {
+            hits++;
+            return (AbstractSyntaxToken<T>) leaf;
+        }
+        misses++;
+        var leaf = new AbstractSyntaxToken<>(token);
+        slots[slot] = leaf;
+        return leaf;
+    }
+
+    /**
+     * Gets the node for a production rule X -> aBc, as produced by a PDA.
+     *
+     * @param grammar   the grammar
+     * @param element   the production rule LHS, i.e. X
+     * @param generated the production rule RHS, i.e. aBc
+     * @param children  the children, i.e. what aBc expanded into. Should be interned themselves.
+     * @param state     the state of the PDA in which parsing this node began.
+     * @param productionId the id of the production rule assigned by the PDA.
+     * @return a node for that production and these children, shared if possible.
+     * @throws IllegalArgumentException if the AST node is not well-formed according to the grammar.
+     */
+    @SuppressWarnings("unchecked")
+    public AbstractSyntaxTree<T> tree(Grammar<T> grammar, NonTerminal<T> element, ProductionRule<T> generated,
+            List<AbstractSyntax<T>> children, int state, int productionId) {
+        int hash = AbstractSyntaxTree.hash(element, generated, children);
+        int slot = spread(hash * 31 + state) & mask;
+        if (slots[slot] instanceof AbstractSyntaxTree<?> node && node.hashCode() == hash && node.getState() == state
+                && node.getProductionId() == productionId && node.getGenerated() == generated && node.getElement().equals(element)
+                && sameChildren(node, children)) {
+            hits++;
+            return (AbstractSyntaxTree<T>) node;
+        }
+        misses++;
+        var node = new AbstractSyntaxTree<>(grammar, element, generated, children, state, productionId, -1);
+        slots[slot] = node;
+        return node;
+    }
+
+    private static boolean sameChildren(AbstractSyntaxTree<?> node, List<? extends AbstractSyntax<?>> children) {
+        var existing = node.getChildren();
+        if (existing.size() != children.size()) {
+            return false;
+        }
+        for (int i = 0; i < children.size(); i++) {
+            if (existing.get(i) != children.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int spread(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Gets how often an existing node was returned.
+     *
+     * @return the number of hits.
+     */
+    public long hits() {
+        return hits;
+    }
+
+    /**
+     * Gets how often a new node had to be built.
+     *
+     * @return the number of misses.
+     */
+    public long misses() {
+        return misses;
+    }
+}
@@ -0,0 +1,193 @@
+package jojomodding.parsergenerator.parsed;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import jojomodding.parsergenerator.grammar.ConcatenatingFormatter;
+import jojomodding.parsergenerator.grammar.NonTerminal;
+import jojomodding.parsergenerator.grammar.ProductionRule;
+
+/**
+ * Renders syntax as text using the {@link ProductionRule#formatter() formatters} of the production rules,
+ * writing directly into an {@link Appendable}.
+ * <p>
+ * Formatters are applied bottom-up to the rendered texts of the children, on an explicit stack, so trees of any depth can be
+ * rendered. Formatters that are marked as {@link ConcatenatingFormatter concatenating} just combine their children's texts with
+ * some literals. For their production rules, the renderer finds that layout once by formatting placeholders instead of children.
+ * Such nodes are then written literal by literal without ever building the text of a subtree, in time linear in the output.
+ * <p>
+ * A renderer caches the layouts of the production rules it has seen, and can be reused for many trees, also by several threads.
+ * Each {@link jojomodding.parsergenerator.grammar.Grammar} has one for the trees over it.
+ */
+public final class TreeRenderer {
+
+    /**
+     * Placeholders are this character followed by a character encoding the child index.
+     */
+    private static final char PLACEHOLDER = '\uFDD0';
+
+    /**
+     * The layouts of production rules, consisting of Strings for literals and Integers for children.
+     */
+    private final Map<Key, Object[]> layouts = new ConcurrentHashMap<>();
+
+    private record Key(NonTerminal<?> element, ProductionRule<?> generated) {
+
+    }
+
+    /**
+     * Used instead of a layout if the formatter is not concatenating, or does not have a fixed layout after all.
+     */
+    private static final Object[] OPAQUE = new Object[0];
+
+    /**
+     * Renders syntax into a string.
+     *
+     * @param syntax the syntax.
+     * @return its text.
+     */
+    public String render(AbstractSyntax<?> syntax) {
+        StringBuilder sb = new StringBuilder();
+        render(syntax, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Renders syntax.
+     *
+     * @param syntax the syntax.
+     * @param out    where to write the text.
+     * @throws UncheckedIOException if writing fails.
+     */
+    public void render(AbstractSyntax<?> syntax, Appendable out) {
+        try {
+            renderImpl(syntax, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A node being rendered.
+     */
+    private static final class Frame {
+
+        private final AbstractSyntax<?> node;
+        private final Appendable out;
+        private final Object[] layout;
+        /**
+         * For nodes with a layout, the next part of it. Otherwise, the number of children being rendered.
+         */
+        private int position = 0;
+        /**
+         * For nodes without a layout, the texts of the children.
+         */
+        private final List<StringBuilder> children;
+
+        private Frame(AbstractSyntax<?> node, Appendable out, Object[] layout) {
+            this.node = node;
+            this.out = out;
+            this.layout = layout;
+            this.children = layout == OPAQUE ? new ArrayList<>() : null;
+        }
+    }
+
+    private void renderImpl(AbstractSyntax<?> syntax, Appendable out) throws IOException {
+        ArrayDeque<Frame> stack = new ArrayDeque<>();
+        stack.push(frame(syntax, out));
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            if (!(frame.node instanceof AbstractSyntaxTree<?> tree)) {
+                frame.out.append(frame.node.toString());
+                stack.pop();
+                continue;
+            }
+            var children = tree.getChildren();
+            if (frame.layout != OPAQUE) {
+                if (frame.position == frame.layout.length) {
+                    stack.pop();
+                } else if (frame.layout[frame.position++] instanceof Integer child) {
+                    stack.push(frame(children.get(child), frame.out));
+                } else {
+                    frame.out.append((String) frame.layout[frame.position - 1]);
+                }
+            } else if (frame.position < children.size()) {
+                StringBuilder text = new StringBuilder();
+                frame.children.add(text);
+                stack.push(frame(children.get(frame.position++), text));
+            } else {
+                frame.out.append(format(tree, frame.children));
+                stack.pop();
+            }
+        }
+    }
+
+    private static <T> String format(AbstractSyntaxTree<T> tree, List<StringBuilder> children) {
+        List<String> texts = new ArrayList<>(children.size());
+        for (var child : children) {
+            texts.add(child.toString());
+        }
+        return tree.getGenerated().formatter().apply(tree.getElement(), texts);
+    }
+
+    private Frame frame(AbstractSyntax<?> node, Appendable out) {
+        if (node instanceof AbstractSyntaxTree<?> tree) {
+            return new Frame(node, out, layouts.computeIfAbsent(new Key(tree.getElement(), tree.getGenerated()), $ -> layout(tree)));
+        }
+        return new Frame(node, out, null);
+    }
+
+    /**
+     * Finds the layout of the formatter of a node, by formatting placeholders, once with and once without a suffix.
+     */
+    private static <T> Object[] layout(AbstractSyntaxTree<T> tree) {
+        int count = tree.getChildren().size();
+        if (!(tree.getGenerated().formatter() instanceof ConcatenatingFormatter<T>) || count >= Character.MAX_VALUE - PLACEHOLDER) {
+            return OPAQUE;
+        }
+        List<StringBuilder> plain = new ArrayList<>();
+        List<StringBuilder> marked = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            plain.add(new StringBuilder().append(PLACEHOLDER).append((char) (PLACEHOLDER + 1 + i)));
+            marked.add(new StringBuilder().append(PLACEHOLDER).append((char) (PLACEHOLDER + 1 + i)).append('#'));
+        }
+        Object[] layout = parse(format(tree, plain), count, "");
+        if (layout == null || !Arrays.equals(layout, parse(format(tree, marked), count, "#"))) {
+            return OPAQUE;
+        }
+        return layout;
+    }
+
+    /**
+     * Splits a formatted text into literals and placeholders, each of which must be followed by the given suffix.
+     *
+     * @return the layout, or null if the text is not a concatenation of literals and placeholders.
+     */
+    private static Object[] parse(String text, int count, String suffix) {
+        List<Object> parts = new ArrayList<>();
+        int start = 0;
+        for (int i = text.indexOf(PLACEHOLDER); i >= 0; i = text.indexOf(PLACEHOLDER, start)) {
+            if (i + 1 >= text.length() || !text.startsWith(suffix, i + 2)) {
+                return null;
+            }
+            int child = text.charAt(i + 1) - PLACEHOLDER - 1;
+            if (child < 0 || child >= count) {
+                return null;
+            }
+            if (i > start) {
+                parts.add(text.substring(start, i));
+            }
+            parts.add(child);
+            start = i + 2 + suffix.length();
+        }
+        if (start < text.length()) {
+            parts.add(text.substring(start));
+        }
+        return parts.toArray();
+    }
+}
@@ -0,0 +1,72 @@
+package jojomodding.parsergenerator.pda;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+import jojomodding.parsergenerator.parsed.AbstractSyntax;
+
+/**
+ * Parses many inputs concurrently with a single, shared PDA.
+ * The executor decides how many inputs are parsed at once, e.g. a fixed thread pool, or one virtual thread per task where available.
+ * Since PDAs are immutable, no locking is needed.
+ *
+ * @param <T> the type of tokens.
+ */
+public class BatchParser<T> {
+
+    private final PushDownAutomaton<T> pda;
+    private final Executor executor;
+
+    /**
+     * Creates a new batch parser.
+     *
+     * @param pda      the PDA to run.
+     * @param executor the executor on which inputs are parsed.
+     */
+    public BatchParser(PushDownAutomaton<T> pda, Executor executor) {
+        this.pda = pda;
+        this.executor = executor;
+    }
+
+    /**
+     * Parses all inputs.
+     *
+     * @param inputs the inputs.
+     * @return the parsed results, in the same order as the inputs.
+     * @throws IllegalArgumentException if some input is not in the language. If several are not, this is the exception for the first one.
+     */
+    public List<AbstractSyntax<T>> parseAll(Collection<? extends List<T>> inputs) {
+        return parseAll(inputs.stream());
+    }
+
+    /**
+     * Parses all inputs. The stream is consumed completely before this returns.
+     *
+     * @param inputs the inputs.
+     * @return the parsed results, in the same order as the inputs.
+     * @throws IllegalArgumentException if some input is not in the language. If several are not, this is the exception for the first one.
+     */
+    public List<AbstractSyntax<T>> parseAll(Stream<? extends List<T>> inputs) {
+        List<CompletableFuture<AbstractSyntax<T>>> futures = new ArrayList<>();
+        inputs.forEachOrdered(input -> futures.add(CompletableFuture.supplyAsync(() -> pda.run(input), executor)));
+        List<AbstractSyntax<T>> results = new ArrayList<>(futures.size());
+        for (var future : futures) {
+            try {
+                results.add(future.join());
+            } catch (CompletionException e) {
+                futures.forEach(f -> f.cancel(false));
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                } else if (e.getCause() instanceof Error cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,21 @@
+package jojomodding.parsergenerator.pda;
+
+import java.util.List;
+
+/**
+ * An edit of a token list, replacing some tokens by others.
+ *
+ * @param offset   the position of the first removed token, or where the new tokens are inserted.
+ * @param removed  how many tokens are removed.
+ * @param inserted the tokens inserted instead.
+ * @param <T>      the type of tokens.
+ */
+public record Edit<T>(int offset, int removed, List<T> inserted) {
+
+    public Edit {
+        if (offset < 0 || removed < 0) {
+            throw new IllegalArgumentException("Invalid edit!");
+        }
+        inserted = List.copyOf(inserted);
+    }
+}
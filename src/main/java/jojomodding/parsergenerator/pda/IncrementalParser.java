@@ -0,0 +1,196 @@
+package jojomodding.parsergenerator.pda;
+
+import java.util.ArrayList;
+import java.util.List;
+import jojomodding.parsergenerator.grammar.NonTerminal;
+import jojomodding.parsergenerator.parsed.AbstractSyntax;
+import jojomodding.parsergenerator.parsed.AbstractSyntaxTree;
+
+/**
+ * Parses documents that are edited repeatedly, reusing the unchanged parts of the previous tree.
+ * <p>
+ * Each node of a tree records the state in which it was parsed and how many tokens it spans.
+ * When reparsing, the PDA does not start at the beginning. Its stacks are rebuilt from the path of the old tree to the last token before the
+ * edited region whose lookahead is unchanged, as they were right after shifting that token. From there, the PDA runs as usual, but whenever
+ * it is about to shift a token that starts an old node that was parsed from the current state, it pushes that node instead of parsing its
+ * tokens again. This is only done for nodes whose tokens and lookahead lie entirely before or entirely after the edited region.
+ * So reparsing takes time proportional to the size of the edits and the depth of the tree, rather than to the size of the document.
+ *
+ * @param <T> the type of tokens.
+ */
+public class IncrementalParser<T> {
+
+    private final PushDownAutomaton<T> pda;
+    private final int initial;
+
+    /**
+     * Creates a new incremental parser for documents of the first start symbol of the PDA.
+     *
+     * @param pda the PDA.
+     */
+    public IncrementalParser(PushDownAutomaton<T> pda) {
+        this.pda = pda;
+        this.initial = 0;
+    }
+
+    /**
+     * Creates a new incremental parser for documents of one of the start symbols the PDA was built for.
+     *
+     * @param pda         the PDA.
+     * @param startSymbol the non-terminal to parse documents as.
+     * @throws IllegalArgumentException if the PDA has no such start symbol.
+     */
+    public IncrementalParser(PushDownAutomaton<T> pda, NonTerminal<T> startSymbol) {
+        this.pda = pda;
+        this.initial = pda.initialState(startSymbol);
+    }
+
+    /**
+     * Parses a document from scratch.
+     *
+     * @param tokens the tokens.
+     * @return the parsed document.
+     * @throws IllegalArgumentException if the input is not in the language
+     */
+    public ParsedDocument<T> parse(List<T> tokens) {
+        tokens = List.copyOf(tokens);
+        return new ParsedDocument<>(tokens, pda.run(initial, tokens.iterator(), null, null));
+    }
+
+    /**
+     * Reparses a document after some edits.
+     *
+     * @param previous the previous version of the document, as returned by this parser.
+     * @param edits    the edits, applied in order. Offsets refer to the document after the preceding edits.
+     * @return the parsed new version of the document.
+     * @throws IllegalArgumentException if the new input is not in the language, or the edits are out of bounds.
+     */
+    public ParsedDocument<T> reparse(ParsedDocument<T> previous, List<Edit<T>> edits) {
+        if (edits.isEmpty()) {
+            return previous;
+        }
+        TokenRope<T> tokens = previous.rope();
+        // the edited region is [lo, hi) in the new document and [lo, hi - delta) in the old one.
+        int lo = Integer.MAX_VALUE, hi = 0;
+        for (var edit : edits) {
+            int end = edit.offset() + edit.removed();
+            if (end > tokens.size()) {
+                throw new IllegalArgumentException("Edit out of bounds!");
+            }
+            tokens = tokens.replace(edit.offset(), edit.removed(), edit.inserted());
+            int insertedEnd = edit.offset() + edit.inserted().size();
+            if (hi >= end) {
+                hi += edit.inserted().size() - edit.removed();
+            } else if (hi > edit.offset()) {
+                hi = insertedEnd;
+            }
+            hi = Math.max(hi, insertedEnd);
+            lo = Math.min(lo, edit.offset());
+        }
+        int delta = tokens.size() - previous.tokens().size();
+        var cursor = new Cursor(previous.tree(), lo, hi - delta, pda.getLookahead());
+        int editStart = lo, editEnd = hi;
+        // the last token whose lookahead lies before the edited region, i.e. up to which the old run can be taken over
+        int restart = lo - pda.getLookahead() + 1;
+        AbstractSyntax<T> tree = pda.run(initial, tokens, previous.tree(), restart, (position, state) -> {
+            if (position < editStart) {
+                return cursor.find(position, state);
+            } else if (position >= editEnd) {
+                return cursor.find(position - delta, state);
+            }
+            return null;
+        });
+        return new ParsedDocument<>(tokens, tree);
+    }
+
+    /**
+     * Walks over the old tree in order, to find reusable nodes at increasing positions.
+     */
+    private class Cursor {
+
+        private final int editStart;
+        private final int editEnd;
+        private final int lookahead;
+        /**
+         * The path from the root to the current node, and for each node on the path, the index of the child we are in.
+         */
+        private final List<AbstractSyntaxTree<T>> path = new ArrayList<>();
+        private final List<Integer> childIndex = new ArrayList<>();
+        /**
+         * The current node and its position in the old document, or null if we are done.
+         */
+        private AbstractSyntax<T> node;
+        private int position = 0;
+
+        private Cursor(AbstractSyntax<T> root, int editStart, int editEnd, int lookahead) {
+            this.node = root;
+            this.editStart = editStart;
+            this.editEnd = editEnd;
+            this.lookahead = lookahead;
+        }
+
+        /**
+         * Finds a node to reuse. Must be called with increasing positions.
+         *
+         * @param target the position in the old document.
+         * @param state  the current state.
+         * @return the largest reusable node starting at target, or null.
+         */
+        private AbstractSyntaxTree<T> find(int target, int state) {
+            while (node != null) {
+                if (position + node.width() <= target) {
+                    next();
+                } else if (position < target) {
+                    descend();
+                } else if (position > target) {
+                    return null;
+                } else if (node instanceof AbstractSyntaxTree<T> tree) {
+                    boolean unchanged = position + tree.width() + lookahead <= editStart || position >= editEnd;
+                    if (unchanged && tree.getState() == state && tree.width() > 0) {
+                        var res = tree;
+                        next();
+                        return res;
+                    }
+                    descend();
+                } else {
+                    return null;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Moves to the first child of the current node, or the next node if it has none.
+         */
+        private void descend() {
+            if (node instanceof AbstractSyntaxTree<T> tree && !tree.getChildren().isEmpty()) {
+                path.add(tree);
+                childIndex.add(0);
+                node = tree.getChildren().get(0);
+            } else {
+                next();
+            }
+        }
+
+        /**
+         * Moves to the next node after the current one and all its children.
+         */
+        private void next() {
+            int end = position + node.width();
+            while (!path.isEmpty()) {
+                int last = path.size() - 1;
+                var siblings = path.get(last).getChildren();
+                int idx = childIndex.get(last) + 1;
+                if (idx < siblings.size()) {
+                    childIndex.set(last, idx);
+                    node = siblings.get(idx);
+                    position = end;
+                    return;
+                }
+                path.remove(last);
+                childIndex.remove(last);
+            }
+            node = null;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package jojomodding.parsergenerator.pda;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Predicate;
+import jojomodding.parsergenerator.grammar.NonTerminal;
+import jojomodding.parsergenerator.parsed.AbstractSyntax;
+import jojomodding.parsergenerator.parsed.AbstractSyntaxTree;
+
+/**
+ * Parses a single large input in parallel, by splitting it into chunks that are parsed independently.
+ * <p>
+ * This works for inputs that are lists of items, i.e. where the result is a restartable non-terminal L with rules like L → X L | ε or
+ * L → L X | ε. The input may be split before any synchronizing terminal, which are the terminals that (usually) start a new item.
+ * Each chunk is then parsed as an L on its own, and the trees are stitched back together by replacing the empty L at the end of the
+ * rightmost (or the start of the leftmost) path of one tree by the neighbouring tree.
+ * <p>
+ * Splitting is speculative: if a split point turns out to be in the middle of an item, parsing that chunk fails or the trees can not be
+ * stitched, and the whole input is parsed sequentially instead. Otherwise the result is the same as a sequential parse, since the stitched
+ * tree is a derivation of the whole input and LR grammars are unambiguous.
+ *
+ * @param <T> the type of tokens.
+ */
+public class ParallelParser<T> {
+
+    private final PushDownAutomaton<T> pda;
+    private final NonTerminal<T> restartable;
+    private final Predicate<T> synchronizing;
+    private final ForkJoinPool pool;
+    private final int minChunkSize;
+
+    /**
+     * Creates a new parallel parser.
+     *
+     * @param pda           the PDA.
+     * @param restartable   the restartable non-terminal, which must be the non-terminal the PDA parses.
+     * @param synchronizing which terminals the input may be split before.
+     * @param pool          the pool on which chunks are parsed.
+     * @param minChunkSize  the minimal number of tokens in each chunk.
+     */
+    public ParallelParser(PushDownAutomaton<T> pda, NonTerminal<T> restartable, Predicate<T> synchronizing, ForkJoinPool pool,
+            int minChunkSize) {
+        if (minChunkSize <= 0) {
+            throw new IllegalArgumentException("Invalid chunk size!");
+        }
+        this.pda = pda;
+        this.restartable = restartable;
+        this.synchronizing = synchronizing;
+        this.pool = pool;
+        this.minChunkSize = minChunkSize;
+    }
+
+    /**
+     * Creates a new parallel parser using the common pool.
+     *
+     * @param pda           the PDA.
+     * @param restartable   the restartable non-terminal, which must be the non-terminal the PDA parses.
+     * @param synchronizing which terminals the input may be split before.
+     */
+    public ParallelParser(PushDownAutomaton<T> pda, NonTerminal<T> restartable, Predicate<T> synchronizing) {
+        this(pda, restartable, synchronizing, ForkJoinPool.commonPool(), 4096);
+    }
+
+    /**
+     * Run the PDA on the given input, in parallel if possible.
+     *
+     * @param input the input
+     * @return the parsed result
+     * @throws IllegalArgumentException if the input is not in the language
+     */
+    public AbstractSyntax<T> run(List<T> input) {
+        List<List<T>> chunks = split(input);
+        if (chunks.size() <= 1) {
+            return pda.run(input);
+        }
+        List<ForkJoinTask<AbstractSyntax<T>>> tasks = new ArrayList<>(chunks.size());
+        for (var chunk : chunks) {
+            tasks.add(pool.submit(() -> pda.run(chunk)));
+        }
+        List<AbstractSyntax<T>> trees = new ArrayList<>(chunks.size());
+        boolean failed = false;
+        for (var task : tasks) {
+            if (failed) {
+                task.cancel(false);
+                continue;
+            }
+            try {
+                trees.add(task.join());
+            } catch (RuntimeException e) {
+                failed = true;
+            }
+        }
+        if (!failed) {
+            var stitched = stitchRight(trees);
+            if (stitched == null) {
+                stitched = stitchLeft(trees);
+            }
+            if (stitched != null) {
+                return stitched;
+            }
+        }
+        return pda.run(input);
+    }
+
+    /**
+     * Splits the input into chunks, each starting with a synchronizing terminal (except the first).
+     *
+     * @param input the input.
+     * @return the chunks.
+     */
+    private List<List<T>> split(List<T> input) {
+        int count = Math.min(4 * pool.getParallelism(), input.size() / minChunkSize);
+        List<List<T>> chunks = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i < count; i++) {
+            int split = Math.max(start + minChunkSize, (int) ((long) input.size() * i / count));
+            while (split < input.size() && !synchronizing.test(input.get(split))) {
+                split++;
+            }
+            if (input.size() - split < minChunkSize) {
+                break;
+            }
+            chunks.add(input.subList(start, split));
+            start = split;
+        }
+        chunks.add(input.subList(start, input.size()));
+        return chunks;
+    }
+
+    /**
+     * Stitches trees for right-recursive lists, by putting each tree in place of the empty L at the end of the rightmost path of its
+     * predecessor.
+     *
+     * @param trees the trees of the chunks.
+     * @return the stitched tree, or null if this is not possible.
+     */
+    private AbstractSyntax<T> stitchRight(List<AbstractSyntax<T>> trees) {
+        AbstractSyntax<T> result = trees.get(trees.size() - 1);
+        for (int i = trees.size() - 2; i >= 0; i--) {
+            result = graft(trees.get(i), result, true);
+            if (result == null) {
+                return null;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stitches trees for left-recursive lists, by putting each tree in place of the empty L at the start of the leftmost path of its
+     * successor.
+     *
+     * @param trees the trees of the chunks.
+     * @return the stitched tree, or null if this is not possible.
+     */
+    private AbstractSyntax<T> stitchLeft(List<AbstractSyntax<T>> trees) {
+        AbstractSyntax<T> result = trees.get(0);
+        for (int i = 1; i < trees.size(); i++) {
+            result = graft(trees.get(i), result, false);
+            if (result == null) {
+                return null;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Replaces the empty L at the end of the rightmost or leftmost path of a tree.
+     *
+     * @param tree        the tree.
+     * @param replacement the tree to put in place of the empty L.
+     * @param rightmost   whether to follow the rightmost or leftmost path.
+     * @return the new tree, or null if the path does not end in an empty L, or either tree is not an L.
+     */
+    private AbstractSyntax<T> graft(AbstractSyntax<T> tree, AbstractSyntax<T> replacement, boolean rightmost) {
+        if (!isRestartable(tree) || !isRestartable(replacement)) {
+            return null;
+        }
+        List<AbstractSyntaxTree<T>> path = new ArrayList<>();
+        AbstractSyntax<T> node = tree;
+        while (true) {
+            if (!(node instanceof AbstractSyntaxTree<T> ast)) {
+                return null;
+            }
+            var children = ast.getChildren();
+            if (children.isEmpty()) {
+                if (!ast.getElement().equals(restartable)) {
+                    return null;
+                }
+                break;
+            }
+            path.add(ast);
+            node = children.get(rightmost ? children.size() - 1 : 0);
+        }
+        AbstractSyntax<T> result = replacement;
+        for (int i = path.size() - 1; i >= 0; i--) {
+            List<AbstractSyntax<T>> children = new ArrayList<>(path.get(i).getChildren());
+            children.set(rightmost ? children.size() - 1 : 0, result);
+            result = path.get(i).withChildren(children);
+        }
+        return result;
+    }
+
+    private boolean isRestartable(AbstractSyntax<T> tree) {
+        return tree instanceof AbstractSyntaxTree<T> ast && ast.getElement().equals(restartable);
+    }
+}
@@ -0,0 +1,19 @@
+package jojomodding.parsergenerator.pda;
+
+/**
+ * The kinds of events reported by a {@link ParseEventReader}.
+ */
+public enum ParseEvent {
+    /**
+     * A token was shifted.
+     */
+    SHIFT,
+    /**
+     * The topmost symbols on the stack were reduced along a production.
+     */
+    REDUCE,
+    /**
+     * The input was accepted. This is the last event.
+     */
+    ACCEPT
+}
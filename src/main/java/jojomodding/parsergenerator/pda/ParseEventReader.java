@@ -0,0 +1,196 @@
+package jojomodding.parsergenerator.pda;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import jojomodding.parsergenerator.grammar.NonTerminal;
+import jojomodding.parsergenerator.grammar.ProductionRule;
+import jojomodding.parsergenerator.pda.action.ActionReduce;
+
+/**
+ * Reports the actions of a PDA as events, as the caller asks for them, instead of building a tree.
+ * Only the state stack is kept, so input of any length can be processed with memory proportional to the nesting depth.
+ * <p>
+ * Each call to {@link #next()} performs one action of the PDA. The details of the event can be queried afterwards:
+ * <pre>{@code
+ * while (reader.hasNext()) {
+ *     if (reader.next() == ParseEvent.REDUCE && reader.element().equals(expression)) {
+ *         count++;
+ *     }
+ * }
+ * }</pre>
+ * The events describe a rightmost derivation in reverse: after each REDUCE event, the reduced production's
+ * {@link #childCount()} topmost symbols have been replaced by its LHS.
+ *
+ * @param <T> the type of tokens.
+ */
+public final class ParseEventReader<T> {
+
+    private final PushDownAutomaton<T> pda;
+    private final ParserState<T> state;
+    private final Iterator<T> input;
+    private ParseEvent event = null;
+    private T token = null;
+    private int production = -1;
+
+    /**
+     * Creates a new reader that parses the first start symbol of the PDA. The input is read lazily, only as far as needed for the
+     * lookahead of the next event.
+     *
+     * @param pda   the PDA.
+     * @param input the input.
+     */
+    public ParseEventReader(PushDownAutomaton<T> pda, Iterator<T> input) {
+        this(pda, 0, input);
+    }
+
+    /**
+     * Creates a new reader that parses one of the start symbols the PDA was built for. The input is read lazily, only as far as
+     * needed for the lookahead of the next event.
+     *
+     * @param pda         the PDA.
+     * @param startSymbol the non-terminal to parse the input as.
+     * @param input       the input.
+     * @throws IllegalArgumentException if the PDA has no such start symbol.
+     */
+    public ParseEventReader(PushDownAutomaton<T> pda, NonTerminal<T> startSymbol, Iterator<T> input) {
+        this(pda, pda.initialState(startSymbol), input);
+    }
+
+    private ParseEventReader(PushDownAutomaton<T> pda, int initial, Iterator<T> input) {
+        this.pda = pda;
+        this.state = new ParserState<>(pda, initial, new int[16], null, null, null);
+        this.input = input;
+    }
+
+    /**
+     * Checks whether there are more events.
+     *
+     * @return false iff the input was already accepted.
+     */
+    public boolean hasNext() {
+        return event != ParseEvent.ACCEPT;
+    }
+
+    /**
+     * Performs the next action.
+     *
+     * @return the kind of event.
+     * @throws IllegalArgumentException if the input is not in the language.
+     * @throws NoSuchElementException   if the input was already accepted.
+     */
+    public ParseEvent next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        while (!state.ready()) {
+            if (input.hasNext()) {
+                state.append(input.next());
+            } else {
+                state.endOfInput();
+            }
+        }
+        T next = state.peek();
+        int action = state.step();
+        token = null;
+        production = -1;
+        if (action == PushDownAutomaton.SHIFT) {
+            token = next;
+            event = ParseEvent.SHIFT;
+        } else if (action >= PushDownAutomaton.REDUCE) {
+            production = action - PushDownAutomaton.REDUCE;
+            event = ParseEvent.REDUCE;
+        } else {
+            event = ParseEvent.ACCEPT;
+        }
+        return event;
+    }
+
+    /**
+     * Gets the kind of the current event.
+     *
+     * @return the kind, or null before the first event.
+     */
+    public ParseEvent getEvent() {
+        return event;
+    }
+
+    /**
+     * Gets the token shifted by the current event.
+     *
+     * @return the token.
+     * @throws IllegalStateException if the current event is no SHIFT event.
+     */
+    public T token() {
+        if (event != ParseEvent.SHIFT) {
+            throw new IllegalStateException("Not a shift event!");
+        }
+        return token;
+    }
+
+    /**
+     * Gets the production LHS of the current event.
+     *
+     * @return the LHS.
+     * @throws IllegalStateException if the current event is no REDUCE event.
+     */
+    public NonTerminal<T> element() {
+        return production().from();
+    }
+
+    /**
+     * Gets the production RHS of the current event.
+     *
+     * @return the RHS.
+     * @throws IllegalStateException if the current event is no REDUCE event.
+     */
+    public ProductionRule<T> generated() {
+        return production().to();
+    }
+
+    /**
+     * Gets the number of symbols reduced by the current event.
+     *
+     * @return the length of the production RHS.
+     * @throws IllegalStateException if the current event is no REDUCE event.
+     */
+    public int childCount() {
+        return production().to().items().size();
+    }
+
+    private ActionReduce<T> production() {
+        if (event != ParseEvent.REDUCE) {
+            throw new IllegalStateException("Not a reduce event!");
+        }
+        return pda.getProduction(production);
+    }
+
+    /**
+     * Gets the state of the PDA after the current event.
+     *
+     * @return the state on top of the stack.
+     */
+    public int state() {
+        return state.currentState();
+    }
+
+    /**
+     * Gets the number of symbols on the stack after the current event.
+     *
+     * @return the stack depth.
+     */
+    public int depth() {
+        return state.height() - 1;
+    }
+
+    @Override
+    public String toString() {
+        if (event == null) {
+            return "start";
+        }
+        return switch (event) {
+            case SHIFT -> "shift " + token;
+            case REDUCE -> production().toString();
+            case ACCEPT -> "accept";
+        };
+    }
+}
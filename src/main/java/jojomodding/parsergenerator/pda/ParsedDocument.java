@@ -0,0 +1,35 @@
+package jojomodding.parsergenerator.pda;
+
+import java.util.List;
+import jojomodding.parsergenerator.parsed.AbstractSyntax;
+
+/**
+ * The result of an {@link IncrementalParser}, which can be reparsed after edits.
+ * The tokens are kept in an immutable rope, so that each edit only copies a small part of them, and the versions of a document
+ * share the rest.
+ *
+ * @param tokens the tokens that were parsed. They are copied, unless they are the tokens of another document.
+ * @param tree   the parsed result.
+ * @param <T>    the type of tokens.
+ */
+public record ParsedDocument<T>(List<T> tokens, AbstractSyntax<T> tree) {
+
+    /**
+     * Creates a new document.
+     *
+     * @param tokens the tokens.
+     * @param tree   the parsed result.
+     */
+    public ParsedDocument {
+        tokens = TokenRope.of(tokens);
+    }
+
+    /**
+     * Gets the tokens as a rope, which can be edited cheaply.
+     *
+     * @return the tokens.
+     */
+    TokenRope<T> rope() {
+        return (TokenRope<T>) tokens;
+    }
+}
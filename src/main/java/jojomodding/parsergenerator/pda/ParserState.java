@@ -0,0 +1,507 @@
+package jojomodding.parsergenerator.pda;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import jojomodding.parsergenerator.metrics.ParseMetrics;
+import jojomodding.parsergenerator.metrics.ParseStatistics;
+import jojomodding.parsergenerator.parsed.AbstractSyntax;
+import jojomodding.parsergenerator.parsed.AbstractSyntaxToken;
+import jojomodding.parsergenerator.parsed.TreeInterner;
+import jojomodding.parsergenerator.utils.VarInts;
+
+/**
+ * A run of a PDA that is fed one token at a time.
+ * The PDA acts as soon as it has seen enough lookahead, so at any time only the last few tokens are pending.
+ * <p>
+ * The state can be saved to a compact binary checkpoint and resumed later, even in another JVM,
+ * as long as the PDA there was built from the same grammar with the same lookahead.
+ * A checkpoint contains the state stack, the pending lookahead, and the partial trees on the value stack.
+ * Tokens are written by a {@link TokenCodec}, and the value stack by a {@link ValueCodec}.
+ *
+ * @param <T> the type of tokens.
+ */
+public final class ParserState<T> {
+
+    /**
+     * The first bytes of each checkpoint.
+     */
+    private static final int MAGIC = 0x4C52434B;
+    /**
+     * The version of the checkpoint format.
+     */
+    private static final int VERSION = 2;
+
+    private final PushDownAutomaton<T> pda;
+    private final int lookahead;
+    private final int radix;
+    /**
+     * The value of the highest digit of the lookahead encoding, i.e. radix^(lookahead - 1).
+     */
+    private final int highest;
+    private int[] stack;
+    private int sp = 0;
+    private final ArrayList<AbstractSyntax<T>> dataStack;
+    /**
+     * The pending lookahead tokens, a ring buffer of count tokens starting at head.
+     */
+    private final T[] window;
+    private final int[] digits;
+    private int head = 0;
+    private int count = 0;
+    /**
+     * The encoding of the lookahead, where the end of input is assumed after the pending tokens.
+     */
+    private int lookaheadCode = 0;
+    /**
+     * Whether no more tokens can be fed, because the input was finished or rejected.
+     */
+    private boolean done = false;
+    /**
+     * By which tokens and nodes are built, or null.
+     */
+    private final TreeInterner<T> interner;
+    /**
+     * Where the spans of the nodes are recorded, or null.
+     */
+    private final SpanTable spans;
+    /**
+     * The number of tokens shifted so far, if spans are recorded.
+     */
+    private int position = 0;
+    /**
+     * Counts what this run does, or null if the PDA has no metrics.
+     */
+    private final Recorder recorder;
+
+    /**
+     * The statistics of a run, collected in primitive counters until it ends.
+     */
+    private static final class Recorder {
+
+        private final ParseMetrics.Run run;
+        private final long start = System.nanoTime();
+        private final long[] reductions;
+        private long[] visits;
+        private long shifts = 0;
+        private int maxDepth = 0;
+
+        private Recorder(ParseMetrics metrics, PushDownAutomaton<?> pda) {
+            this.run = metrics.begin();
+            this.reductions = new long[pda.getProductionCount()];
+            this.visits = new long[pda.getStateCount()];
+        }
+
+        private void record(int state, int action, int depth) {
+            if (state >= visits.length) {
+                // states of a lazily built PDA may be found during the run
+                visits = Arrays.copyOf(visits, Math.max(2 * visits.length, state + 1));
+            }
+            visits[state]++;
+            if (action == PushDownAutomaton.SHIFT) {
+                shifts++;
+            } else if (action >= PushDownAutomaton.REDUCE) {
+                reductions[action - PushDownAutomaton.REDUCE]++;
+            }
+            if (depth > maxDepth) {
+                maxDepth = depth;
+            }
+        }
+
+        private void report(boolean accepted) {
+            run.end(new ParseStatistics(shifts, reductions, visits, maxDepth, System.nanoTime() - start, accepted));
+        }
+    }
+
+    /**
+     * Starts a new run.
+     *
+     * @param pda       the PDA.
+     * @param initial   the initial state.
+     * @param stack     storage for the state stack, may be reallocated.
+     * @param dataStack storage for the value stack, must be empty. If null, no values are built.
+     * @param interner  by which tokens and nodes are built, or null to build a new node for each reduction.
+     * @param spans     where to record the spans of the nodes, or null. Must be empty, and can not be combined with an interner.
+     */
+    ParserState(PushDownAutomaton<T> pda, int initial, int[] stack, ArrayList<AbstractSyntax<T>> dataStack, TreeInterner<T> interner,
+            SpanTable spans) {
+        this(pda, stack, 0, dataStack, interner, spans);
+        this.stack[sp++] = initial;
+    }
+
+    /**
+     * Continues a run whose state stack is given as it is.
+     *
+     * @param pda       the PDA.
+     * @param stack     the state stack, may be reallocated.
+     * @param sp        the height of the state stack.
+     * @param dataStack the value stack, or null if no values are built.
+     * @param interner  by which tokens and nodes are built, or null to build a new node for each reduction.
+     * @param spans     where to record the spans of the nodes, or null. Can not be combined with an interner.
+     */
+    @SuppressWarnings("unchecked")
+    private ParserState(PushDownAutomaton<T> pda, int[] stack, int sp, ArrayList<AbstractSyntax<T>> dataStack, TreeInterner<T> interner,
+            SpanTable spans) {
+        if (interner != null && spans != null) {
+            throw new IllegalArgumentException("Shared nodes have no unique span!");
+        }
+        this.pda = pda;
+        this.recorder = pda.getMetrics() == null ? null : new Recorder(pda.getMetrics(), pda);
+        this.interner = interner;
+        this.spans = spans;
+        this.lookahead = pda.getLookahead();
+        this.radix = pda.getTerminalClasses().size() + 1;
+        int highest = 1;
+        for (int i = 1; i < lookahead; i++) {
+            highest *= radix;
+        }
+        this.highest = highest;
+        this.stack = stack.length == 0 ? new int[16] : stack;
+        this.dataStack = dataStack;
+        this.window = (T[]) new Object[lookahead];
+        this.digits = new int[lookahead];
+        this.sp = sp;
+    }
+
+    /**
+     * Gets the state stack, which may have been reallocated while parsing.
+     *
+     * @return the state stack.
+     */
+    int[] stack() {
+        return stack;
+    }
+
+    /**
+     * Feeds the next token.
+     *
+     * @param token the token.
+     * @throws IllegalArgumentException if the input is not in the language.
+     * @throws IllegalStateException    if the input was already finished or rejected.
+     */
+    public void feed(T token) {
+        if (done) {
+            throw new IllegalStateException("Parsing has already ended!");
+        }
+        append(token);
+        drive();
+    }
+
+    /**
+     * Signals the end of input, and finishes parsing.
+     *
+     * @return the parsed result.
+     * @throws IllegalArgumentException if the input is not in the language.
+     * @throws IllegalStateException    if the input was already finished or rejected.
+     */
+    public AbstractSyntax<T> finish() {
+        if (done) {
+            throw new IllegalStateException("Parsing has already ended!");
+        }
+        done = true;
+        return drive();
+    }
+
+    /**
+     * Adds a token to the end of the lookahead, without acting on it.
+     *
+     * @param token the token.
+     */
+    void append(T token) {
+        int slot = (head + count) % lookahead;
+        window[slot] = token;
+        digits[slot] = pda.getTerminalClasses().classOf(token) + 1;
+        int weight = 1;
+        for (int i = count + 1; i < lookahead; i++) {
+            weight *= radix;
+        }
+        lookaheadCode += digits[slot] * weight;
+        count++;
+    }
+
+    /**
+     * Signals the end of input, without acting on it.
+     */
+    void endOfInput() {
+        done = true;
+    }
+
+    /**
+     * Checks whether there is enough lookahead to act. The current state may need less than the lookahead of the PDA.
+     *
+     * @return true if the state has as much lookahead as it needs, or the end of input was reached.
+     */
+    boolean ready() {
+        return done || count >= pda.lookahead(stack[sp - 1]);
+    }
+
+    /**
+     * Gets the next token to be shifted.
+     *
+     * @return the token, or null at the end of input.
+     */
+    T peek() {
+        return count == 0 ? null : window[head];
+    }
+
+    /**
+     * Gets the current state.
+     *
+     * @return the state on top of the stack.
+     */
+    int currentState() {
+        return stack[sp - 1];
+    }
+
+    /**
+     * Gets the height of the state stack.
+     *
+     * @return the number of states on the stack.
+     */
+    int height() {
+        return sp;
+    }
+
+    /**
+     * Acts until more lookahead is needed, or until the input is accepted.
+     *
+     * @return the result if the input was accepted, otherwise null.
+     */
+    private AbstractSyntax<T> drive() {
+        while (ready()) {
+            if (step() == PushDownAutomaton.ACCEPT) {
+                return dataStack.get(0);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Performs a single action. Requires that there is enough lookahead.
+     * If this run has no value stack, only the states are tracked.
+     *
+     * @return the encoded action that was performed.
+     * @throws IllegalArgumentException if the input is not in the language.
+     */
+    int step() {
+        int current = stack[sp - 1];
+        int nextAction = pda.action(current, lookaheadCode);
+        if (recorder != null) {
+            recorder.record(current, nextAction, sp);
+        }
+        if (sp == stack.length) {
+            stack = Arrays.copyOf(stack, 2 * sp);
+        }
+        if (nextAction == PushDownAutomaton.SHIFT) {
+            if (count == 0) {
+                end(false);
+                throw new IllegalStateException("Can not shift on EOF!");
+            }
+            stack[sp++] = pda.shift(current, digits[head] - 1);
+            if (spans != null) {
+                dataStack.add(new AbstractSyntaxToken<>(window[head], spans.add(position, position + 1)));
+                position++;
+            } else if (dataStack != null) {
+                dataStack.add(interner == null ? new AbstractSyntaxToken<>(window[head]) : interner.token(window[head]));
+            }
+            lookaheadCode = (lookaheadCode - digits[head] * highest) * radix;
+            window[head] = null;
+            head = (head + 1) % lookahead;
+            count--;
+        } else if (nextAction >= PushDownAutomaton.REDUCE) {
+            int p = nextAction - PushDownAutomaton.REDUCE;
+            int nums = pda.productionLength(p);
+            sp -= nums;
+            current = stack[sp - 1];
+            stack[sp++] = pda.reduceGoto(current, p);
+            if (dataStack != null) {
+                var children = dataStack.subList(dataStack.size() - nums, dataStack.size());
+                List<AbstractSyntax<T>> subSyntax = new ArrayList<>(children);
+                children.clear();
+                if (spans != null) {
+                    var node = pda.node(p, subSyntax, current, spans.size());
+                    spans.add(position - node.width(), position);
+                    dataStack.add(node);
+                } else {
+                    dataStack.add(pda.node(p, subSyntax, current, interner));
+                }
+            }
+        } else if (nextAction == PushDownAutomaton.ACCEPT) {
+            boolean accepted = sp == 2 && (dataStack == null || dataStack.size() == 1);
+            end(accepted);
+            if (!accepted) {
+                throw new IllegalStateException("Unexpected end of input!");
+            }
+        } else {
+            end(false);
+            throw new IllegalArgumentException();
+        }
+        return nextAction;
+    }
+
+    /**
+     * Ends this run, and reports its statistics.
+     *
+     * @param accepted whether the input was accepted.
+     */
+    private void end(boolean accepted) {
+        done = true;
+        if (recorder != null) {
+            recorder.report(accepted);
+        }
+    }
+
+    /**
+     * Writes a checkpoint of this state, with the partial trees written by {@link ValueCodec#trees(PushDownAutomaton, TokenCodec)}.
+     * Parsing can continue afterwards.
+     *
+     * @param out   where to write to.
+     * @param codec how to write tokens.
+     * @throws IOException           if writing fails.
+     * @throws IllegalStateException if the input was already finished or rejected.
+     */
+    public void checkpoint(OutputStream out, TokenCodec<T> codec) throws IOException {
+        checkpoint(out, codec, ValueCodec.trees(pda, codec));
+    }
+
+    /**
+     * Writes a checkpoint of this state. Parsing can continue afterwards.
+     *
+     * @param out    where to write to.
+     * @param codec  how to write tokens.
+     * @param values how to write the value stack.
+     * @throws IOException           if writing fails.
+     * @throws IllegalStateException if the input was already finished or rejected, or this run builds no values.
+     */
+    public void checkpoint(OutputStream out, TokenCodec<T> codec, ValueCodec<T> values) throws IOException {
+        if (done) {
+            throw new IllegalStateException("Parsing has already ended!");
+        } else if (dataStack == null) {
+            throw new IllegalStateException("There are no values to write!");
+        }
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeLong(pda.fingerprint());
+        VarInts.write(data, sp);
+        for (int i = 0; i < sp; i++) {
+            VarInts.write(data, stack[i]);
+        }
+        VarInts.write(data, count);
+        for (int i = 0; i < count; i++) {
+            codec.writeToken(data, window[(head + i) % lookahead]);
+        }
+        values.writeValues(data, Collections.unmodifiableList(dataStack));
+        data.flush();
+    }
+
+    /**
+     * Makes a checkpoint of this state. Parsing can continue afterwards.
+     *
+     * @param codec how to write tokens.
+     * @return the checkpoint.
+     * @throws IllegalStateException if the input was already finished or rejected.
+     */
+    public byte[] checkpoint(TokenCodec<T> codec) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            checkpoint(out, codec);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Resumes a run from a checkpoint, whose partial trees were written by {@link ValueCodec#trees(PushDownAutomaton, TokenCodec)}.
+     *
+     * @param pda   the PDA, built from the same grammar with the same lookahead as the one the checkpoint was made with.
+     * @param in    where to read the checkpoint from.
+     * @param codec how to read tokens.
+     * @return the resumed run.
+     * @throws IOException              if reading fails, or the checkpoint is malformed.
+     * @throws IllegalArgumentException if the checkpoint was made with a different PDA.
+     */
+    public static <T> ParserState<T> resume(PushDownAutomaton<T> pda, InputStream in, TokenCodec<T> codec) throws IOException {
+        return resume(pda, in, codec, ValueCodec.trees(pda, codec));
+    }
+
+    /**
+     * Resumes a run from a checkpoint.
+     *
+     * @param pda    the PDA, built from the same grammar with the same lookahead as the one the checkpoint was made with.
+     * @param in     where to read the checkpoint from.
+     * @param codec  how to read tokens.
+     * @param values how to read the value stack, like it was written.
+     * @return the resumed run.
+     * @throws IOException              if reading fails, or the checkpoint is malformed.
+     * @throws IllegalArgumentException if the checkpoint was made with a different PDA.
+     */
+    public static <T> ParserState<T> resume(PushDownAutomaton<T> pda, InputStream in, TokenCodec<T> codec, ValueCodec<T> values)
+            throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readUnsignedByte() != VERSION) {
+            throw new StreamCorruptedException("Not a parser checkpoint");
+        }
+        if (data.readLong() != pda.fingerprint()) {
+            throw new IllegalArgumentException("Checkpoint was made with a different PDA!");
+        }
+        int sp = VarInts.read(data);
+        if (sp == 0) {
+            throw new StreamCorruptedException("Empty state stack");
+        }
+        int[] stack = new int[Math.max(16, Integer.highestOneBit(sp) * 2)];
+        for (int i = 0; i < sp; i++) {
+            stack[i] = readState(data, pda);
+        }
+        ParserState<T> result = new ParserState<>(pda, stack, sp, new ArrayList<>(), null, null);
+        int count = VarInts.read(data);
+        if (count >= pda.getLookahead()) {
+            throw new StreamCorruptedException("Too much pending lookahead");
+        }
+        for (int i = 0; i < count; i++) {
+            result.append(codec.readToken(data));
+        }
+        result.dataStack.addAll(values.readValues(data));
+        if (result.dataStack.size() != sp - 1) {
+            throw new StreamCorruptedException("Value stack does not match state stack");
+        }
+        return result;
+    }
+
+    /**
+     * Resumes a run from a checkpoint.
+     *
+     * @param pda        the PDA, built from the same grammar with the same lookahead as the one the checkpoint was made with.
+     * @param checkpoint the checkpoint.
+     * @param codec      how to read tokens.
+     * @return the resumed run.
+     * @throws IllegalArgumentException if the checkpoint is malformed, or was made with a different PDA.
+     */
+    public static <T> ParserState<T> resume(PushDownAutomaton<T> pda, byte[] checkpoint, TokenCodec<T> codec) {
+        try {
+            return resume(pda, new ByteArrayInputStream(checkpoint), codec);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed checkpoint", e);
+        }
+    }
+
+    private static int readState(DataInput in, PushDownAutomaton<?> pda) throws IOException {
+        int state = VarInts.read(in);
+        if (state >= pda.getStateCount()) {
+            throw new StreamCorruptedException("Unknown state " + state);
+        }
+        return state;
+    }
+}
@@ -0,0 +1,214 @@
+package jojomodding.parsergenerator.pda;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+import jojomodding.parsergenerator.parsed.AbstractSyntax;
+import jojomodding.parsergenerator.utils.SpscRingBuffer;
+
+/**
+ * Runs a PDA on a token source, where the source is read on a different thread than the one running the PDA.
+ * This lets lexing and parsing overlap. The tokens are passed in batches through a bounded ring buffer,
+ * so the reading thread blocks when it is too far ahead.
+ * <p>
+ * Exceptions thrown while reading the source are rethrown on the parsing thread.
+ * If parsing stops early, reading the source stops as well. If the parsing thread is interrupted while it waits for tokens,
+ * the run fails, and reading the source stops too.
+ *
+ * @param <T> the type of tokens.
+ */
+public class PipelinedParser<T> {
+
+    /**
+     * Marks the end of the input in the ring buffer.
+     */
+    private static final Object END = new Object();
+
+    /**
+     * Carries an exception of the reading thread through the ring buffer.
+     */
+    private record Failure(Throwable cause) {
+
+    }
+
+    private final PushDownAutomaton<T> pda;
+    private final Executor executor;
+    private final int batchSize;
+    private final int capacity;
+
+    /**
+     * Creates a new pipelined parser.
+     *
+     * @param pda       the PDA to run.
+     * @param executor  the executor on which the source is read. Each run occupies one of its threads until the source is exhausted.
+     * @param batchSize how many tokens are passed at once.
+     * @param capacity  how many batches the reading thread may be ahead.
+     */
+    public PipelinedParser(PushDownAutomaton<T> pda, Executor executor, int batchSize, int capacity) {
+        if (batchSize <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Invalid batch size or capacity!");
+        }
+        this.pda = pda;
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Creates a new pipelined parser, that reads each source on a fresh daemon thread.
+     *
+     * @param pda the PDA to run.
+     */
+    public PipelinedParser(PushDownAutomaton<T> pda) {
+        this(pda, r -> {
+            Thread t = new Thread(r, "pipelined-parser-source");
+            t.setDaemon(true);
+            t.start();
+        }, 1024, 64);
+    }
+
+    /**
+     * Runs the PDA.
+     *
+     * @param source the tokens, which are read on a different thread. The iterator may be lazy, e.g. a lexer.
+     * @return the parsed result.
+     * @throws IllegalArgumentException if the input is not in the language, or the executor runs the source on the calling thread.
+     * @throws IllegalStateException    if the thread is interrupted while waiting for the source, or the source stopped without ending.
+     */
+    public AbstractSyntax<T> run(Iterator<T> source) {
+        SpscRingBuffer<Object> ring = new SpscRingBuffer<>(capacity);
+        Channel channel = new Channel(ring);
+        Thread parser = Thread.currentThread();
+        executor.execute(() -> {
+            try {
+                if (Thread.currentThread() == parser) {
+                    // the ring would fill up before the PDA reads anything
+                    send(ring, channel, new Failure(new IllegalArgumentException("The executor must read the source on a different thread!")));
+                } else {
+                    produce(source, ring, channel);
+                }
+            } finally {
+                channel.stopped = true;
+            }
+        });
+        try {
+            return pda.run(channel);
+        } finally {
+            channel.cancelled = true;
+        }
+    }
+
+    /**
+     * Reads the source in batches and passes them on. Runs on the reading thread.
+     */
+    private void produce(Iterator<T> source, SpscRingBuffer<Object> ring, Channel channel) {
+        Object message;
+        try {
+            Object[] batch = new Object[batchSize];
+            int n = 0;
+            while (source.hasNext()) {
+                batch[n++] = source.next();
+                if (n == batchSize) {
+                    if (!send(ring, channel, batch)) {
+                        return;
+                    }
+                    batch = new Object[batchSize];
+                    n = 0;
+                }
+            }
+            if (n > 0 && !send(ring, channel, Arrays.copyOf(batch, n))) {
+                return;
+            }
+            message = END;
+        } catch (Throwable e) {
+            message = new Failure(e);
+        }
+        send(ring, channel, message);
+    }
+
+    /**
+     * Sends a message, waiting while the ring buffer is full.
+     *
+     * @return false if the parsing thread is no longer interested.
+     */
+    private boolean send(SpscRingBuffer<Object> ring, Channel channel, Object message) {
+        for (int attempt = 0; !ring.offer(message); attempt++) {
+            if (channel.cancelled) {
+                return false;
+            }
+            SpscRingBuffer.idle(attempt);
+        }
+        return true;
+    }
+
+    /**
+     * The receiving end of the pipeline, as seen by the PDA.
+     */
+    private class Channel implements Iterator<T> {
+
+        private final SpscRingBuffer<Object> ring;
+        private Object[] batch = new Object[0];
+        private int index = 0;
+        private boolean ended = false;
+        /**
+         * Set by the parsing thread when it is done, so that the reading thread stops.
+         */
+        private volatile boolean cancelled = false;
+        /**
+         * Set by the reading thread when it stops, after sending its last message.
+         */
+        private volatile boolean stopped = false;
+
+        private Channel(SpscRingBuffer<Object> ring) {
+            this.ring = ring;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (index == batch.length) {
+                if (ended) {
+                    return false;
+                }
+                Object message;
+                for (int attempt = 0; ; attempt++) {
+                    boolean last = stopped; // read before polling, so that the last message is seen
+                    if ((message = ring.poll()) != null) {
+                        break;
+                    } else if (last) {
+                        ended = true;
+                        throw new IllegalStateException("Reading the input stopped before it ended");
+                    } else if (Thread.currentThread().isInterrupted()) {
+                        cancelled = true;
+                        throw new IllegalStateException("Interrupted while waiting for the input");
+                    }
+                    SpscRingBuffer.idle(attempt);
+                }
+                if (message == END) {
+                    ended = true;
+                } else if (message instanceof Failure f) {
+                    ended = true;
+                    if (f.cause() instanceof RuntimeException e) {
+                        throw e;
+                    } else if (f.cause() instanceof Error e) {
+                        throw e;
+                    }
+                    throw new IllegalStateException("Reading the input failed", f.cause());
+                } else {
+                    batch = (Object[]) message;
+                    index = 0;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return (T) batch[index++];
+        }
+    }
+}
@@ -1,27 +1,69 @@
 package jojomodding.parsergenerator.pda;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import jojomodding.parsergenerator.grammar.CompiledGrammar;
 import jojomodding.parsergenerator.grammar.Grammar;
+import jojomodding.parsergenerator.grammar.NonTerminal;
 import jojomodding.parsergenerator.grammar.ProductionItem;
 import jojomodding.parsergenerator.grammar.Terminal;
+import jojomodding.parsergenerator.metrics.ParseMetrics;
 import jojomodding.parsergenerator.parsed.AbstractSyntax;
 import jojomodding.parsergenerator.parsed.AbstractSyntaxToken;
 import jojomodding.parsergenerator.parsed.AbstractSyntaxTree;
+import jojomodding.parsergenerator.parsed.TreeInterner;
 import jojomodding.parsergenerator.pda.action.Action;
 import jojomodding.parsergenerator.pda.action.ActionAccept;
 import jojomodding.parsergenerator.pda.action.ActionErr;
 import jojomodding.parsergenerator.pda.action.ActionReduce;
 import jojomodding.parsergenerator.pda.action.ActionShift;
-import jojomodding.parsergenerator.utils.Utils;
 
 /**
  * A push down automaton, that can accept strings over T
+ * <p>
+ * Internally, terminals are replaced by their {@link TerminalClasses class}, and lookahead words by a number,
+ * in which each digit is the class of a terminal plus one, or zero for the end of input.
+ * <p>
+ * A PDA is immutable once constructed, and can be shared between threads and run concurrently.
+ * Each thread reuses its own stacks between runs.
  * @param <T> the type of strings over which to accept
  */
-public class PushDownAutomaton<T> {
+public final class PushDownAutomaton<T> {
+
+    /**
+     * Encoding of the error action in the action table.
+     */
+    private static final int ERROR = 0;
+    /**
+     * Encoding of the shift action in the action table.
+     */
+    static final int SHIFT = 1;
+    /**
+     * Encoding of the accept action in the action table.
+     */
+    static final int ACCEPT = 2;
+    /**
+     * Encoding of reducing along production p in the action table is REDUCE + p.
+     */
+    static final int REDUCE = 3;
+    /**
+     * Rows with more possible lookahead words than this are stored sparsely.
+     */
+    private static final int DENSE_LIMIT = 1024;
 
     /**
      * The given grammar.
@@ -32,33 +74,615 @@ public class PushDownAutomaton<T> {
      */
     private final int lookahead;
     /**
-     * The action table. Contains one action for each string of length lookahead.
-     * Also must contain action for shorter strings, as long as they end with the EOF marker.
+     * The powers of the radix, up to radix^lookahead, which is the number of lookahead words.
+     */
+    private final int[] powers;
+    /**
+     * For each state, how many chars of lookahead its actions depend on. Its row of the action table is indexed by the encodings
+     * of lookahead words of this length, i.e. the first digits of the full encoding.
+     */
+    private final int[] stateLookahead;
+    /**
+     * The equivalence classes of terminals, by which the tables are indexed.
+     */
+    private final TerminalClasses<T> classes;
+    /**
+     * The base of lookahead word encodings, i.e. the number of classes plus one for the end of input.
+     */
+    private final int radix;
+    /**
+     * All productions of the grammar, indexed by their id, which is also used in the action table.
+     */
+    private final List<ActionReduce<T>> productions;
+    /**
+     * For each production, the index of its LHS in the goto table for non-terminals.
+     */
+    private final int[] productionLhs;
+    /**
+     * For each production, the length of its RHS.
+     */
+    private final int[] productionLength;
+    /**
+     * The action table. Contains one action for each encoded lookahead word, shortened to the lookahead of the state.
+     * If actionKeys has an entry for the state, the row is sparse and the action for actionKeys[s][i] is actionTable[s][i].
+     * Otherwise, the row is dense and indexed directly by the encoded word.
+     */
+    private final int[][] actionTable;
+    /**
+     * The lookahead word encodings of sparse rows in the action table, sorted. Null for dense rows.
+     */
+    private final int[][] actionKeys;
+    /**
+     * The goto table for terminals, indexed by state and terminal class. -1 if there is no transition.
+     */
+    private final int[][] shiftTable;
+    /**
+     * The goto table for non-terminals, indexed by state and non-terminal index. -1 if there is no transition.
+     */
+    private final int[][] gotoTable;
+    /**
+     * The index of each non-terminal in the goto table.
+     */
+    private final Map<NonTerminal<T>, Integer> nonTerminals;
+    /**
+     * The initial state of each non-terminal that can be parsed.
+     */
+    private final Map<NonTerminal<T>, Integer> entryPoints;
+    /**
+     * The id of each production.
+     */
+    private final Map<ActionReduce<T>, Integer> productionIds;
+    /**
+     * The id of each production, by LHS and RHS items, i.e. ignoring the formatter.
+     */
+    private final Map<List<Object>, Integer> productionIdsByItems;
+    /**
+     * A hash of the tables, which identifies PDAs that parse identically.
+     */
+    private final long fingerprint;
+    /**
+     * The stacks of the current thread, which are reused by subsequent runs.
+     */
+    private final ThreadLocal<Workspace<T>> workspaces = ThreadLocal.withInitial(Workspace::new);
+    /**
+     * Where the statistics of each run are reported, or null if they are not collected.
      */
-    private final ArrayList<Map<List<T>, Action<T>>> actionTable;
+    private final ParseMetrics metrics;
     /**
-     * The goto table, encoding the transition of the characteristic LR(n) automaton.
+     * The states if they are built when first visited, or null if the tables above are complete.
      */
-    private final ArrayList<Map<ProductionItem<T>, Integer>> gotoTable;
+    private final LazyStates lazy;
 
     /**
-     * Create a new PDA.
+     * The stacks used during a run.
+     */
+    private static final class Workspace<T> {
+
+        /**
+         * How deep the stacks may have grown and still be kept for the next run. Deeper stacks are dropped when the run ends,
+         * so that one deeply nested input does not pin large buffers to the thread for the lifetime of the PDA.
+         */
+        private static final int RETAINED_DEPTH = 1 << 12;
+
+        private int[] stack = new int[16];
+        private ArrayList<AbstractSyntax<T>> dataStack = new ArrayList<>();
+        /**
+         * Whether a run on this thread is currently using this workspace.
+         * Runs nested in another one (e.g. from the input iterator) get a fresh workspace.
+         */
+        private boolean inUse = false;
+    }
+
+    /**
+     * Create a new PDA. The grammar is copied, so later changes to it do not affect this PDA.
      * @param grammar the underlying grammar.
      * @param lookahead how much lookahead to use.
      * @param actionTable the action table.
      * @param gotoTable the goto table.
+     * @throws IllegalArgumentException if the tables are malformed, or there are too many lookahead words to encode them.
      */
     public PushDownAutomaton(Grammar<T> grammar, int lookahead, List<Map<List<T>, Action<T>>> actionTable,
             List<Map<ProductionItem<T>, Integer>> gotoTable) {
-        this.grammar = grammar;
+        this(grammar.compile(), lookahead, actionTable, gotoTable);
+    }
+
+    /**
+     * Create a new PDA from a snapshot of a grammar.
+     * @param grammar the underlying grammar.
+     * @param lookahead how much lookahead to use.
+     * @param actionTable the action table.
+     * @param gotoTable the goto table.
+     * @throws IllegalArgumentException if the tables are malformed, or there are too many lookahead words to encode them.
+     */
+    public PushDownAutomaton(CompiledGrammar<T> grammar, int lookahead, List<Map<List<T>, Action<T>>> actionTable,
+            List<Map<ProductionItem<T>, Integer>> gotoTable) {
+        this(grammar, lookahead, actionTable, gotoTable, defaultEntryPoints(grammar));
+    }
+
+    /**
+     * Create a new PDA with several initial states.
+     * @param grammar the underlying grammar.
+     * @param lookahead how much lookahead to use.
+     * @param actionTable the action table.
+     * @param gotoTable the goto table.
+     * @param entryPoints the initial state for each non-terminal that can be parsed. State 0 is used if no start symbol is given.
+     * @throws IllegalArgumentException if the tables are malformed, or there are too many lookahead words to encode them.
+     */
+    public PushDownAutomaton(CompiledGrammar<T> grammar, int lookahead, List<Map<List<T>, Action<T>>> actionTable,
+            List<Map<ProductionItem<T>, Integer>> gotoTable, Map<NonTerminal<T>, Integer> entryPoints) {
+        this.grammar = grammar.toGrammar();
+        this.entryPoints = checkEntryPoints(entryPoints, actionTable.size());
         this.lookahead = lookahead;
-        this.actionTable = new ArrayList<>(actionTable);
-        this.gotoTable = new ArrayList<>(gotoTable);
         if (lookahead <= 0 || actionTable.size() != gotoTable.size()) {
             throw new IllegalArgumentException("Malformed PDA");
         }
+        this.classes = TerminalClasses.analyze(grammar.getTerminals(), actionTable, gotoTable);
+        this.radix = classes.size() + 1;
+        this.powers = powers(radix, lookahead);
+        int states = actionTable.size();
+        this.nonTerminals = new HashMap<>();
+        for (int i = 0; i < grammar.getNonTerminalCount(); i++) {
+            nonTerminals.put(grammar.getNonTerminal(i), i);
+        }
+        for (var row : gotoTable) {
+            for (var item : row.keySet()) {
+                if (item instanceof NonTerminal<T> nt) {
+                    nonTerminals.putIfAbsent(nt, nonTerminals.size());
+                }
+            }
+        }
+        this.shiftTable = new int[states][classes.size()];
+        this.gotoTable = new int[states][nonTerminals.size()];
+        for (int s = 0; s < states; s++) {
+            Arrays.fill(shiftTable[s], -1);
+            Arrays.fill(this.gotoTable[s], -1);
+            for (var e : gotoTable.get(s).entrySet()) {
+                if (e.getKey() instanceof Terminal<T> t) {
+                    shiftTable[s][classes.classOf(t.terminal())] = e.getValue();
+                } else if (e.getKey() instanceof NonTerminal<T> nt) {
+                    this.gotoTable[s][nonTerminals.get(nt)] = e.getValue();
+                }
+            }
+        }
+        // number the productions densely in a canonical order, so that they have the same id whenever the grammar is the same
+        List<ActionReduce<T>> productions = Stream.concat(
+                IntStream.range(0, grammar.getProductionCount()).mapToObj(p -> new ActionReduce<>(grammar.getLhs(p), grammar.getRule(p))),
+                actionTable.stream().flatMap(row -> row.values().stream()).filter(a -> a instanceof ActionReduce<T>).map(a -> (ActionReduce<T>) a))
+                .distinct().sorted(Comparator.comparing(ActionReduce::toString)).collect(Collectors.toList());
+        this.productionIds = new HashMap<>();
+        this.productionIdsByItems = new HashMap<>();
+        for (var red : productions) {
+            productionIdsByItems.putIfAbsent(List.of(red.from(), red.to().items()), productionIds.size());
+            productionIds.put(red, productionIds.size());
+        }
+        this.actionTable = new int[states][];
+        this.actionKeys = new int[states][];
+        this.stateLookahead = new int[states];
+        for (int s = 0; s < states; s++) {
+            TreeMap<Integer, Integer> row = encodeActions(actionTable.get(s));
+            stateLookahead[s] = neededLookahead(row);
+            row = shorten(row, stateLookahead[s]);
+            int words = powers[stateLookahead[s]];
+            if (words <= DENSE_LIMIT) {
+                int[] dense = new int[words];
+                row.forEach((k, v) -> dense[k] = v);
+                this.actionTable[s] = dense;
+            } else {
+                this.actionKeys[s] = row.keySet().stream().mapToInt(Integer::intValue).toArray();
+                this.actionTable[s] = row.values().stream().mapToInt(Integer::intValue).toArray();
+            }
+        }
+        this.productions = List.copyOf(productions);
+        this.productionLhs = new int[productions.size()];
+        this.productionLength = new int[productions.size()];
+        for (int p = 0; p < productions.size(); p++) {
+            Integer lhs = nonTerminals.get(productions.get(p).from());
+            if (lhs == null) {
+                throw new IllegalArgumentException("Reduction to unknown non-terminal!");
+            }
+            productionLhs[p] = lhs;
+            productionLength[p] = productions.get(p).to().items().size();
+        }
+        long hash = mix(mix(mix(0xcbf29ce484222325L, lookahead), radix), classes.toString().hashCode());
+        for (var red : productions) {
+            hash = mix(hash, red.toString().hashCode());
+        }
+        for (int[][] table : List.of(this.actionTable, this.shiftTable, this.gotoTable)) {
+            for (int[] row : table) {
+                hash = mix(hash, Arrays.hashCode(row));
+            }
+        }
+        for (int[] row : actionKeys) {
+            hash = mix(hash, Arrays.hashCode(row));
+        }
+        hash = mix(hash, Arrays.hashCode(stateLookahead));
+        this.fingerprint = hash;
+        this.metrics = null;
+        this.lazy = null;
     }
 
+    /**
+     * Create a new PDA whose states are built when they are first visited. The tables then only ever contain the states that
+     * some input needed, and creating the PDA is cheap. The PDA can still be shared between threads; a state is built once, while
+     * other threads that need it wait.
+     * <p>
+     * The terminals are not grouped into classes, since the tables are not known in advance. The states are numbered in the
+     * order in which they are found, so the fingerprint only identifies this PDA and PDAs sharing its tables.
+     * @param grammar the underlying grammar.
+     * @param lookahead how much lookahead to use.
+     * @param builder builds the states, and is only ever called by one thread at a time.
+     * @param entryPoints the initial state for each non-terminal that can be parsed. State 0 is used if no start symbol is given.
+     * @throws IllegalArgumentException if the tables are malformed, or there are too many lookahead words to encode them.
+     */
+    public PushDownAutomaton(CompiledGrammar<T> grammar, int lookahead, StateBuilder<T> builder, Map<NonTerminal<T>, Integer> entryPoints) {
+        this.grammar = grammar.toGrammar();
+        this.entryPoints = checkEntryPoints(entryPoints, builder.getStateCount());
+        this.lookahead = lookahead;
+        if (lookahead <= 0) {
+            throw new IllegalArgumentException("Malformed PDA");
+        }
+        this.classes = TerminalClasses.singletons(grammar.getTerminals());
+        this.radix = classes.size() + 1;
+        this.powers = powers(radix, lookahead);
+        this.nonTerminals = new HashMap<>();
+        for (int i = 0; i < grammar.getNonTerminalCount(); i++) {
+            nonTerminals.put(grammar.getNonTerminal(i), i);
+        }
+        List<ActionReduce<T>> productions = IntStream.range(0, grammar.getProductionCount())
+                .mapToObj(p -> new ActionReduce<>(grammar.getLhs(p), grammar.getRule(p)))
+                .sorted(Comparator.comparing(ActionReduce::toString)).collect(Collectors.toList());
+        this.productionIds = new HashMap<>();
+        this.productionIdsByItems = new HashMap<>();
+        for (var red : productions) {
+            productionIdsByItems.putIfAbsent(List.of(red.from(), red.to().items()), productionIds.size());
+            productionIds.put(red, productionIds.size());
+        }
+        this.productions = List.copyOf(productions);
+        this.productionLhs = new int[productions.size()];
+        this.productionLength = new int[productions.size()];
+        for (int p = 0; p < productions.size(); p++) {
+            productionLhs[p] = nonTerminals.get(productions.get(p).from());
+            productionLength[p] = productions.get(p).to().items().size();
+        }
+        this.actionTable = new int[0][];
+        this.actionKeys = new int[0][];
+        this.stateLookahead = new int[0];
+        this.shiftTable = new int[0][];
+        this.gotoTable = new int[0][];
+        this.fingerprint = ThreadLocalRandom.current().nextLong();
+        this.metrics = null;
+        this.lazy = new LazyStates(builder);
+    }
+
+    /**
+     * Gets the entry point of a PDA with a single initial state 0. Its start symbol is S for an extended grammar with the initial
+     * production rule S' -> S, and otherwise the initial non-terminal.
+     * @param grammar the grammar.
+     * @return the start symbol, mapped to state 0.
+     */
+    private static <T> Map<NonTerminal<T>, Integer> defaultEntryPoints(CompiledGrammar<T> grammar) {
+        var rules = grammar.getRules(grammar.getInitial());
+        if (rules.size() == 1 && rules.get(0).items().size() == 1 && rules.get(0).items().get(0) instanceof NonTerminal<T> start) {
+            return Map.of(start, 0);
+        }
+        return Map.of(grammar.getInitial(), 0);
+    }
+
+    private static <T> Map<NonTerminal<T>, Integer> checkEntryPoints(Map<NonTerminal<T>, Integer> entryPoints, int states) {
+        if (entryPoints.isEmpty() || entryPoints.values().stream().anyMatch(s -> s < 0 || s >= states)) {
+            throw new IllegalArgumentException("Malformed PDA");
+        }
+        return Collections.unmodifiableMap(new LinkedHashMap<>(entryPoints));
+    }
+
+    /**
+     * Encodes a row of the action table.
+     * @param actions the action for each lookahead word.
+     * @return the encoded action for each encoded word, including explicit errors.
+     */
+    private TreeMap<Integer, Integer> encodeActions(Map<List<T>, Action<T>> actions) {
+        TreeMap<Integer, Integer> row = new TreeMap<>();
+        for (var e : actions.entrySet()) {
+            int encoded;
+            if (e.getValue() instanceof ActionShift<T>) {
+                encoded = SHIFT;
+            } else if (e.getValue() instanceof ActionAccept<T>) {
+                encoded = ACCEPT;
+            } else if (e.getValue() instanceof ActionReduce<T> red) {
+                Integer p = productionIds.get(red);
+                if (p == null) {
+                    throw new IllegalArgumentException("Reduction along unknown production " + red);
+                }
+                encoded = REDUCE + p;
+            } else if (e.getValue() instanceof ActionErr<T>) {
+                // kept, so that shortening the lookahead does not turn it into another action
+                encoded = ERROR;
+            } else {
+                throw new IllegalArgumentException("Unknown action " + e.getValue());
+            }
+            row.put(encodeWord(e.getKey()), encoded);
+        }
+        return row;
+    }
+
+    /**
+     * Computes the powers of the radix.
+     * @param radix the radix.
+     * @param lookahead the highest exponent.
+     * @return radix^0 to radix^lookahead.
+     * @throws IllegalArgumentException if there are too many lookahead words to encode them as an int.
+     */
+    private static int[] powers(int radix, int lookahead) {
+        int[] powers = new int[lookahead + 1];
+        powers[0] = 1;
+        for (int i = 1; i <= lookahead; i++) {
+            try {
+                powers[i] = Math.multiplyExact(powers[i - 1], radix);
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("Can not encode lookahead words of length " + lookahead + " over " + (radix - 1)
+                        + " terminal classes, use less lookahead!", e);
+            }
+        }
+        return powers;
+    }
+
+    /**
+     * Computes how many chars of lookahead the actions of a state depend on. This is the shortest length such that words with
+     * different actions differ in their prefixes of that length. It is 0 for a state that always reduces along the same
+     * production, and at least 1 for a state that shifts or accepts, since the shifted token must be known, and accepting
+     * requires the end of input.
+     * <p>
+     * A state then also acts upon words that would have been errors with the full lookahead. This only delays the detection of
+     * errors until a state that needs the offending lookahead, like default reductions do: Only reductions are done in the
+     * meantime, and no token is shifted that could not follow what is on the stack.
+     * @param row the encoded actions of the state, for each encoded lookahead word of full length.
+     * @return how many chars of lookahead are needed.
+     */
+    private int neededLookahead(TreeMap<Integer, Integer> row) {
+        int k = row.containsValue(SHIFT) || row.containsValue(ACCEPT) ? 1 : 0;
+        for (; k < lookahead; k++) {
+            Map<Integer, Integer> byPrefix = new HashMap<>();
+            boolean determined = true;
+            for (var e : row.entrySet()) {
+                Integer other = byPrefix.putIfAbsent(e.getKey() / powers[lookahead - k], e.getValue());
+                if (other != null && !other.equals(e.getValue())) {
+                    determined = false;
+                    break;
+                }
+            }
+            if (determined) {
+                return k;
+            }
+        }
+        return lookahead;
+    }
+
+    /**
+     * Shortens the lookahead words of a row of the action table.
+     * @param row the encoded actions, for each encoded lookahead word of full length.
+     * @param k the length of the lookahead words, which must determine the actions.
+     * @return the encoded actions, for each encoded lookahead word of length k, without errors.
+     */
+    private TreeMap<Integer, Integer> shorten(TreeMap<Integer, Integer> row, int k) {
+        TreeMap<Integer, Integer> shortened = new TreeMap<>();
+        row.forEach((word, action) -> {
+            if (action != ERROR) {
+                shortened.put(word / powers[lookahead - k], action);
+            }
+        });
+        return shortened;
+    }
+
+    /**
+     * The states of a lazily constructed PDA, which are built when they are first visited.
+     * <p>
+     * Built rows are never changed, so they are read without locking. Only building a row takes the lock.
+     */
+    private final class LazyStates {
+
+        private final StateBuilder<T> builder;
+        /**
+         * The built rows, indexed by state. Null for states not built yet.
+         * Replaced by a larger copy when needed, and written again after each build, so that the new row is published.
+         */
+        private volatile Row[] rows = new Row[16];
+        /**
+         * The number of states numbered so far.
+         */
+        private volatile int states;
+
+        private LazyStates(StateBuilder<T> builder) {
+            this.builder = builder;
+            this.states = builder.getStateCount();
+        }
+
+        /**
+         * Gets the row of a state, building it if necessary.
+         * @param state the state.
+         * @return its row.
+         */
+        Row row(int state) {
+            Row[] rows = this.rows;
+            Row row = state < rows.length ? rows[state] : null;
+            return row != null ? row : build(state);
+        }
+
+        private synchronized Row build(int state) {
+            Row[] rows = this.rows;
+            if (state < rows.length && rows[state] != null) {
+                return rows[state];
+            }
+            if (state < 0 || state >= states) {
+                throw new IllegalArgumentException("Unknown state " + state);
+            }
+            var built = builder.build(state);
+            int[] shift = new int[classes.size()];
+            int[] gotos = new int[nonTerminals.size()];
+            Arrays.fill(shift, -1);
+            Arrays.fill(gotos, -1);
+            for (var e : built.transitions().entrySet()) {
+                if (e.getKey() instanceof Terminal<T> t) {
+                    shift[classes.classOf(t.terminal())] = e.getValue();
+                } else if (e.getKey() instanceof NonTerminal<T> nt) {
+                    gotos[nonTerminals.get(nt)] = e.getValue();
+                }
+            }
+            TreeMap<Integer, Integer> actions = encodeActions(built.actions());
+            int k = neededLookahead(actions);
+            actions = shorten(actions, k);
+            Row row;
+            if (powers[k] <= DENSE_LIMIT) {
+                int[] dense = new int[powers[k]];
+                actions.forEach((w, v) -> dense[w] = v);
+                row = new Row(k, null, dense, shift, gotos);
+            } else {
+                row = new Row(k, actions.keySet().stream().mapToInt(Integer::intValue).toArray(),
+                        actions.values().stream().mapToInt(Integer::intValue).toArray(), shift, gotos);
+            }
+            if (state >= rows.length) {
+                rows = Arrays.copyOf(rows, Math.max(2 * rows.length, state + 1));
+            }
+            rows[state] = row;
+            this.states = builder.getStateCount();
+            this.rows = rows;
+            return row;
+        }
+    }
+
+    /**
+     * A built row of a lazily constructed PDA.
+     * @param lookahead how many chars of lookahead the actions depend on.
+     * @param keys the lookahead word encodings if the actions are sparse, or null if they are dense.
+     * @param actions the encoded actions.
+     * @param shift the goto table for terminals.
+     * @param gotos the goto table for non-terminals.
+     */
+    private record Row(int lookahead, int[] keys, int[] actions, int[] shift, int[] gotos) {
+
+        int action(int word) {
+            if (keys == null) {
+                return actions[word];
+            }
+            int idx = Arrays.binarySearch(keys, word);
+            return idx < 0 ? ERROR : actions[idx];
+        }
+    }
+
+    /**
+     * Copies a PDA, sharing its tables.
+     * @param pda the PDA.
+     * @param metrics the metrics of the copy.
+     */
+    private PushDownAutomaton(PushDownAutomaton<T> pda, ParseMetrics metrics) {
+        this.grammar = pda.grammar;
+        this.entryPoints = pda.entryPoints;
+        this.lookahead = pda.lookahead;
+        this.powers = pda.powers;
+        this.stateLookahead = pda.stateLookahead;
+        this.classes = pda.classes;
+        this.radix = pda.radix;
+        this.productions = pda.productions;
+        this.productionLhs = pda.productionLhs;
+        this.productionLength = pda.productionLength;
+        this.actionTable = pda.actionTable;
+        this.actionKeys = pda.actionKeys;
+        this.shiftTable = pda.shiftTable;
+        this.gotoTable = pda.gotoTable;
+        this.nonTerminals = pda.nonTerminals;
+        this.productionIds = pda.productionIds;
+        this.productionIdsByItems = pda.productionIdsByItems;
+        this.fingerprint = pda.fingerprint;
+        this.metrics = metrics;
+        this.lazy = pda.lazy;
+    }
+
+    /**
+     * Gets a PDA that parses like this one, and reports statistics about each run started from it.
+     * The tables are shared, so this is cheap. Without metrics, runs only pay for a null check per action.
+     * <p>
+     * Runs report when they are accepted or rejected. Incremental reparsing is not measured.
+     * @param metrics where to report the statistics, or null to collect none.
+     * @return the PDA with these metrics.
+     * @see jojomodding.parsergenerator.metrics.ParseMetricsCollector
+     * @see jojomodding.parsergenerator.metrics.JfrParseMetrics
+     */
+    public PushDownAutomaton<T> withMetrics(ParseMetrics metrics) {
+        return new PushDownAutomaton<>(this, metrics);
+    }
+
+    /**
+     * Gets where the statistics of each run are reported.
+     * @return the metrics, or null.
+     */
+    ParseMetrics getMetrics() {
+        return metrics;
+    }
+
+    private static long mix(long hash, int value) {
+        return (hash ^ value) * 0x100000001b3L;
+    }
+
+    /**
+     * Gets a fingerprint of the tables of this PDA. PDAs built from the same grammar with the same lookahead have the same fingerprint,
+     * even in different JVMs, as long as the terminals have deterministic hash codes and string representations.
+     * @return the fingerprint.
+     */
+    public long fingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Gets the terminal classes by which the tables of this PDA are indexed.
+     * @return the terminal classes.
+     */
+    public TerminalClasses<T> getTerminalClasses() {
+        return classes;
+    }
+
+    /**
+     * Encodes a lookahead word. Words shorter than the lookahead are taken to end with the end of input.
+     * @param word the lookahead word.
+     * @return its encoding.
+     */
+    private int encodeWord(List<T> word) {
+        int code = 0;
+        for (int i = 0; i < lookahead; i++) {
+            code = code * radix + (i < word.size() ? classes.classOf(word.get(i)) + 1 : 0);
+        }
+        return code;
+    }
+
+    /**
+     * Gets how many chars of lookahead the actions of a state depend on.
+     * @param state the state.
+     * @return the lookahead of that state, which is at most the lookahead of this PDA.
+     */
+    int lookahead(int state) {
+        if (lazy != null) {
+            return lazy.row(state).lookahead();
+        }
+        return stateLookahead[state];
+    }
+
+    /**
+     * Looks up an action. Only as much of the lookahead as the state needs is used.
+     * @param state the current state.
+     * @param word the encoded lookahead of full length.
+     * @return the encoded action.
+     */
+    int action(int state, int word) {
+        if (lazy != null) {
+            Row row = lazy.row(state);
+            return row.action(word / powers[lookahead - row.lookahead()]);
+        }
+        word /= powers[lookahead - stateLookahead[state]];
+        int[] keys = actionKeys[state];
+        if (keys == null) {
+            return actionTable[state][word];
+        }
+        int idx = Arrays.binarySearch(keys, word);
+        return idx < 0 ? ERROR : actionTable[state][idx];
+    }
 
     /**
      * Run the PDA on the given input.
@@ -67,41 +691,486 @@ public class PushDownAutomaton<T> {
      * @throws IllegalArgumentException if the input is not in the language
      */
     public AbstractSyntax<T> run(final List<T> input) {
-        var inputList = new LinkedList<>(input);
-        LinkedList<Integer> stack = new LinkedList<>();
-        LinkedList<AbstractSyntax<T>> dataStack = new LinkedList<>();
-        stack.push(0);
+        return run(input.iterator());
+    }
+
+    /**
+     * Run the PDA on the given input, which is read lazily. Only the current lookahead is retained.
+     * @param input the input
+     * @return the parsed result
+     * @throws IllegalArgumentException if the input is not in the language
+     */
+    public AbstractSyntax<T> run(final Iterator<T> input) {
+        return run(input, null);
+    }
+
+    /**
+     * Run the PDA on the given input, which is read lazily, sharing identical subtrees.
+     * @param input the input
+     * @param interner the interner by which tokens and nodes are built, or null to build a new node for each reduction.
+     * @return the parsed result, in which identical subtrees may be shared
+     * @throws IllegalArgumentException if the input is not in the language
+     */
+    public AbstractSyntax<T> run(final Iterator<T> input, TreeInterner<T> interner) {
+        return run(0, input, interner, null);
+    }
+
+    /**
+     * Run the PDA on the given input, parsing one of the start symbols it was built for.
+     * @param startSymbol the non-terminal to parse the input as.
+     * @param input the input
+     * @return the parsed result
+     * @throws IllegalArgumentException if the input is not in the language of the start symbol, or the PDA has no such start symbol.
+     */
+    public AbstractSyntax<T> run(NonTerminal<T> startSymbol, final List<T> input) {
+        return run(startSymbol, input.iterator());
+    }
+
+    /**
+     * Run the PDA on the given input, which is read lazily, parsing one of the start symbols it was built for.
+     * @param startSymbol the non-terminal to parse the input as.
+     * @param input the input
+     * @return the parsed result
+     * @throws IllegalArgumentException if the input is not in the language of the start symbol, or the PDA has no such start symbol.
+     */
+    public AbstractSyntax<T> run(NonTerminal<T> startSymbol, final Iterator<T> input) {
+        return run(initialState(startSymbol), input, null, null);
+    }
+
+    /**
+     * Run the PDA on the given input from some initial state.
+     * @param initial the initial state.
+     * @param input the input
+     * @param interner the interner by which tokens and nodes are built, or null to build a new node for each reduction.
+     * @param spans the table in which to record the spans, or null.
+     * @return the parsed result
+     * @throws IllegalArgumentException if the input is not in the language
+     */
+    AbstractSyntax<T> run(int initial, final Iterator<T> input, TreeInterner<T> interner, SpanTable spans) {
+        return withWorkspace(workspace -> {
+            ParserState<T> state = new ParserState<>(this, initial, workspace.stack, workspace.dataStack, interner, spans);
+            try {
+                while (input.hasNext()) {
+                    state.feed(input.next());
+                }
+                return state.finish();
+            } finally {
+                workspace.stack = state.stack();
+            }
+        });
+    }
+
+    /**
+     * Run the PDA on the given input, which is read lazily, and record the span of each node.
+     * @param input the input
+     * @param spans the table in which to record the spans. It is cleared first, so it can be reused for the next run.
+     * @return the parsed result, whose nodes can be looked up in the span table
+     * @throws IllegalArgumentException if the input is not in the language
+     */
+    public AbstractSyntax<T> runWithSpans(final Iterator<T> input, SpanTable spans) {
+        spans.clear();
+        return run(0, input, null, spans);
+    }
+
+    /**
+     * Run the PDA on the given input, which is read lazily, parsing one of the start symbols it was built for, and record the span
+     * of each node.
+     * @param startSymbol the non-terminal to parse the input as.
+     * @param input the input
+     * @param spans the table in which to record the spans. It is cleared first, so it can be reused for the next run.
+     * @return the parsed result, whose nodes can be looked up in the span table
+     * @throws IllegalArgumentException if the input is not in the language of the start symbol, or the PDA has no such start symbol.
+     */
+    public AbstractSyntax<T> runWithSpans(NonTerminal<T> startSymbol, final Iterator<T> input, SpanTable spans) {
+        int initial = initialState(startSymbol);
+        spans.clear();
+        return run(initial, input, null, spans);
+    }
+
+    /**
+     * Starts a run, to which the input is fed one token at a time.
+     * @return the new run.
+     */
+    public ParserState<T> start() {
+        return start(null);
+    }
+
+    /**
+     * Starts a run, to which the input is fed one token at a time, sharing identical subtrees.
+     * @param interner the interner by which tokens and nodes are built, or null to build a new node for each reduction.
+     * @return the new run.
+     */
+    public ParserState<T> start(TreeInterner<T> interner) {
+        return new ParserState<>(this, 0, new int[16], new ArrayList<>(), interner, null);
+    }
+
+    /**
+     * Starts a run that parses one of the start symbols this PDA was built for, to which the input is fed one token at a time.
+     * @param startSymbol the non-terminal to parse the input as.
+     * @param interner the interner by which tokens and nodes are built, or null to build a new node for each reduction.
+     * @return the new run.
+     * @throws IllegalArgumentException if the PDA has no such start symbol.
+     */
+    public ParserState<T> start(NonTerminal<T> startSymbol, TreeInterner<T> interner) {
+        return new ParserState<>(this, initialState(startSymbol), new int[16], new ArrayList<>(), interner, null);
+    }
+
+    /**
+     * Gets the non-terminals this PDA can parse.
+     * @return the start symbols, in the order in which they were given to the parser generator.
+     */
+    public Set<NonTerminal<T>> getStartSymbols() {
+        return entryPoints.keySet();
+    }
+
+    /**
+     * Gets the initial state of a start symbol.
+     * @param startSymbol the start symbol.
+     * @return its initial state.
+     * @throws IllegalArgumentException if the PDA has no such start symbol.
+     */
+    int initialState(NonTerminal<T> startSymbol) {
+        Integer state = entryPoints.get(startSymbol);
+        if (state == null) {
+            throw new IllegalArgumentException("Unknown start symbol " + startSymbol.name());
+        }
+        return state;
+    }
+
+    /**
+     * Runs something with the workspace of the current thread.
+     * @param body what to run.
+     * @return its result.
+     */
+    private <R> R withWorkspace(Function<Workspace<T>, R> body) {
+        Workspace<T> workspace = workspaces.get();
+        if (workspace.inUse) {
+            workspace = new Workspace<>();
+        }
+        workspace.inUse = true;
+        try {
+            return body.apply(workspace);
+        } finally {
+            // both stacks grow together, so the state stack tells how large the data stack has become
+            if (workspace.stack.length > Workspace.RETAINED_DEPTH) {
+                workspace.stack = new int[16];
+                workspace.dataStack = new ArrayList<>();
+            } else {
+                workspace.dataStack.clear();
+            }
+            workspace.inUse = false;
+        }
+    }
+
+    /**
+     * Provides previously parsed subtrees that may be reused.
+     */
+    interface SubtreeSource<T> {
+
+        /**
+         * Finds a subtree to reuse.
+         * @param position the current position in the input.
+         * @param state the current state.
+         * @return a subtree starting at that position, that was parsed from that state and whose tokens and lookahead are unchanged,
+         * or null if there is none.
+         */
+        AbstractSyntaxTree<T> find(int position, int state);
+    }
+
+    /**
+     * Run the PDA on the given input, reusing subtrees where possible.
+     * Whenever the PDA is about to shift, the source is asked for a subtree starting at the current position.
+     * If there is one, it is pushed as a whole, as if its tokens had been parsed again.
+     * Since actions only depend on the current state and the lookahead, this results in the same tree.
+     * <p>
+     * The run does not need to start at the beginning: If the first tokens and their lookahead are the same as when the previous
+     * tree was parsed, the stacks are rebuilt from the path of that tree to the token before the restart position, as they were
+     * right after shifting it. This takes time proportional to the depth of the tree, not to the number of skipped tokens.
+     * @param initial the initial state, from which the previous tree was parsed as well
+     * @param input the input
+     * @param previous the tree the PDA parsed from the previous input, or null
+     * @param restart the position up to which the input and the lookahead of its tokens are the same as in the previous input
+     * @param reuse the subtrees that may be reused
+     * @return the parsed result
+     * @throws IllegalArgumentException if the input is not in the language
+     */
+    AbstractSyntax<T> run(int initial, final List<T> input, AbstractSyntax<T> previous, int restart, SubtreeSource<T> reuse) {
+        return withWorkspace(workspace -> run(initial, input, previous, restart, reuse, workspace));
+    }
+
+    /**
+     * Rebuilds the stacks as they were right after shifting the token before a position, from the tree that was parsed.
+     * These are the states of the children left of the path from the root to that token, and the token itself.
+     * @param root the tree.
+     * @param position the position after the token, which must be inside the tree.
+     * @param initial the initial state.
+     * @param workspace the stacks, which must be empty.
+     * @return the height of the state stack, or 0 if the tree was not parsed by this PDA from the initial state.
+     */
+    private int rebuild(AbstractSyntax<T> root, int position, int initial, Workspace<T> workspace) {
+        int[] stack = workspace.stack;
+        ArrayList<AbstractSyntax<T>> dataStack = workspace.dataStack;
+        int sp = 0;
+        stack[sp++] = initial;
+        AbstractSyntax<T> node = root;
+        int start = 0;
+        while (node instanceof AbstractSyntaxTree<T> tree && tree.getState() == stack[sp - 1]) {
+            node = null;
+            for (var child : tree.getChildren()) {
+                if (start + child.width() >= position) {
+                    node = child;
+                    break;
+                }
+                // the children before the token have been parsed completely by then
+                int next = after(stack[sp - 1], child);
+                if (next < 0) {
+                    break;
+                }
+                if (sp + 1 >= stack.length) {
+                    stack = workspace.stack = Arrays.copyOf(stack, 2 * stack.length);
+                }
+                stack[sp++] = next;
+                dataStack.add(child);
+                start += child.width();
+            }
+        }
+        if (node instanceof AbstractSyntaxToken<T> && (stack[sp] = after(stack[sp - 1], node)) >= 0) {
+            dataStack.add(node);
+            return sp + 1;
+        }
+        dataStack.clear();
+        return 0;
+    }
+
+    /**
+     * Gets the state after a token or a node.
+     * @param state the current state.
+     * @param syntax the token or node.
+     * @return the next state, or -1 if the node was not parsed from the current state.
+     */
+    private int after(int state, AbstractSyntax<T> syntax) {
+        if (syntax instanceof AbstractSyntaxToken<T> token) {
+            return shift(state, classes.classOf(token.token()));
+        } else if (syntax instanceof AbstractSyntaxTree<T> tree && tree.getState() == state) {
+            Integer nt = nonTerminals.get(tree.getElement());
+            return nt == null ? -1 : goTo(state, nt);
+        }
+        return -1;
+    }
+
+    /**
+     * Encodes the lookahead at some position in the input.
+     * @param input the input.
+     * @param pos the position of the first lookahead token.
+     * @return the encoding of the next lookahead tokens.
+     */
+    private int encodeLookahead(List<T> input, int pos) {
+        int code = 0;
+        for (int i = 0; i < lookahead; i++) {
+            code = code * radix + (pos + i < input.size() ? classes.classOf(input.get(pos + i)) + 1 : 0);
+        }
+        return code;
+    }
+
+    private AbstractSyntax<T> run(int initial, final List<T> input, AbstractSyntax<T> previous, int restart, SubtreeSource<T> reuse,
+            Workspace<T> workspace) {
+        int sp = previous == null || restart <= 0 ? 0 : rebuild(previous, restart, initial, workspace);
+        int pos = sp == 0 ? 0 : restart;
+        int[] stack = workspace.stack;
+        ArrayList<AbstractSyntax<T>> dataStack = workspace.dataStack;
+        if (sp == 0) {
+            stack[sp++] = initial;
+        }
+        int lookaheadPos = -1, lookaheadCode = 0;
         while (true) {
-            var lookahead = Utils.concatLimit(this.lookahead, inputList, List.of());
-            int current = stack.getFirst();
-            var nextAction = actionTable.get(current).get(lookahead);
-            if (nextAction instanceof ActionShift<T>) {
-                if (inputList.isEmpty()) {
+            if (lookaheadPos != pos) {
+                lookaheadCode = encodeLookahead(input, pos);
+                lookaheadPos = pos;
+            }
+            int current = stack[sp - 1];
+            int nextAction = action(current, lookaheadCode);
+            if (sp == stack.length) {
+                stack = workspace.stack = Arrays.copyOf(stack, 2 * sp);
+            }
+            if (nextAction == SHIFT) {
+                if (pos >= input.size()) {
                     throw new IllegalStateException("Can not shift on EOF!");
                 }
-                var v = gotoTable.get(current).get(new Terminal<>(inputList.peek()));
-                stack.push(gotoTable.get(current).get(new Terminal<>(inputList.peek())));
-                dataStack.push(new AbstractSyntaxToken<>(inputList.peek()));
-                inputList.pop();
-            } else if (nextAction instanceof ActionReduce<T> red) {
-                int nums = red.to().items().size();
-                LinkedList<AbstractSyntax<T>> subSyntax = new LinkedList<>();
-                for (int i = 0; i < nums; i++) {
-                    stack.pop();
-                    subSyntax.push(dataStack.pop());
+                var subtree = reuse.find(pos, current);
+                if (subtree != null) {
+                    stack[sp++] = goTo(current, nonTerminals.get(subtree.getElement()));
+                    dataStack.add(subtree);
+                    pos += subtree.width();
+                    continue;
                 }
-                current = stack.getFirst();
-                var next = gotoTable.get(current).get(red.from());
-                stack.push(next);
-                dataStack.push(new AbstractSyntaxTree<>(grammar, red.from(), red.to(), subSyntax));
-            } else if (nextAction instanceof ActionAccept<T>) {
+                T token = input.get(pos);
+                stack[sp++] = shift(current, classes.classOf(token));
+                dataStack.add(new AbstractSyntaxToken<>(token));
+                pos++;
+            } else if (nextAction >= REDUCE) {
+                int p = nextAction - REDUCE;
+                int nums = productionLength[p];
+                var children = dataStack.subList(dataStack.size() - nums, dataStack.size());
+                List<AbstractSyntax<T>> subSyntax = new ArrayList<>(children);
+                children.clear();
+                sp -= nums;
+                current = stack[sp - 1];
+                stack[sp++] = reduceGoto(current, p);
+                dataStack.add(node(p, subSyntax, current, null));
+            } else if (nextAction == ACCEPT) {
                 if (dataStack.size() != 1) {
                     throw new IllegalStateException("Unexpected end of input!");
                 }
-                return dataStack.pop();
-            } else if (nextAction instanceof ActionErr<T> || nextAction == null) {
+                return dataStack.get(0);
+            } else {
                 throw new IllegalArgumentException();
             }
         }
     }
+
+    /**
+     * Gets the number of states. If the states are built when first visited, this is the number of states found so far.
+     * @return the number of states.
+     */
+    public int getStateCount() {
+        if (lazy != null) {
+            return lazy.states;
+        }
+        return actionTable.length;
+    }
+
+    /**
+     * Gets the number of productions. Productions have the ids 0 to this number minus one.
+     * @return the number of productions.
+     */
+    public int getProductionCount() {
+        return productions.size();
+    }
+
+    /**
+     * Gets a production by its id.
+     * @param p the id of the production.
+     * @return the production.
+     * @throws IndexOutOfBoundsException if there is no production with that id.
+     */
+    public ActionReduce<T> getProduction(int p) {
+        return productions.get(p);
+    }
+
+    /**
+     * Gets the id of a production. Productions are compared by their items, so the formatter does not matter.
+     * @param element the LHS of the production.
+     * @param items the RHS items of the production.
+     * @return the id of the production, which is the same for each PDA built from the same grammar.
+     * @throws IllegalArgumentException if the grammar has no such production.
+     */
+    public int getProductionId(NonTerminal<T> element, List<ProductionItem<T>> items) {
+        Integer p = productionIdsByItems.get(List.of(element, items));
+        if (p == null) {
+            throw new IllegalArgumentException("Unknown production " + element.name() + " -> " + items);
+        }
+        return p;
+    }
+
+    /**
+     * Gets the length of the RHS of a production.
+     * @param p the number of the production.
+     * @return its length.
+     */
+    int productionLength(int p) {
+        return productionLength[p];
+    }
+
+    /**
+     * Gets the id of the production a node was reduced along.
+     * @param node the node.
+     * @return the id of its production.
+     * @throws IllegalArgumentException if the grammar has no such production.
+     */
+    int productionId(AbstractSyntaxTree<T> node) {
+        int id = node.getProductionId();
+        if (id >= 0 && id < productions.size() && productions.get(id).to() == node.getGenerated()) {
+            return id;
+        }
+        Integer p = productionIds.get(new ActionReduce<>(node.getElement(), node.getGenerated()));
+        if (p == null) {
+            throw new IllegalArgumentException("Unknown production " + node.getElement().name() + " -> " + node.getGenerated());
+        }
+        return p;
+    }
+
+    /**
+     * Gets the state after shifting a terminal.
+     * @param state the current state.
+     * @param terminalClass the class of the terminal.
+     * @return the next state.
+     */
+    int shift(int state, int terminalClass) {
+        if (lazy != null) {
+            return lazy.row(state).shift()[terminalClass];
+        }
+        return shiftTable[state][terminalClass];
+    }
+
+    /**
+     * Gets the state after reducing.
+     * @param state the state exposed after popping the RHS.
+     * @param p the number of the production.
+     * @return the next state.
+     */
+    int reduceGoto(int state, int p) {
+        return goTo(state, productionLhs[p]);
+    }
+
+    /**
+     * Gets the state after a non-terminal.
+     * @param state the current state.
+     * @param nt the index of the non-terminal.
+     * @return the next state.
+     */
+    private int goTo(int state, int nt) {
+        if (lazy != null) {
+            return lazy.row(state).gotos()[nt];
+        }
+        return gotoTable[state][nt];
+    }
+
+    /**
+     * Builds the node for a reduction.
+     * @param p the number of the production.
+     * @param children the children.
+     * @param state the state exposed after popping the RHS.
+     * @param interner the interner by which to build the node, or null.
+     * @return the node.
+     * @throws IllegalArgumentException if the children do not fit the production.
+     */
+    AbstractSyntaxTree<T> node(int p, List<AbstractSyntax<T>> children, int state, TreeInterner<T> interner) {
+        var red = productions.get(p);
+        if (interner != null) {
+            return interner.tree(grammar, red.from(), red.to(), children, state, p);
+        }
+        return new AbstractSyntaxTree<>(grammar, red.from(), red.to(), children, state, p, -1);
+    }
+
+    /**
+     * Builds the node for a reduction, whose span is tracked.
+     * @param p the number of the production.
+     * @param children the children.
+     * @param state the state exposed after popping the RHS.
+     * @param ordinal the number of the node in the span table.
+     * @return the node.
+     * @throws IllegalArgumentException if the children do not fit the production.
+     */
+    AbstractSyntaxTree<T> node(int p, List<AbstractSyntax<T>> children, int state, int ordinal) {
+        var red = productions.get(p);
+        return new AbstractSyntaxTree<>(grammar, red.from(), red.to(), children, state, p, ordinal);
+    }
+
+    /**
+     * Gets how many tokens of lookahead this PDA uses.
+     * @return the lookahead.
+     */
+    public int getLookahead() {
+        return lookahead;
+    }
 }
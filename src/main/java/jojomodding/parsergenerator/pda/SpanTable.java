@@ -0,0 +1,113 @@
+package jojomodding.parsergenerator.pda;
+
+import java.util.Arrays;
+import java.util.Objects;
+import jojomodding.parsergenerator.parsed.AbstractSyntax;
+
+/**
+ * The spans of the nodes of a tree, i.e. the positions of their first token and after their last token in the input.
+ * The spans are kept in primitive arrays indexed by the {@link AbstractSyntax#ordinal() ordinal} of each node,
+ * which is the order in which the PDA built the nodes. So tracking spans costs two ints per node, and no objects.
+ * <p>
+ * A table is filled by {@link PushDownAutomaton#runWithSpans(java.util.Iterator, SpanTable)}, and only describes the tree of the
+ * latest run. It can be reused for further runs, which then do not need to allocate new arrays.
+ */
+public final class SpanTable {
+
+    private int[] starts;
+    private int[] ends;
+    private int size = 0;
+
+    /**
+     * Creates an empty table.
+     */
+    public SpanTable() {
+        this.starts = new int[1024];
+        this.ends = new int[1024];
+    }
+
+    /**
+     * Removes all spans.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Records the span of the next node.
+     *
+     * @param start the position of its first token.
+     * @param end   the position after its last token.
+     * @return the ordinal of the node.
+     */
+    int add(int start, int end) {
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, 2 * size);
+            ends = Arrays.copyOf(ends, 2 * size);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        return size++;
+    }
+
+    /**
+     * Gets the number of nodes in the table.
+     *
+     * @return the number of nodes.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets where a node starts.
+     *
+     * @param node the node.
+     * @return the position of its first token. For empty nodes, the position of the token after it.
+     * @throws IllegalArgumentException if the span of the node is not in this table.
+     */
+    public int start(AbstractSyntax<?> node) {
+        return starts[check(node)];
+    }
+
+    /**
+     * Gets where a node ends.
+     *
+     * @param node the node.
+     * @return the position after its last token.
+     * @throws IllegalArgumentException if the span of the node is not in this table.
+     */
+    public int end(AbstractSyntax<?> node) {
+        return ends[check(node)];
+    }
+
+    /**
+     * Gets where the node with some ordinal starts.
+     *
+     * @param ordinal the ordinal of the node.
+     * @return the position of its first token.
+     * @throws IndexOutOfBoundsException if there is no such node.
+     */
+    public int start(int ordinal) {
+        return starts[Objects.checkIndex(ordinal, size)];
+    }
+
+    /**
+     * Gets where the node with some ordinal ends.
+     *
+     * @param ordinal the ordinal of the node.
+     * @return the position after its last token.
+     * @throws IndexOutOfBoundsException if there is no such node.
+     */
+    public int end(int ordinal) {
+        return ends[Objects.checkIndex(ordinal, size)];
+    }
+
+    private int check(AbstractSyntax<?> node) {
+        int ordinal = node.ordinal();
+        if (ordinal < 0 || ordinal >= size || ends[ordinal] - starts[ordinal] != node.width()) {
+            throw new IllegalArgumentException("The span of the node is not in this table!");
+        }
+        return ordinal;
+    }
+}
@@ -0,0 +1,44 @@
+package jojomodding.parsergenerator.pda;
+
+import java.util.List;
+import java.util.Map;
+import jojomodding.parsergenerator.grammar.ProductionItem;
+import jojomodding.parsergenerator.pda.action.Action;
+
+/**
+ * Builds the states of a lazily constructed {@link PushDownAutomaton} when they are first visited.
+ * <p>
+ * State 0 is the initial state. Building a state numbers its successors, which are built in turn once they are visited, so the
+ * numbering depends on the order in which inputs visit the states. A PDA calls its builder for one state at a time.
+ *
+ * @param <T> the type of terminals.
+ */
+public interface StateBuilder<T> {
+
+    /**
+     * Builds a state.
+     *
+     * @param state the number of the state, which is less than {@link #getStateCount()}.
+     * @return the row of the state in the action and goto table.
+     * @throws IllegalStateException if the state has a conflict.
+     */
+    State<T> build(int state);
+
+    /**
+     * Gets the number of states numbered so far, whether they were built or not.
+     *
+     * @return the number of states.
+     */
+    int getStateCount();
+
+    /**
+     * The rows of a state in the action and goto table.
+     *
+     * @param actions     the action for each lookahead word.
+     * @param transitions the successor state for each terminal and non-terminal.
+     * @param <T>         the type of terminals.
+     */
+    record State<T>(Map<List<T>, Action<T>> actions, Map<ProductionItem<T>, Integer> transitions) {
+
+    }
+}
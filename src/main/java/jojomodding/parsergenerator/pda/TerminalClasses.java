@@ -0,0 +1,181 @@
+package jojomodding.parsergenerator.pda;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import jojomodding.parsergenerator.grammar.ProductionItem;
+import jojomodding.parsergenerator.grammar.Terminal;
+import jojomodding.parsergenerator.pda.action.Action;
+
+/**
+ * A partition of the terminals into equivalence classes.
+ * Two terminals are equivalent if they behave identically in every row of the action and goto table,
+ * i.e. if exchanging one for the other in any lookahead word never changes the action, and both lead to the same state when shifted.
+ * The tables of the PDA can then be indexed by class instead of by terminal.
+ * <p>
+ * Class 0 is reserved for all terminals that never occur in the tables, including those not known to the grammar at all.
+ * Looking such a terminal up always results in an error.
+ *
+ * @param <T> the type of terminals.
+ */
+public final class TerminalClasses<T> {
+
+    /**
+     * For each terminal that is not in class 0, its class.
+     */
+    private final Map<T, Integer> classOf;
+
+    /**
+     * For each class, the terminals it contains.
+     */
+    private final List<Set<T>> members;
+
+    private TerminalClasses(Map<T, Integer> classOf, List<Set<T>> members) {
+        this.classOf = classOf;
+        this.members = members;
+    }
+
+    /**
+     * Gets the class of a terminal.
+     *
+     * @param t the terminal
+     * @return its class, or 0 if the terminal does not occur in the tables.
+     */
+    public int classOf(T t) {
+        Integer c = classOf.get(t);
+        return c == null ? 0 : c;
+    }
+
+    /**
+     * Gets the number of classes, including the error class 0.
+     *
+     * @return the number of classes.
+     */
+    public int size() {
+        return members.size();
+    }
+
+    /**
+     * Gets the known terminals of a class.
+     *
+     * @param c the class
+     * @return the terminals in that class. For class 0, this only contains the terminals known when the partition was computed.
+     */
+    public Set<T> members(int c) {
+        return members.get(c);
+    }
+
+    /**
+     * Picks a terminal of the given class.
+     *
+     * @param c the class
+     * @return some terminal in that class
+     * @throws IllegalArgumentException if there is no known terminal in that class.
+     */
+    public T representative(int c) {
+        return members.get(c).stream().findFirst().orElseThrow(() -> new IllegalArgumentException("Class " + c + " is empty!"));
+    }
+
+    /**
+     * Computes the coarsest partition of the terminals that is compatible with the given tables.
+     * <p>
+     * For each terminal, we collect all its occurrences: in which state, at which position in which lookahead word, with which action,
+     * and under which goto it leads to which state. The remainder of the lookahead word is kept as concrete terminals.
+     * Two terminals with the same set of occurrences are then interchangeable, and since one can get from one word to any other word
+     * of the same classes by exchanging one position at a time, the tables are well-defined on classes.
+     *
+     * @param terminals   the terminals of the grammar.
+     * @param actionTable the action table.
+     * @param gotoTable   the goto table.
+     * @return the partition of all terminals.
+     */
+    public static <T> TerminalClasses<T> analyze(Collection<T> terminals, List<Map<List<T>, Action<T>>> actionTable,
+            List<Map<ProductionItem<T>, Integer>> gotoTable) {
+        Map<T, Set<Occurrence>> occurrences = new HashMap<>();
+        Set<T> all = new LinkedHashSet<>(terminals);
+        for (int state = 0; state < actionTable.size(); state++) {
+            for (var e : actionTable.get(state).entrySet()) {
+                List<T> word = e.getKey();
+                for (int i = 0; i < word.size(); i++) {
+                    List<T> context = new ArrayList<>(word);
+                    context.set(i, null);
+                    occurrences.computeIfAbsent(word.get(i), $ -> new HashSet<>()).add(new Occurrence(state, i, context, e.getValue()));
+                    all.add(word.get(i));
+                }
+            }
+        }
+        for (int state = 0; state < gotoTable.size(); state++) {
+            for (var e : gotoTable.get(state).entrySet()) {
+                if (e.getKey() instanceof Terminal<T> t) {
+                    occurrences.computeIfAbsent(t.terminal(), $ -> new HashSet<>()).add(new Occurrence(state, -1, null, e.getValue()));
+                    all.add(t.terminal());
+                }
+            }
+        }
+        Map<Set<Occurrence>, Integer> bySignature = new HashMap<>();
+        Map<T, Integer> classOf = new HashMap<>();
+        List<Set<T>> members = new ArrayList<>();
+        members.add(new LinkedHashSet<>());
+        for (T t : all) {
+            var signature = occurrences.get(t);
+            if (signature == null) {
+                members.get(0).add(t);
+                continue;
+            }
+            int c = bySignature.computeIfAbsent(signature, $ -> {
+                members.add(new LinkedHashSet<>());
+                return members.size() - 1;
+            });
+            members.get(c).add(t);
+            classOf.put(t, c);
+        }
+        return new TerminalClasses<>(Map.copyOf(classOf),
+                members.stream().map(Collections::unmodifiableSet).collect(Collectors.toUnmodifiableList()));
+    }
+
+    /**
+     * Puts each terminal into a class of its own. This is used when the tables are not known in advance.
+     *
+     * @param terminals the terminals of the grammar.
+     * @return the partition of all terminals, in which class i+1 contains the i-th terminal in the order of their string representation.
+     */
+    public static <T> TerminalClasses<T> singletons(Collection<T> terminals) {
+        Map<T, Integer> classOf = new HashMap<>();
+        List<Set<T>> members = new ArrayList<>();
+        members.add(Set.of());
+        terminals.stream().distinct().sorted(Comparator.comparing(String::valueOf)).forEach(t -> {
+            classOf.put(t, members.size());
+            members.add(Set.of(t));
+        });
+        return new TerminalClasses<>(Map.copyOf(classOf), List.copyOf(members));
+    }
+
+    @Override
+    public String toString() {
+        List<String> res = new ArrayList<>();
+        for (int c = 0; c < members.size(); c++) {
+            res.add(c + ": " + members.get(c));
+        }
+        return String.join(", ", res);
+    }
+
+    /**
+     * An occurrence of a terminal in the tables.
+     *
+     * @param state    the state in which it occurs.
+     * @param position the position in the lookahead word, or -1 for an occurrence in the goto table.
+     * @param context  the lookahead word, with the terminal itself replaced by null.
+     * @param target   the action, or the goto target state.
+     */
+    private record Occurrence(int state, int position, List<?> context, Object target) {
+
+    }
+}
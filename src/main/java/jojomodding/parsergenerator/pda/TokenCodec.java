@@ -0,0 +1,52 @@
+package jojomodding.parsergenerator.pda;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes and reads tokens, e.g. to and from parser checkpoints or serialized trees.
+ *
+ * @param <T> the type of tokens.
+ * @see ParserState#checkpoint(java.io.OutputStream, TokenCodec)
+ * @see TreeWriter
+ */
+public interface TokenCodec<T> {
+
+    /**
+     * Writes a token.
+     *
+     * @param out   where to write to.
+     * @param token the token.
+     * @throws IOException if writing fails.
+     */
+    void writeToken(DataOutput out, T token) throws IOException;
+
+    /**
+     * Reads a token written by {@link #writeToken(DataOutput, Object)}.
+     *
+     * @param in where to read from.
+     * @return the token.
+     * @throws IOException if reading fails.
+     */
+    T readToken(DataInput in) throws IOException;
+
+    /**
+     * Gets a codec for characters.
+     *
+     * @return the codec.
+     */
+    static TokenCodec<Character> characters() {
+        return new TokenCodec<>() {
+            @Override
+            public void writeToken(DataOutput out, Character token) throws IOException {
+                out.writeChar(token);
+            }
+
+            @Override
+            public Character readToken(DataInput in) throws IOException {
+                return in.readChar();
+            }
+        };
+    }
+}
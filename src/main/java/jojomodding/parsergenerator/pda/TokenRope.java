@@ -0,0 +1,223 @@
+package jojomodding.parsergenerator.pda;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable list of tokens, stored as a height-balanced tree whose leaves are small arrays.
+ * Replacing a range of tokens makes a new list in time logarithmic in the size of the list plus linear in the number of
+ * inserted tokens, and the new list shares all other leaves with the old one. Access by index takes logarithmic time.
+ *
+ * @param <T> the type of tokens.
+ */
+final class TokenRope<T> extends AbstractList<T> {
+
+    /**
+     * The maximal number of tokens in a leaf.
+     */
+    private static final int CHUNK = 64;
+
+    /**
+     * A leaf, if tokens is not null, otherwise an inner node. Leaves have height 0.
+     */
+    private record Node(Object[] tokens, Node left, Node right, int size, int height) {
+
+        private static Node leaf(Object[] tokens) {
+            return tokens.length == 0 ? null : new Node(tokens, null, null, tokens.length, 0);
+        }
+
+        private static Node inner(Node left, Node right) {
+            return new Node(null, left, right, left.size + right.size, Math.max(left.height, right.height) + 1);
+        }
+    }
+
+    private static final TokenRope<?> EMPTY = new TokenRope<>(null);
+
+    /**
+     * The root, or null if the list is empty.
+     */
+    private final Node root;
+
+    private TokenRope(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Gets a rope with the given tokens.
+     *
+     * @param tokens the tokens, which are copied unless they already are a rope.
+     * @return the rope.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> TokenRope<T> of(List<T> tokens) {
+        if (tokens instanceof TokenRope<T> rope) {
+            return rope;
+        }
+        Object[] array = tokens.toArray();
+        for (Object token : array) {
+            if (token == null) {
+                throw new NullPointerException("Tokens must not be null!");
+            }
+        }
+        return array.length == 0 ? (TokenRope<T>) EMPTY : new TokenRope<>(build(array, 0, array.length));
+    }
+
+    /**
+     * Builds a perfectly balanced tree of a range of an array.
+     */
+    private static Node build(Object[] tokens, int from, int to) {
+        if (to - from <= CHUNK) {
+            return Node.leaf(Arrays.copyOfRange(tokens, from, to));
+        }
+        int chunks = (to - from + CHUNK - 1) / CHUNK;
+        int mid = from + chunks / 2 * CHUNK;
+        return Node.inner(build(tokens, from, mid), build(tokens, mid, to));
+    }
+
+    /**
+     * Replaces some tokens.
+     *
+     * @param offset   the position of the first replaced token.
+     * @param removed  how many tokens are replaced.
+     * @param inserted the tokens inserted instead.
+     * @return the new list.
+     * @throws IndexOutOfBoundsException if the replaced tokens are out of bounds.
+     */
+    TokenRope<T> replace(int offset, int removed, List<T> inserted) {
+        if (offset < 0 || removed < 0 || offset + removed > size()) {
+            throw new IndexOutOfBoundsException("Can not replace " + removed + " tokens at " + offset + " of " + size());
+        }
+        Node[] before = split(root, offset);
+        Node[] after = split(before[1], removed);
+        return new TokenRope<>(join(join(before[0], of(inserted).root), after[1]));
+    }
+
+    /**
+     * Splits a tree after its first tokens.
+     *
+     * @return the first tokens, and the others. Either may be null if it is empty.
+     */
+    private static Node[] split(Node node, int index) {
+        if (node == null || index == 0) {
+            return new Node[]{null, node};
+        } else if (index == node.size) {
+            return new Node[]{node, null};
+        } else if (node.tokens != null) {
+            return new Node[]{Node.leaf(Arrays.copyOf(node.tokens, index)), Node.leaf(Arrays.copyOfRange(node.tokens, index, node.size))};
+        } else if (index <= node.left.size) {
+            Node[] parts = split(node.left, index);
+            return new Node[]{parts[0], join(parts[1], node.right)};
+        }
+        Node[] parts = split(node.right, index - node.left.size);
+        return new Node[]{join(node.left, parts[0]), parts[1]};
+    }
+
+    /**
+     * Concatenates two trees, keeping the result balanced, in time proportional to the difference of their heights.
+     */
+    private static Node join(Node left, Node right) {
+        if (left == null) {
+            return right;
+        } else if (right == null) {
+            return left;
+        } else if (left.tokens != null && right.tokens != null && left.size + right.size <= CHUNK) {
+            Object[] tokens = Arrays.copyOf(left.tokens, left.size + right.size);
+            System.arraycopy(right.tokens, 0, tokens, left.size, right.size);
+            return Node.leaf(tokens);
+        } else if (left.height > right.height + 1) {
+            return balance(left.left, join(left.right, right));
+        } else if (right.height > left.height + 1) {
+            return balance(join(left, right.left), right.right);
+        }
+        return Node.inner(left, right);
+    }
+
+    /**
+     * Makes an inner node of two balanced trees whose heights differ by at most two, rotating if they differ by two.
+     */
+    private static Node balance(Node left, Node right) {
+        if (left.height > right.height + 1) {
+            if (left.left.height >= left.right.height) {
+                return Node.inner(left.left, Node.inner(left.right, right));
+            }
+            return Node.inner(Node.inner(left.left, left.right.left), Node.inner(left.right.right, right));
+        } else if (right.height > left.height + 1) {
+            if (right.right.height >= right.left.height) {
+                return Node.inner(Node.inner(left, right.left), right.right);
+            }
+            return Node.inner(Node.inner(left, right.left.left), Node.inner(right.left.right, right.right));
+        }
+        return Node.inner(left, right);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        Node node = root;
+        while (node.tokens == null) {
+            if (index < node.left.size) {
+                node = node.left;
+            } else {
+                index -= node.left.size;
+                node = node.right;
+            }
+        }
+        return (T) node.tokens[index];
+    }
+
+    @Override
+    public int size() {
+        return root == null ? 0 : root.size;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<>() {
+            /**
+             * The right subtrees still to visit, innermost on top.
+             */
+            private final ArrayDeque<Node> pending = new ArrayDeque<>();
+            private Object[] leaf = new Object[0];
+            private int index = 0;
+
+            {
+                if (root != null) {
+                    pending.push(root);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                while (index == leaf.length) {
+                    if (pending.isEmpty()) {
+                        return false;
+                    }
+                    Node node = pending.pop();
+                    while (node.tokens == null) {
+                        pending.push(node.right);
+                        node = node.left;
+                    }
+                    leaf = node.tokens;
+                    index = 0;
+                }
+                return true;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return (T) leaf[index++];
+            }
+        };
+    }
+}
@@ -0,0 +1,318 @@
+package jojomodding.parsergenerator.pda;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import jojomodding.parsergenerator.grammar.NonTerminal;
+import jojomodding.parsergenerator.grammar.ProductionRule;
+import jojomodding.parsergenerator.parsed.AbstractSyntax;
+import jojomodding.parsergenerator.parsed.TreeInterner;
+import jojomodding.parsergenerator.pda.action.ActionReduce;
+import jojomodding.parsergenerator.utils.VarInts;
+
+/**
+ * Navigates a tree written by a {@link TreeWriter} directly in its encoding, without building nodes.
+ * The cursor points to one node at a time, and can be moved to its first child, its next sibling, or its parent.
+ * Only the token table is decoded when the cursor is opened.
+ * <p>
+ * For example, the following visits all nodes in preorder:
+ * <pre>{@code
+ * while (true) {
+ *     visit(cursor);
+ *     if (cursor.firstChild()) continue;
+ *     while (!cursor.nextSibling()) {
+ *         if (!cursor.parent()) return;
+ *     }
+ * }
+ * }</pre>
+ *
+ * @param <T> the type of tokens.
+ */
+public final class TreeCursor<T> {
+
+    private final PushDownAutomaton<T> pda;
+    private final ByteBuffer buffer;
+    private final List<T> tokens;
+
+    private int offset;
+    private int tag;
+    private int state;
+    private int childCount;
+    private int tokenIndex;
+    /**
+     * Where the children of the current node start, or where its token index starts.
+     */
+    private int payloadStart;
+    /**
+     * Where the current node ends.
+     */
+    private int end;
+    /**
+     * The offsets of the ancestors of the current node, the root first.
+     */
+    private int[] ancestors = new int[16];
+    /**
+     * Where the ancestors of the current node end.
+     */
+    private int[] ancestorEnds = new int[16];
+    private int depth = 0;
+
+    private TreeCursor(PushDownAutomaton<T> pda, ByteBuffer buffer, List<T> tokens, int root) throws StreamCorruptedException {
+        this.pda = pda;
+        this.buffer = buffer;
+        this.tokens = tokens;
+        moveTo(root);
+        if (end > buffer.limit()) {
+            throw new StreamCorruptedException("Truncated tree");
+        }
+    }
+
+    /**
+     * Opens a cursor on the root of a tree. The buffer is neither copied nor modified.
+     *
+     * @param pda    the PDA by which the tree was parsed.
+     * @param buffer the buffer, whose position is the start of the tree.
+     * @param codec  how to read tokens.
+     * @return a cursor pointing to the root.
+     * @throws IOException              if the input is malformed.
+     * @throws IllegalArgumentException if the tree was written for a different PDA.
+     */
+    public static <T> TreeCursor<T> open(PushDownAutomaton<T> pda, ByteBuffer buffer, TokenCodec<T> codec) throws IOException {
+        ByteBuffer view = buffer.duplicate();
+        ByteBufferInputStream in = new ByteBufferInputStream(view);
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != TreeWriter.MAGIC || data.readUnsignedByte() != TreeWriter.VERSION) {
+            throw new StreamCorruptedException("Not a serialized tree");
+        }
+        if (data.readLong() != pda.fingerprint()) {
+            throw new IllegalArgumentException("Tree was written for a different PDA!");
+        }
+        List<T> tokens = TreeReader.readTokens(data, codec);
+        return new TreeCursor<>(pda, view, tokens, view.position());
+    }
+
+    /**
+     * Decodes the header of the node at some offset and makes it the current one.
+     */
+    private void moveTo(int offset) throws StreamCorruptedException {
+        this.offset = offset;
+        tag = VarInts.read(buffer, offset);
+        offset += VarInts.size(tag);
+        if (tag == TreeWriter.TAG_TOKEN) {
+            tokenIndex = VarInts.read(buffer, offset);
+            if (tokenIndex >= tokens.size()) {
+                throw new StreamCorruptedException("Unknown token " + tokenIndex);
+            }
+            payloadStart = offset;
+            end = offset + VarInts.size(tokenIndex);
+            childCount = 0;
+            state = -1;
+            return;
+        }
+        if (tag - TreeWriter.TAG_NODE >= pda.getProductionCount()) {
+            throw new StreamCorruptedException("Unknown production " + (tag - TreeWriter.TAG_NODE));
+        }
+        state = VarInts.read(buffer, offset) - 1;
+        offset += VarInts.size(state + 1);
+        childCount = VarInts.read(buffer, offset);
+        offset += VarInts.size(childCount);
+        int payload = VarInts.read(buffer, offset);
+        payloadStart = offset + VarInts.size(payload);
+        end = payloadStart + payload;
+        if (end < payloadStart) {
+            throw new StreamCorruptedException("Malformed node size");
+        }
+    }
+
+    private void move(int offset) {
+        try {
+            moveTo(offset);
+        } catch (StreamCorruptedException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Checks whether the current node is a token.
+     *
+     * @return true for tokens, false for inner nodes.
+     */
+    public boolean isToken() {
+        return tag == TreeWriter.TAG_TOKEN;
+    }
+
+    /**
+     * Gets the token of the current node.
+     *
+     * @return the token.
+     * @throws IllegalStateException if the current node is no token.
+     */
+    public T token() {
+        if (!isToken()) {
+            throw new IllegalStateException("Not a token!");
+        }
+        return tokens.get(tokenIndex);
+    }
+
+    /**
+     * Gets the production rule LHS of the current node.
+     *
+     * @return the LHS.
+     * @throws IllegalStateException if the current node is a token.
+     */
+    public NonTerminal<T> element() {
+        return production().from();
+    }
+
+    /**
+     * Gets the production rule RHS of the current node.
+     *
+     * @return the RHS.
+     * @throws IllegalStateException if the current node is a token.
+     */
+    public ProductionRule<T> generated() {
+        return production().to();
+    }
+
+    private ActionReduce<T> production() {
+        if (isToken()) {
+            throw new IllegalStateException("Not an inner node!");
+        }
+        return pda.getProduction(tag - TreeWriter.TAG_NODE);
+    }
+
+    /**
+     * Gets the state of the PDA in which parsing the current node began.
+     *
+     * @return the state, or -1 for tokens or if unknown.
+     */
+    public int state() {
+        return state;
+    }
+
+    /**
+     * Gets the number of children of the current node.
+     *
+     * @return the number of children, 0 for tokens.
+     */
+    public int childCount() {
+        return childCount;
+    }
+
+    /**
+     * Gets the depth of the current node.
+     *
+     * @return the number of ancestors.
+     */
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * Moves to the first child of the current node.
+     *
+     * @return true if the cursor moved, false if the current node has no children.
+     */
+    public boolean firstChild() {
+        if (childCount == 0) {
+            return false;
+        }
+        if (depth == ancestors.length) {
+            ancestors = Arrays.copyOf(ancestors, 2 * depth);
+            ancestorEnds = Arrays.copyOf(ancestorEnds, 2 * depth);
+        }
+        ancestors[depth] = offset;
+        ancestorEnds[depth] = end;
+        depth++;
+        move(payloadStart);
+        return true;
+    }
+
+    /**
+     * Moves to the next sibling of the current node.
+     *
+     * @return true if the cursor moved, false if the current node is the last child or the root.
+     */
+    public boolean nextSibling() {
+        if (depth == 0 || end >= ancestorEnds[depth - 1]) {
+            return false;
+        }
+        move(end);
+        return true;
+    }
+
+    /**
+     * Moves to the parent of the current node.
+     *
+     * @return true if the cursor moved, false if the current node is the root.
+     */
+    public boolean parent() {
+        if (depth == 0) {
+            return false;
+        }
+        move(ancestors[--depth]);
+        return true;
+    }
+
+    /**
+     * Builds the current node and its descendants.
+     *
+     * @return the subtree.
+     * @throws UncheckedIOException if the encoding is malformed.
+     */
+    public AbstractSyntax<T> materialize() {
+        return materialize(null);
+    }
+
+    /**
+     * Builds the current node and its descendants.
+     *
+     * @param interner by which tokens and nodes are built, or null to build a new node for each one read.
+     * @return the subtree.
+     * @throws UncheckedIOException if the encoding is malformed.
+     */
+    public AbstractSyntax<T> materialize(TreeInterner<T> interner) {
+        ByteBuffer view = buffer.duplicate();
+        view.limit(end).position(offset);
+        try {
+            return TreeReader.readNode(new DataInputStream(new ByteBufferInputStream(view)), tokens, pda, interner);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads from a buffer, advancing its position.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, buffer.remaining());
+            buffer.get(b, off, len);
+            return len;
+        }
+    }
+}
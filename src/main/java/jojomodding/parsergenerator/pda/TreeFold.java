@@ -0,0 +1,186 @@
+package jojomodding.parsergenerator.pda;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import jojomodding.parsergenerator.grammar.NonTerminal;
+import jojomodding.parsergenerator.grammar.ProductionItem;
+import jojomodding.parsergenerator.parsed.AbstractSyntax;
+import jojomodding.parsergenerator.parsed.AbstractSyntaxToken;
+import jojomodding.parsergenerator.parsed.AbstractSyntaxTree;
+import jojomodding.parsergenerator.parsed.Traversal;
+
+/**
+ * Computes a value for a tree bottom-up, by a handler for each production and one for tokens.
+ * The handlers are kept in an array indexed by {@link AbstractSyntaxTree#getProductionId() production id},
+ * so dispatching takes constant time per node, without comparing non-terminals or production rules.
+ * The tree is walked without recursion, so it may be arbitrarily deep.
+ * <p>
+ * For example, evaluating arithmetic expressions:
+ * <pre>{@code
+ * TreeFold<Character, Long> eval = TreeFold.<Character, Long>builder(pda, t -> t == '0' ? 0L : null)
+ *         .on(E, List.of(E, plus, T), (node, c) -> c.get(0) + c.get(2))
+ *         .on(T, List.of(T, times, F), (node, c) -> c.get(0) * c.get(2))
+ *         .on(F, List.of(open, E, close), (node, c) -> c.get(1))
+ *         .otherwise((node, c) -> c.get(0))
+ *         .build();
+ * }</pre>
+ *
+ * @param <T> the type of tokens.
+ * @param <R> the type of results.
+ */
+public final class TreeFold<T, R> {
+
+    /**
+     * Computes the result for a node from the results of its children.
+     *
+     * @param <T> the type of tokens.
+     * @param <R> the type of results.
+     */
+    @FunctionalInterface
+    public interface Handler<T, R> {
+
+        /**
+         * Computes the result for a node.
+         *
+         * @param node     the node.
+         * @param children the results of its children, in order.
+         * @return the result.
+         */
+        R apply(AbstractSyntaxTree<T> node, List<R> children);
+    }
+
+    private final PushDownAutomaton<T> pda;
+    private final Handler<T, R>[] handlers;
+    private final Function<T, R> onToken;
+
+    private TreeFold(PushDownAutomaton<T> pda, Handler<T, R>[] handlers, Function<T, R> onToken) {
+        this.pda = pda;
+        this.handlers = handlers;
+        this.onToken = onToken;
+    }
+
+    /**
+     * Starts building a fold.
+     *
+     * @param pda     the PDA by which the trees are parsed, which assigns the production ids.
+     * @param onToken computes the result for a token.
+     * @return a builder, to which the handlers for productions are added.
+     */
+    public static <T, R> Builder<T, R> builder(PushDownAutomaton<T> pda, Function<T, R> onToken) {
+        return new Builder<>(pda, onToken);
+    }
+
+    /**
+     * Computes the result for a tree.
+     *
+     * @param tree the tree.
+     * @return the result of the handler for the root.
+     * @throws IllegalStateException if there is no handler for some production.
+     */
+    public R apply(AbstractSyntax<T> tree) {
+        ArrayList<R> results = new ArrayList<>();
+        for (var node : Traversal.postorder(tree)) {
+            if (node instanceof AbstractSyntaxToken<T> token) {
+                results.add(onToken.apply(token.token()));
+            } else if (node instanceof AbstractSyntaxTree<T> ast) {
+                int id = pda.productionId(ast); // the id stored in the node may be from a different PDA
+                var handler = handlers[id];
+                if (handler == null) {
+                    throw new IllegalStateException("No handler for " + pda.getProduction(id));
+                }
+                var children = results.subList(results.size() - ast.getChildren().size(), results.size());
+                R result = handler.apply(ast, new ArrayList<>(children));
+                children.clear();
+                results.add(result);
+            }
+        }
+        return results.get(0);
+    }
+
+    /**
+     * Collects the handlers of a fold.
+     *
+     * @param <T> the type of tokens.
+     * @param <R> the type of results.
+     */
+    public static final class Builder<T, R> {
+
+        private final PushDownAutomaton<T> pda;
+        private final Function<T, R> onToken;
+        private final Handler<T, R>[] handlers;
+
+        @SuppressWarnings("unchecked")
+        private Builder(PushDownAutomaton<T> pda, Function<T, R> onToken) {
+            this.pda = pda;
+            this.onToken = onToken;
+            this.handlers = (Handler<T, R>[]) new Handler<?, ?>[pda.getProductionCount()];
+        }
+
+        /**
+         * Sets the handler for a production.
+         *
+         * @param productionId the id of the production.
+         * @param handler      the handler.
+         * @return this builder.
+         */
+        public Builder<T, R> on(int productionId, Handler<T, R> handler) {
+            handlers[productionId] = handler;
+            return this;
+        }
+
+        /**
+         * Sets the handler for a production.
+         *
+         * @param element the LHS of the production.
+         * @param items   the RHS items of the production.
+         * @param handler the handler.
+         * @return this builder.
+         * @throws IllegalArgumentException if the grammar has no such production.
+         */
+        public Builder<T, R> on(NonTerminal<T> element, List<ProductionItem<T>> items, Handler<T, R> handler) {
+            return on(pda.getProductionId(element, items), handler);
+        }
+
+        /**
+         * Sets the handler for all productions of a non-terminal.
+         *
+         * @param element the LHS of the productions.
+         * @param handler the handler.
+         * @return this builder.
+         */
+        public Builder<T, R> on(NonTerminal<T> element, Handler<T, R> handler) {
+            for (int p = 0; p < handlers.length; p++) {
+                if (pda.getProduction(p).from().equals(element)) {
+                    handlers[p] = handler;
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Sets the handler for all productions that do not have one yet.
+         *
+         * @param handler the handler.
+         * @return this builder.
+         */
+        public Builder<T, R> otherwise(Handler<T, R> handler) {
+            for (int p = 0; p < handlers.length; p++) {
+                if (handlers[p] == null) {
+                    handlers[p] = handler;
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Builds the fold.
+         *
+         * @return the fold.
+         */
+        public TreeFold<T, R> build() {
+            return new TreeFold<>(pda, Arrays.copyOf(handlers, handlers.length), onToken);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package jojomodding.parsergenerator.pda;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import jojomodding.parsergenerator.parsed.AbstractSyntax;
+import jojomodding.parsergenerator.parsed.AbstractSyntaxToken;
+import jojomodding.parsergenerator.parsed.TreeInterner;
+import jojomodding.parsergenerator.utils.VarInts;
+
+/**
+ * Reads trees written by a {@link TreeWriter}.
+ *
+ * @param <T> the type of tokens.
+ */
+public final class TreeReader<T> {
+
+    private final PushDownAutomaton<T> pda;
+    private final TokenCodec<T> codec;
+    private final TreeInterner<T> interner;
+
+    /**
+     * Creates a new reader.
+     *
+     * @param pda      the PDA by which the trees were parsed.
+     * @param codec    how to read tokens.
+     * @param interner by which tokens and nodes are built, or null to build a new node for each one read.
+     */
+    public TreeReader(PushDownAutomaton<T> pda, TokenCodec<T> codec, TreeInterner<T> interner) {
+        this.pda = pda;
+        this.codec = codec;
+        this.interner = interner;
+    }
+
+    /**
+     * Creates a new reader.
+     *
+     * @param pda   the PDA by which the trees were parsed.
+     * @param codec how to read tokens.
+     */
+    public TreeReader(PushDownAutomaton<T> pda, TokenCodec<T> codec) {
+        this(pda, codec, null);
+    }
+
+    /**
+     * Reads a tree. The stream is read byte by byte, so it should be buffered.
+     *
+     * @param in where to read from.
+     * @return the tree.
+     * @throws IOException              if reading fails, or the input is malformed.
+     * @throws IllegalArgumentException if the tree was written for a different PDA.
+     */
+    public AbstractSyntax<T> read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != TreeWriter.MAGIC || data.readUnsignedByte() != TreeWriter.VERSION) {
+            throw new StreamCorruptedException("Not a serialized tree");
+        }
+        if (data.readLong() != pda.fingerprint()) {
+            throw new IllegalArgumentException("Tree was written for a different PDA!");
+        }
+        return readNode(data, readTokens(data, codec), pda, interner);
+    }
+
+    /**
+     * Reads a tree from a buffer, starting at its position. The position of the buffer is not changed.
+     *
+     * @param buffer the buffer.
+     * @return the tree.
+     * @throws IOException              if the input is malformed.
+     * @throws IllegalArgumentException if the tree was written for a different PDA.
+     */
+    public AbstractSyntax<T> read(ByteBuffer buffer) throws IOException {
+        return TreeCursor.open(pda, buffer, codec).materialize(interner);
+    }
+
+    /**
+     * Reads the token table.
+     */
+    static <T> List<T> readTokens(DataInput in, TokenCodec<T> codec) throws IOException {
+        int count = VarInts.read(in);
+        List<T> tokens = new ArrayList<>(Math.min(count, 1 << 16));
+        for (int i = 0; i < count; i++) {
+            tokens.add(codec.readToken(in));
+        }
+        return tokens;
+    }
+
+    /**
+     * A node whose children are being read.
+     */
+    private record Frame<T>(int production, int state, List<AbstractSyntax<T>> children) {
+
+    }
+
+    /**
+     * Reads a node and its descendants.
+     */
+    static <T> AbstractSyntax<T> readNode(DataInput in, List<T> tokens, PushDownAutomaton<T> pda, TreeInterner<T> interner)
+            throws IOException {
+        ArrayDeque<Frame<T>> frames = new ArrayDeque<>();
+        while (true) {
+            int tag = VarInts.read(in);
+            AbstractSyntax<T> node;
+            if (tag == TreeWriter.TAG_TOKEN) {
+                int index = VarInts.read(in);
+                if (index >= tokens.size()) {
+                    throw new StreamCorruptedException("Unknown token " + index);
+                }
+                node = interner == null ? new AbstractSyntaxToken<>(tokens.get(index)) : interner.token(tokens.get(index));
+            } else {
+                int p = tag - TreeWriter.TAG_NODE;
+                if (p >= pda.getProductionCount()) {
+                    throw new StreamCorruptedException("Unknown production " + p);
+                }
+                int state = VarInts.read(in) - 1;
+                int children = VarInts.read(in);
+                VarInts.read(in);
+                if (children != pda.productionLength(p)) {
+                    throw new StreamCorruptedException("Wrong number of children for production " + p);
+                }
+                if (children > 0) {
+                    frames.push(new Frame<>(p, state, new ArrayList<>(children)));
+                    continue;
+                }
+                node = node(pda, p, new ArrayList<>(), state, interner);
+            }
+            while (true) {
+                var frame = frames.peek();
+                if (frame == null) {
+                    return node;
+                }
+                frame.children().add(node);
+                if (frame.children().size() < pda.productionLength(frame.production())) {
+                    break;
+                }
+                frames.pop();
+                node = node(pda, frame.production(), frame.children(), frame.state(), interner);
+            }
+        }
+    }
+
+    private static <T> AbstractSyntax<T> node(PushDownAutomaton<T> pda, int p, List<AbstractSyntax<T>> children, int state,
+            TreeInterner<T> interner) throws StreamCorruptedException {
+        try {
+            return pda.node(p, children, state, interner);
+        } catch (IllegalArgumentException e) {
+            throw new StreamCorruptedException(e.getMessage());
+        }
+    }
+}
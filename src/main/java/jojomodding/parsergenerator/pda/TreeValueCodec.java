@@ -0,0 +1,137 @@
+package jojomodding.parsergenerator.pda;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import jojomodding.parsergenerator.parsed.AbstractSyntax;
+import jojomodding.parsergenerator.parsed.AbstractSyntaxToken;
+import jojomodding.parsergenerator.parsed.AbstractSyntaxTree;
+import jojomodding.parsergenerator.utils.VarInts;
+
+/**
+ * Writes the value stack as a stream of operations in postorder, which rebuild it on a stack when read.
+ * Each distinct node is numbered in the order it is written, and later occurrences are written as references to that number.
+ *
+ * @param <T> the type of tokens.
+ * @see ValueCodec#trees(PushDownAutomaton, TokenCodec)
+ */
+final class TreeValueCodec<T> implements ValueCodec<T> {
+
+    /**
+     * Marks the end of the value stack.
+     */
+    private static final int OP_END = 0;
+    /**
+     * Marks a token, which is followed by the token.
+     */
+    private static final int OP_TOKEN = 1;
+    /**
+     * Marks a node that was written before, which is followed by its number.
+     */
+    private static final int OP_REF = 2;
+    /**
+     * The reduction of production p is encoded as OP_NODE + p, followed by its state plus one.
+     */
+    private static final int OP_NODE = 3;
+
+    private final PushDownAutomaton<T> pda;
+    private final TokenCodec<T> tokens;
+
+    TreeValueCodec(PushDownAutomaton<T> pda, TokenCodec<T> tokens) {
+        this.pda = pda;
+        this.tokens = tokens;
+    }
+
+    /**
+     * A node to be written. Inner nodes are visited twice, once to push their children, and once to write them.
+     */
+    private record Visit<T>(AbstractSyntax<T> node, boolean expanded) {
+
+    }
+
+    @Override
+    public void writeValues(DataOutput out, List<AbstractSyntax<T>> values) throws IOException {
+        Map<AbstractSyntax<T>, Integer> written = new IdentityHashMap<>();
+        ArrayDeque<Visit<T>> todo = new ArrayDeque<>();
+        for (var value : values) {
+            todo.push(new Visit<>(value, false));
+            while (!todo.isEmpty()) {
+                var visit = todo.pop();
+                var node = visit.node();
+                Integer number = written.get(node);
+                if (number != null) {
+                    VarInts.write(out, OP_REF);
+                    VarInts.write(out, number);
+                    continue;
+                }
+                if (node instanceof AbstractSyntaxTree<T> tree && !visit.expanded()) {
+                    todo.push(new Visit<>(tree, true));
+                    var children = tree.getChildren();
+                    for (int i = children.size() - 1; i >= 0; i--) {
+                        todo.push(new Visit<>(children.get(i), false));
+                    }
+                    continue;
+                }
+                if (node instanceof AbstractSyntaxToken<T> token) {
+                    VarInts.write(out, OP_TOKEN);
+                    tokens.writeToken(out, token.token());
+                } else if (node instanceof AbstractSyntaxTree<T> tree) {
+                    VarInts.write(out, OP_NODE + pda.productionId(tree));
+                    VarInts.write(out, tree.getState() + 1);
+                } else {
+                    throw new IllegalArgumentException("Can not write " + node);
+                }
+                written.put(node, written.size());
+            }
+        }
+        VarInts.write(out, OP_END);
+    }
+
+    @Override
+    public List<AbstractSyntax<T>> readValues(DataInput in) throws IOException {
+        List<AbstractSyntax<T>> nodes = new ArrayList<>();
+        ArrayList<AbstractSyntax<T>> values = new ArrayList<>();
+        for (int op = VarInts.read(in); op != OP_END; op = VarInts.read(in)) {
+            if (op == OP_TOKEN) {
+                var token = new AbstractSyntaxToken<>(tokens.readToken(in));
+                nodes.add(token);
+                values.add(token);
+                continue;
+            } else if (op == OP_REF) {
+                int number = VarInts.read(in);
+                if (number >= nodes.size()) {
+                    throw new StreamCorruptedException("Unknown node " + number);
+                }
+                values.add(nodes.get(number));
+                continue;
+            }
+            int p = op - OP_NODE;
+            if (p >= pda.getProductionCount()) {
+                throw new StreamCorruptedException("Unknown production " + p);
+            }
+            int nums = pda.productionLength(p);
+            if (nums > values.size()) {
+                throw new StreamCorruptedException("Not enough children");
+            }
+            var children = values.subList(values.size() - nums, values.size());
+            List<AbstractSyntax<T>> subSyntax = new ArrayList<>(children);
+            children.clear();
+            int state = VarInts.read(in) - 1;
+            AbstractSyntaxTree<T> node;
+            try {
+                node = pda.node(p, subSyntax, state, null);
+            } catch (IllegalArgumentException e) {
+                throw new StreamCorruptedException(e.getMessage());
+            }
+            nodes.add(node);
+            values.add(node);
+        }
+        return values;
+    }
+}
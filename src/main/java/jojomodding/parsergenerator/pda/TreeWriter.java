@@ -0,0 +1,159 @@
+package jojomodding.parsergenerator.pda;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import jojomodding.parsergenerator.parsed.AbstractSyntax;
+import jojomodding.parsergenerator.parsed.AbstractSyntaxToken;
+import jojomodding.parsergenerator.parsed.AbstractSyntaxTree;
+import jojomodding.parsergenerator.utils.VarInts;
+
+/**
+ * Writes trees parsed by a PDA in a compact binary format. The format consists of
+ * <ul>
+ *     <li>a header with a magic number, the format version and the {@link PushDownAutomaton#fingerprint() fingerprint} of the PDA,</li>
+ *     <li>a table of the distinct tokens, each written by a {@link TokenCodec},</li>
+ *     <li>the nodes in preorder.</li>
+ * </ul>
+ * A token leaf is written as 0 followed by the index of the token in the table.
+ * An inner node is written as its production number plus one, followed by its state plus one, the number of children,
+ * and the number of bytes taken by its children. The latter allows {@link TreeCursor} to skip subtrees.
+ * All numbers are written as {@link VarInts}.
+ * <p>
+ * Shared subtrees are written once for each occurrence, so reading them back results in a tree.
+ *
+ * @param <T> the type of tokens.
+ * @see TreeReader
+ * @see TreeCursor
+ */
+public final class TreeWriter<T> {
+
+    static final int MAGIC = 0x4C525452;
+    static final int VERSION = 1;
+    /**
+     * The tag of token leaves. The tag of inner nodes is TAG_NODE + p for production p.
+     */
+    static final int TAG_TOKEN = 0;
+    static final int TAG_NODE = 1;
+
+    private final PushDownAutomaton<T> pda;
+    private final TokenCodec<T> codec;
+
+    /**
+     * Creates a new writer.
+     *
+     * @param pda   the PDA by which the trees were parsed.
+     * @param codec how to write tokens.
+     */
+    public TreeWriter(PushDownAutomaton<T> pda, TokenCodec<T> codec) {
+        this.pda = pda;
+        this.codec = codec;
+    }
+
+    /**
+     * Writes a tree.
+     *
+     * @param tree the tree.
+     * @param out  where to write to.
+     * @throws IOException              if writing fails.
+     * @throws IllegalArgumentException if the tree was not parsed by the PDA.
+     */
+    public void write(AbstractSyntax<T> tree, OutputStream out) throws IOException {
+        List<AbstractSyntax<T>> preorder = new ArrayList<>();
+        ArrayDeque<AbstractSyntax<T>> todo = new ArrayDeque<>();
+        todo.push(tree);
+        while (!todo.isEmpty()) {
+            var node = todo.pop();
+            preorder.add(node);
+            if (node instanceof AbstractSyntaxTree<T> ast) {
+                var children = ast.getChildren();
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    todo.push(children.get(i));
+                }
+            }
+        }
+        Map<T, Integer> tokenIds = new HashMap<>();
+        List<T> tokens = new ArrayList<>();
+        int[] tags = new int[preorder.size()];
+        for (int i = 0; i < preorder.size(); i++) {
+            var node = preorder.get(i);
+            if (node instanceof AbstractSyntaxToken<T> token) {
+                tags[i] = TAG_TOKEN;
+                tokenIds.computeIfAbsent(token.token(), t -> {
+                    tokens.add(t);
+                    return tokens.size() - 1;
+                });
+            } else if (node instanceof AbstractSyntaxTree<T> ast) {
+                tags[i] = TAG_NODE + pda.productionId(ast);
+            } else {
+                throw new IllegalArgumentException("Can not write " + node);
+            }
+        }
+        // Backwards, the preorder is a postorder with the children from right to left. So the sizes of the children are on top of
+        // the stack when a node is reached, the leftmost first.
+        int[] payload = new int[preorder.size()];
+        int[] sizes = new int[16];
+        int sp = 0;
+        for (int i = preorder.size() - 1; i >= 0; i--) {
+            int size;
+            if (preorder.get(i) instanceof AbstractSyntaxTree<T> ast) {
+                int children = ast.getChildren().size();
+                for (int c = 0; c < children; c++) {
+                    payload[i] = Math.addExact(payload[i], sizes[--sp]);
+                }
+                size = VarInts.size(tags[i]) + VarInts.size(ast.getState() + 1) + VarInts.size(children) + VarInts.size(payload[i]);
+            } else {
+                size = VarInts.size(TAG_TOKEN) + VarInts.size(tokenIds.get(((AbstractSyntaxToken<T>) preorder.get(i)).token()));
+            }
+            if (sp == sizes.length) {
+                sizes = Arrays.copyOf(sizes, 2 * sp);
+            }
+            sizes[sp++] = Math.addExact(size, payload[i]);
+        }
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeLong(pda.fingerprint());
+        VarInts.write(data, tokens.size());
+        for (T token : tokens) {
+            codec.writeToken(data, token);
+        }
+        for (int i = 0; i < preorder.size(); i++) {
+            VarInts.write(data, tags[i]);
+            if (preorder.get(i) instanceof AbstractSyntaxTree<T> ast) {
+                VarInts.write(data, ast.getState() + 1);
+                VarInts.write(data, ast.getChildren().size());
+                VarInts.write(data, payload[i]);
+            } else {
+                VarInts.write(data, tokenIds.get(((AbstractSyntaxToken<T>) preorder.get(i)).token()));
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Writes a tree to a byte array.
+     *
+     * @param tree the tree.
+     * @return the encoded tree.
+     * @throws IllegalArgumentException if the tree was not parsed by the PDA.
+     */
+    public byte[] toByteArray(AbstractSyntax<T> tree) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            write(tree, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
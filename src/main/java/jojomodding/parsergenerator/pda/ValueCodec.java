@@ -0,0 +1,51 @@
+package jojomodding.parsergenerator.pda;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+import jojomodding.parsergenerator.parsed.AbstractSyntax;
+
+/**
+ * Writes and reads the value stack of a {@link ParserState} in its checkpoints, i.e. the partial trees built so far.
+ * <p>
+ * The codec sees the whole stack at once, so it decides how compact the values are. For example, a codec can write shared
+ * subtrees once, or write subtrees that a caller can find elsewhere, e.g. in the tree of a previous version of the document,
+ * as references to them. The {@link #trees(PushDownAutomaton, TokenCodec) default codec} writes each distinct node once.
+ *
+ * @param <T> the type of tokens.
+ * @see ParserState#checkpoint(java.io.OutputStream, TokenCodec, ValueCodec)
+ */
+public interface ValueCodec<T> {
+
+    /**
+     * Writes the value stack.
+     *
+     * @param out    where to write to.
+     * @param values the values, from the bottom of the stack to the top. The list must not be changed.
+     * @throws IOException if writing fails.
+     */
+    void writeValues(DataOutput out, List<AbstractSyntax<T>> values) throws IOException;
+
+    /**
+     * Reads a value stack written by {@link #writeValues(DataOutput, List)}.
+     *
+     * @param in where to read from.
+     * @return the values, from the bottom of the stack to the top.
+     * @throws IOException if reading fails, or the values are malformed.
+     */
+    List<AbstractSyntax<T>> readValues(DataInput in) throws IOException;
+
+    /**
+     * Gets a codec that writes the partial trees node by node in postorder, so that they are rebuilt bottom-up without recursion.
+     * Subtrees that are shared, e.g. by a {@link jojomodding.parsergenerator.parsed.TreeInterner}, are written once and are
+     * shared again when read.
+     *
+     * @param pda    the PDA by which the trees are parsed, which numbers their productions.
+     * @param tokens how to write tokens.
+     * @return the codec.
+     */
+    static <T> ValueCodec<T> trees(PushDownAutomaton<T> pda, TokenCodec<T> tokens) {
+        return new TreeValueCodec<>(pda, tokens);
+    }
+}
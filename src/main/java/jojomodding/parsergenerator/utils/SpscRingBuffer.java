@@ -0,0 +1,105 @@
+package jojomodding.parsergenerator.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded lock-free queue for exactly one producer thread and exactly one consumer thread.
+ * The producer only writes the tail and the consumer only writes the head, so no compare-and-set is needed.
+ * Each side caches the last value of the other side's index it has seen, so that it only has to read it when the queue looks full or empty.
+ *
+ * @param <E> the type of elements.
+ */
+public final class SpscRingBuffer<E> {
+
+    private final Object[] buffer;
+    private final int mask;
+    /**
+     * The index of the next element to be read. Only written by the consumer.
+     */
+    private final AtomicLong head = new AtomicLong();
+    /**
+     * The index of the next element to be written. Only written by the producer.
+     */
+    private final AtomicLong tail = new AtomicLong();
+    /**
+     * The last value of head seen by the producer.
+     */
+    private long producerHead = 0;
+    /**
+     * The last value of tail seen by the consumer.
+     */
+    private long consumerTail = 0;
+
+    /**
+     * Creates a new ring buffer.
+     *
+     * @param capacity the minimal capacity, which is rounded up to a power of two.
+     */
+    public SpscRingBuffer(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.buffer = new Object[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Adds an element, if there is space. May only be called by the producer.
+     *
+     * @param e the element, which must not be null.
+     * @return true if it was added, false if the queue is full.
+     */
+    public boolean offer(E e) {
+        long t = tail.get();
+        if (t - producerHead >= buffer.length) {
+            producerHead = head.get();
+            if (t - producerHead >= buffer.length) {
+                return false;
+            }
+        }
+        buffer[(int) (t & mask)] = e;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Removes an element, if there is one. May only be called by the consumer.
+     *
+     * @return the oldest element, or null if the queue is empty.
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long h = head.get();
+        if (h >= consumerTail) {
+            consumerTail = tail.get();
+            if (h >= consumerTail) {
+                return null;
+            }
+        }
+        int idx = (int) (h & mask);
+        E e = (E) buffer[idx];
+        buffer[idx] = null;
+        head.lazySet(h + 1);
+        return e;
+    }
+
+    /**
+     * Waits a bit after an unsuccessful offer or poll. First spins, then yields, then parks for increasingly long times.
+     *
+     * @param attempt how many attempts have failed so far.
+     */
+    public static void idle(int attempt) {
+        if (attempt < 128) {
+            Thread.onSpinWait();
+        } else if (attempt < 256) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(Math.min(1L << Math.min(attempt - 256, 20), 1_000_000L));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package jojomodding.parsergenerator.utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+
+/**
+ * Variable-length encoding of non-negative ints, using 7 bits per byte, least significant group first.
+ * The highest bit of each byte is set iff another byte follows. Small numbers thus take a single byte.
+ */
+public final class VarInts {
+
+    private VarInts() {
+    }
+
+    /**
+     * Writes a non-negative int.
+     *
+     * @param out   where to write to.
+     * @param value the value.
+     * @throws IOException              if writing fails.
+     * @throws IllegalArgumentException if the value is negative.
+     */
+    public static void write(DataOutput out, int value) throws IOException {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value " + value);
+        }
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Reads a non-negative int written by {@link #write(DataOutput, int)}.
+     *
+     * @param in where to read from.
+     * @return the value.
+     * @throws IOException if reading fails, or the input is not a valid encoding.
+     */
+    public static int read(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed variable-length int");
+    }
+
+    /**
+     * Reads a non-negative int written by {@link #write(DataOutput, int)} at an absolute position of a buffer.
+     * Use {@link #size(int)} to find where the next value starts.
+     *
+     * @param buffer   the buffer.
+     * @param position the position of the first byte.
+     * @return the value.
+     * @throws StreamCorruptedException if the buffer does not contain a valid encoding at that position.
+     */
+    public static int read(ByteBuffer buffer, int position) throws StreamCorruptedException {
+        int value = 0;
+        for (int shift = 0; shift < 32 && position < buffer.limit(); shift += 7) {
+            int b = buffer.get(position++);
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed variable-length int");
+    }
+
+    /**
+     * Computes the number of bytes needed to write a value.
+     *
+     * @param value the non-negative value.
+     * @return the length of its encoding.
+     */
+    public static int size(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
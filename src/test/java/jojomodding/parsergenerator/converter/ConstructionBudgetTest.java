@@ -0,0 +1,81 @@
+package jojomodding.parsergenerator.converter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import jojomodding.parsergenerator.Main;
+import jojomodding.parsergenerator.pda.PushDownAutomaton;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the budget of a parser generator applies to {@link ParserGenerator#build()} and to lazily built states as documented.
+ */
+class ConstructionBudgetTest {
+
+    private static final List<Character> EXPRESSION = "0+0*(0+0)*0+(0)".chars().mapToObj(c -> (char) c).toList();
+
+    @Test
+    void cancelledBuild() {
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        var generator = new ParserGenerator<>(Main.TE(), 1, 1, new ConstructionBudget().cancelWhen(cancelled::get));
+        cancelled.set(true);
+        var e = assertThrows(ConstructionAbortedException.class, generator::build);
+        assertEquals(ConstructionAbortedException.Reason.CANCELLED, e.getReason());
+    }
+
+    @Test
+    void buildAfterBuildLazyCanStillBeCancelled() {
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        var generator = new ParserGenerator<>(Main.TE(), 1, 1, new ConstructionBudget().cancelWhen(cancelled::get));
+        var lazy = generator.buildLazy();
+        cancelled.set(true);
+        // runs of the lazy PDA are not cancelled
+        assertEquals(new ParserGenerator<>(Main.TE(), 1, 1).build().run(EXPRESSION), lazy.run(EXPRESSION));
+        var e = assertThrows(ConstructionAbortedException.class, generator::build);
+        assertEquals(ConstructionAbortedException.Reason.CANCELLED, e.getReason());
+    }
+
+    @Test
+    void lazyRunsKeepTheInterrupt() {
+        var lazy = new ParserGenerator<>(Main.TE(), 1, 1).buildLazy();
+        Thread.currentThread().interrupt();
+        try {
+            lazy.run(EXPRESSION);
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    void lazyStatesCountTowardsTheLimit() {
+        var lazy = new ParserGenerator<>(Main.TE(), 1, 1, new ConstructionBudget().maxStates(5)).buildLazy();
+        var e = assertThrows(ConstructionAbortedException.class, () -> lazy.run(EXPRESSION));
+        assertEquals(ConstructionAbortedException.Reason.STATES, e.getReason());
+        assertTrue(e.getStatistics().states() > 5);
+    }
+
+    @Test
+    void lazyPdasOfOneGeneratorInParallel() throws Exception {
+        var generator = new ParserGenerator<>(Main.TE(), 1, 1);
+        var expected = generator.build().run(EXPRESSION);
+        List<PushDownAutomaton<Character>> pdas = List.of(generator.buildLazy(), generator.buildLazy(), generator.buildLazy());
+        ExecutorService executor = Executors.newFixedThreadPool(pdas.size());
+        try {
+            List<Callable<Object>> runs = pdas.stream().map(pda -> (Callable<Object>) () -> pda.run(EXPRESSION)).toList();
+            for (Future<Object> result : executor.invokeAll(runs)) {
+                assertEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(expected, generator.build().run(EXPRESSION));
+    }
+}
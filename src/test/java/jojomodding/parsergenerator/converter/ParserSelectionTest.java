@@ -0,0 +1,45 @@
+package jojomodding.parsergenerator.converter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import jojomodding.parsergenerator.Main;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that conflicts are reported by the exceptions of {@link ParserGenerator#build()} and the attempts of
+ * {@link ParserGenerator#selectCheapest(jojomodding.parsergenerator.grammar.Grammar, int)}.
+ */
+class ParserSelectionTest {
+
+    @Test
+    void conflictInException() {
+        var e = assertThrows(IllegalArgumentException.class, () -> new ParserGenerator<>(Main.LR2(), 1, 1).build());
+        assertTrue(e.getMessage().startsWith("Grammar is not LR(1)!"), e.getMessage());
+        assertTrue(e.getMessage().contains("-Conflict in "), e.getMessage());
+    }
+
+    @Test
+    void rejectedAttempts() {
+        var selection = ParserGenerator.selectCheapest(Main.notLALR(), 2);
+        List<ParserSelection.Attempt> attempts = selection.attempts();
+        assertEquals("LR(1)", selection.selected().kind());
+        assertTrue(attempts.size() > 1);
+        for (var attempt : attempts.subList(0, attempts.size() - 1)) {
+            assertFalse(attempt.succeeded());
+            assertTrue(attempt.conflicts().stream().allMatch(c -> c.contains("-Conflict in ")), attempt::toString);
+        }
+        assertEquals(selection.pda().fingerprint(), new ParserGenerator<>(Main.notLALR(), 1, 1).build().fingerprint());
+    }
+
+    @Test
+    void rebuildForgetsOldConflicts() {
+        var generator = new ParserGenerator<>(Main.LR2(), 1, 1);
+        var first = assertThrows(IllegalArgumentException.class, generator::build);
+        var second = assertThrows(IllegalArgumentException.class, generator::build);
+        assertEquals(first.getMessage(), second.getMessage());
+    }
+}
@@ -0,0 +1,122 @@
+package jojomodding.parsergenerator.converter;
+
+import static jojomodding.parsergenerator.grammar.ConcatenatingFormatter.concatenating;
+import static jojomodding.parsergenerator.grammar.NonTerminal.n;
+import static jojomodding.parsergenerator.grammar.Terminal.t;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import jojomodding.parsergenerator.Main;
+import jojomodding.parsergenerator.grammar.Grammar;
+import jojomodding.parsergenerator.grammar.Precedence.Associativity;
+import jojomodding.parsergenerator.grammar.ProductionRule;
+import jojomodding.parsergenerator.pda.PushDownAutomaton;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that declared precedences resolve the conflicts of ambiguous grammars like yacc does. The trees are compared by their
+ * rendering, which puts each binary operation in parentheses.
+ */
+class PrecedenceTest {
+
+    private static List<Character> chars(String word) {
+        return word.chars().mapToObj(c -> (char) c).toList();
+    }
+
+    private static String parse(PushDownAutomaton<Character> pda, String word) {
+        return pda.run(chars(word)).toString();
+    }
+
+    private static ProductionRule<Character> binary(char operator) {
+        return new ProductionRule<>(concatenating((x, y) -> "(" + y.get(0) + operator + y.get(2) + ")"), n("E"), t(operator), n("E"));
+    }
+
+    /**
+     * E -> E op E | 0 for each of the operators, with the operators declared in the given order.
+     */
+    private static Grammar<Character> operators(Associativity associativity, char... operators) {
+        Grammar<Character> grammar = new Grammar<>(List.of("E"), "E");
+        for (char operator : operators) {
+            grammar.addProduction("E", binary(operator));
+            grammar.declarePrecedence(associativity, operator);
+        }
+        grammar.addProduction("E", new ProductionRule<>(concatenating((x, y) -> "0"), t('0')));
+        return grammar;
+    }
+
+    private static void expression(StringBuilder sb, Random random, int depth) {
+        for (int i = random.nextInt(4); i >= 0; i--) {
+            if (depth > 0 && random.nextInt(3) == 0) {
+                sb.append('(');
+                expression(sb, random, depth - 1);
+                sb.append(')');
+            } else {
+                sb.append('0');
+            }
+            if (i > 0) {
+                sb.append(random.nextBoolean() ? '+' : '*');
+            }
+        }
+    }
+
+    @Test
+    void flatExpressionsGiveTheSameTrees() {
+        for (int k = 0; k <= 1; k++) {
+            var layered = new ParserGenerator<>(Main.TE(), 1, k).build();
+            var flat = new ParserGenerator<>(Main.TEflat(), 1, k).build();
+            assertTrue(flat.getStateCount() < layered.getStateCount());
+            Random random = new Random(50);
+            for (int i = 0; i < 200; i++) {
+                StringBuilder sb = new StringBuilder();
+                expression(sb, random, 4);
+                assertEquals(parse(layered, sb.toString()), parse(flat, sb.toString()), sb::toString);
+            }
+            assertThrows(IllegalArgumentException.class, () -> flat.run(chars("0+*0")));
+            assertThrows(IllegalArgumentException.class, () -> flat.run(chars("(0+0")));
+        }
+    }
+
+    @Test
+    void associativity() {
+        assertEquals("((0-0)-0)", parse(new ParserGenerator<>(operators(Associativity.LEFT, '-'), 1, 1).build(), "0-0-0"));
+        assertEquals("(0^(0^0))", parse(new ParserGenerator<>(operators(Associativity.RIGHT, '^'), 1, 1).build(), "0^0^0"));
+        var nonAssociative = new ParserGenerator<>(operators(Associativity.NONASSOC, '='), 1, 1).build();
+        assertEquals("(0=0)", parse(nonAssociative, "0=0"));
+        assertThrows(IllegalArgumentException.class, () -> nonAssociative.run(chars("0=0=0")));
+    }
+
+    @Test
+    void laterDeclarationsBindTighter() {
+        var pda = new ParserGenerator<>(operators(Associativity.LEFT, '=', '-', '^'), 1, 1).build();
+        assertEquals("((0=(0-(0^0)))=0)", parse(pda, "0=0-0^0=0"));
+        assertEquals("((0^0)-(0^0))", parse(pda, "0^0-0^0"));
+    }
+
+    @Test
+    void precedenceOfARule() {
+        Grammar<Character> grammar = operators(Associativity.LEFT, '-');
+        ProductionRule<Character> negation = new ProductionRule<>(concatenating((x, y) -> "(-" + y.get(1) + ")"), t('-'), n("E"));
+        grammar.addProduction("E", negation);
+        grammar.addProduction("E", binary('^'));
+        grammar.declarePrecedence(Associativity.RIGHT, '^');
+        // without its own precedence, the negation binds as weakly as the subtraction
+        assertEquals("(-(0^0))", parse(new ParserGenerator<>(grammar, 1, 1).build(), "-0^0"));
+        grammar.declarePrecedence(Associativity.RIGHT, '~');
+        grammar.setPrecedence(n("E"), negation, '~');
+        assertEquals("((-0)^0)", parse(new ParserGenerator<>(grammar, 1, 1).build(), "-0^0"));
+        assertEquals("((-0)-0)", parse(new ParserGenerator<>(grammar, 1, 1).build(), "-0-0"));
+        assertThrows(IllegalArgumentException.class, () -> grammar.setPrecedence(n("E"), negation, '!'));
+        assertThrows(IllegalArgumentException.class, () -> grammar.declarePrecedence(Associativity.LEFT, '-'));
+    }
+
+    @Test
+    void undeclaredOperatorsConflict() {
+        Grammar<Character> grammar = operators(Associativity.LEFT, '-');
+        grammar.addProduction("E", binary('+'));
+        var e = assertThrows(IllegalArgumentException.class, () -> new ParserGenerator<>(grammar, 1, 1).build());
+        assertTrue(e.getMessage().contains("Shift-Reduce-Conflict"), e.getMessage());
+    }
+}
@@ -0,0 +1,113 @@
+package jojomodding.parsergenerator.converter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import jojomodding.parsergenerator.Main;
+import jojomodding.parsergenerator.grammar.CompiledGrammar;
+import jojomodding.parsergenerator.grammar.Grammar;
+import jojomodding.parsergenerator.grammar.GrammarGenerator;
+import jojomodding.parsergenerator.grammar.NonTerminal;
+import jojomodding.parsergenerator.grammar.ProductionRule;
+import jojomodding.parsergenerator.grammar.Terminal;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that {@link ParserGenerator#regenerate(Grammar)} builds the same PDAs as a parser generator created from scratch.
+ */
+class RegenerateTest {
+
+    /**
+     * Builds a PDA and describes it by its fingerprint, or by the number of conflicts that make the grammar inadequate.
+     * The conflict named in the message depends on the order of the states, so it is left out.
+     */
+    private static String build(Supplier<ParserGenerator<Character>> generator) {
+        try {
+            return Long.toHexString(generator.get().build().fingerprint());
+        } catch (IllegalArgumentException e) {
+            return e.getMessage().replaceFirst(", e\\.g\\. .*", "");
+        }
+    }
+
+    private static Grammar<Character> without(Grammar<Character> grammar, int skipped) {
+        CompiledGrammar<Character> compiled = grammar.compile();
+        Grammar<Character> result = new Grammar<>(compiled.getNonTerminals(), compiled.getInitial());
+        for (int p = 0; p < compiled.getProductionCount(); p++) {
+            if (p != skipped) {
+                result.addProduction(compiled.getLhs(p), compiled.getRule(p));
+            }
+        }
+        return result;
+    }
+
+    private static void checkRegenerate(Grammar<Character> grammar, Grammar<Character> edited, int lrn, int lak) {
+        var generator = new ParserGenerator<>(grammar, lrn, lak);
+        String before = build(() -> generator);
+        assertEquals(build(() -> new ParserGenerator<>(edited, lrn, lak)), build(() -> generator.regenerate(edited)),
+                () -> "regenerated LR(" + lrn + ") parser for " + edited);
+        assertEquals(before, build(() -> generator), "the original generator must not change");
+    }
+
+    @Test
+    void addedRuleToExpressions() {
+        Grammar<Character> edited = new Grammar<>(Main.TE());
+        edited.addProduction(new NonTerminal<>("F"), new ProductionRule<>(List.of(new Terminal<>('-'), new NonTerminal<>("F"))));
+        checkRegenerate(Main.TE(), edited, 1, 1);
+        checkRegenerate(Main.TE(), edited, 1, 0);
+    }
+
+    @Test
+    void removedRuleFromExpressions() {
+        for (int p = 0; p < Main.TE().compile().getProductionCount(); p++) {
+            checkRegenerate(Main.TE(), without(Main.TE(), p), 1, 1);
+        }
+    }
+
+    @Test
+    void tablesOnlyOnRequest() {
+        PrintStream out = System.out;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        List<String> tables = new ArrayList<>();
+        System.setOut(new PrintStream(printed));
+        try {
+            var generator = new ParserGenerator<>(Main.TE(), 1, 1);
+            generator.build();
+            generator.regenerate(Main.TE()).build();
+            generator.build(tables::add);
+        } finally {
+            System.setOut(out);
+        }
+        assertEquals(0, printed.size());
+        assertEquals("Grammar is LR(1)!", tables.get(tables.size() - 1));
+        assertTrue(tables.contains("Action table:"));
+    }
+
+    @Test
+    void randomEdits() {
+        for (int k = 1; k <= 2; k++) {
+            for (long seed = 0; seed < 25; seed++) {
+                Random random = new Random(seed);
+                Grammar<Character> grammar = new GrammarGenerator().nonTerminals(6).rules(14).terminals(4).maxLength(3).nullable(0.2)
+                        .generate(random);
+                Grammar<Character> edited;
+                if (random.nextBoolean()) {
+                    List<NonTerminal<Character>> nonTerminals = new ArrayList<>(grammar.compile().getNonTerminals());
+                    nonTerminals.sort(Comparator.comparing(NonTerminal::name));
+                    edited = new Grammar<>(grammar);
+                    edited.addProduction(nonTerminals.get(random.nextInt(nonTerminals.size())), new ProductionRule<>(List.of(
+                            new Terminal<>((char) ('x' + random.nextInt(3))), nonTerminals.get(random.nextInt(nonTerminals.size())))));
+                } else {
+                    edited = without(grammar, random.nextInt(grammar.compile().getProductionCount()));
+                }
+                checkRegenerate(grammar, edited, k, k);
+            }
+        }
+    }
+}
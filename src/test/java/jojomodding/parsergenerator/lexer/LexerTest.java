@@ -0,0 +1,121 @@
+package jojomodding.parsergenerator.lexer;
+
+import static jojomodding.parsergenerator.lexer.TokenDefinition.literal;
+import static jojomodding.parsergenerator.lexer.TokenDefinition.skip;
+import static jojomodding.parsergenerator.lexer.TokenDefinition.token;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a {@link Lexer} splits inputs into the longest tokens, preferring the first definition, like a lexer that tries every
+ * definition as a {@link Pattern} would.
+ */
+class LexerTest {
+
+    private static final List<TokenDefinition<String>> DEFINITIONS = List.of(
+            literal("if", "if"),
+            token("identifier", "[a-z_]\\w*"),
+            token("float", "\\d+\\.\\d*"),
+            token("integer", "\\d+"),
+            token("string", "\"[^\"]*\""),
+            literal("<=", "<="),
+            literal("<", "<"),
+            literal("==", "=="),
+            literal("=", "="),
+            skip("\\s+|#[^\\n]*"));
+
+    /**
+     * Splits an input by trying all definitions at each position, with all possible ends.
+     *
+     * @return the tokens, and the exception if the input does not match until its end.
+     */
+    private static List<Object> reference(List<TokenDefinition<String>> definitions, String input) {
+        List<Pattern> patterns = definitions.stream().map(d -> Pattern.compile(d.pattern())).toList();
+        List<Object> tokens = new ArrayList<>();
+        int position = 0;
+        while (position < input.length()) {
+            int end = -1;
+            int definition = -1;
+            for (int i = 0; i < patterns.size(); i++) {
+                var matcher = patterns.get(i).matcher(input);
+                for (int e = input.length(); e > Math.max(end, position); e--) {
+                    if (matcher.region(position, e).matches()) {
+                        end = e;
+                        definition = i;
+                        break;
+                    }
+                }
+            }
+            if (end < 0) {
+                tokens.add(IllegalArgumentException.class);
+                return tokens;
+            }
+            if (!definitions.get(definition).isSkipped()) {
+                tokens.add(new Token<>(definitions.get(definition).kind(), position, end));
+            }
+            position = end;
+        }
+        return tokens;
+    }
+
+    private static List<Object> tokenize(Lexer<String> lexer, String input) {
+        List<Object> tokens = new ArrayList<>();
+        try {
+            lexer.tokenize(input).forEachRemaining(tokens::add);
+        } catch (IllegalArgumentException e) {
+            tokens.add(e.getClass());
+        }
+        return tokens;
+    }
+
+    @Test
+    void longestMatchFirstDefinition() {
+        Lexer<String> lexer = new LexerGenerator<>(DEFINITIONS).build();
+        String input = "if iff <= 12.5 < 3 # comment\n\"a b\"==x";
+        List<Token<String>> tokens = new ArrayList<>();
+        lexer.tokenize(input).forEachRemaining(tokens::add);
+        assertEquals(List.of("if", "identifier", "<=", "float", "<", "integer", "string", "==", "identifier"),
+                tokens.stream().map(Token::kind).toList());
+        assertEquals(List.of("if", "iff", "<=", "12.5", "<", "3", "\"a b\"", "==", "x"),
+                tokens.stream().map(t -> t.text(CharInput.of(input))).toList());
+    }
+
+    @Test
+    void randomInputs() {
+        Lexer<String> lexer = new LexerGenerator<>(DEFINITIONS).build();
+        String alphabet = "if_x19.<=\" #\n?";
+        Random random = new Random(27);
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder input = new StringBuilder();
+            for (int n = random.nextInt(20); n > 0; n--) {
+                input.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            assertEquals(reference(DEFINITIONS, input.toString()), tokenize(lexer, input.toString()), () -> "lexing '" + input + "'");
+        }
+    }
+
+    @Test
+    void minimalAutomaton() {
+        // the minimal DFA for (a|b)*abb has four states, however the language is written
+        for (String pattern : List.of("(a|b)*abb", "(a*b*)*abb", "(b|a)*a(b|b)b|(a|b)*abb")) {
+            Lexer<String> lexer = new LexerGenerator<>(token("x", pattern)).build();
+            assertEquals(4, lexer.stateCount(), pattern);
+        }
+        // equivalent definitions of one kind do not add states
+        assertEquals(new LexerGenerator<>(token("n", "\\d+")).build().stateCount(),
+                new LexerGenerator<>(token("n", "\\d+"), token("n", "[0-9][0-9]*")).build().stateCount());
+    }
+
+    @Test
+    void malformedDefinitions() {
+        assertThrows(IllegalArgumentException.class, () -> new LexerGenerator<>(token("x", "a*")).build());
+        assertThrows(IllegalArgumentException.class, () -> new LexerGenerator<>(token("x", "(a")).build());
+        assertThrows(IllegalArgumentException.class, () -> new LexerGenerator<>(token("x", "[a")).build());
+    }
+}
@@ -0,0 +1,81 @@
+package jojomodding.parsergenerator.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import jojomodding.parsergenerator.Main;
+import jojomodding.parsergenerator.converter.ParserGenerator;
+import jojomodding.parsergenerator.pda.ParserState;
+import jojomodding.parsergenerator.pda.PushDownAutomaton;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that runs are reported to metrics when they start and when they end.
+ */
+class JfrParseMetricsTest {
+
+    @Test
+    void beginsWithTheRun() {
+        List<String> calls = new ArrayList<>();
+        ParseMetrics metrics = new ParseMetrics() {
+            @Override
+            public void record(ParseStatistics statistics) {
+                calls.add("record");
+            }
+
+            @Override
+            public Run begin() {
+                calls.add("begin");
+                return statistics -> calls.add("end " + statistics.inputLength());
+            }
+        };
+        PushDownAutomaton<Character> pda = new ParserGenerator<>(Main.TE(), 1, 1).build()
+                .withMetrics(metrics.andThen(statistics -> calls.add("other " + statistics.inputLength())));
+        ParserState<Character> state = pda.start();
+        assertEquals(List.of("begin"), calls);
+        "0+0".chars().forEach(c -> state.feed((char) c));
+        state.finish();
+        assertEquals(List.of("begin", "end 3", "other 3"), calls);
+    }
+
+    @Test
+    void slowParseEventSpansTheRun() throws Exception {
+        PushDownAutomaton<Character> pda = new ParserGenerator<>(Main.TE(), 1, 1).build().withMetrics(new JfrParseMetrics(0));
+        Path file = Files.createTempFile("slow-parse", ".jfr");
+        Instant before;
+        try (Recording recording = new Recording()) {
+            recording.enable(SlowParseEvent.class);
+            recording.start();
+            before = Instant.now();
+            ParserState<Character> state = pda.start();
+            state.feed('0');
+            Thread.sleep(50);
+            state.feed('+');
+            state.feed('0');
+            state.finish();
+            recording.stop();
+            recording.dump(file);
+        }
+        try {
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            assertEquals(1, events.size());
+            RecordedEvent event = events.get(0);
+            assertTrue(event.getDuration().compareTo(Duration.ofMillis(50)) >= 0, () -> "duration " + event.getDuration());
+            assertFalse(event.getStartTime().isBefore(before.minusMillis(1)), () -> "started at " + event.getStartTime());
+            assertEquals(3, event.getLong("inputLength"));
+            assertTrue(event.getBoolean("accepted"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package jojomodding.parsergenerator.pda;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import jojomodding.parsergenerator.Main;
+import jojomodding.parsergenerator.converter.ParserGenerator;
+import jojomodding.parsergenerator.grammar.Grammar;
+import jojomodding.parsergenerator.parsed.AbstractSyntax;
+import jojomodding.parsergenerator.parsed.AbstractSyntaxTree;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that reparsing a document after edits gives the same tree as parsing the edited document from scratch.
+ */
+class IncrementalParserTest {
+
+    private static List<Character> chars(String word) {
+        return word.chars().mapToObj(c -> (char) c).toList();
+    }
+
+    /**
+     * Runs a parser, and gets the tree, or the class of the exception it threw.
+     */
+    private static Object outcome(Callable<AbstractSyntax<Character>> run) {
+        try {
+            return run.call();
+        } catch (Exception e) {
+            return e.getClass();
+        }
+    }
+
+    private static List<Character> randomWord(Random random, List<String> snippets, int length) {
+        List<Character> word = new ArrayList<>();
+        for (int i = 0; i < length; i++) {
+            word.addAll(chars(snippets.get(random.nextInt(snippets.size()))));
+        }
+        return word;
+    }
+
+    /**
+     * Applies random edits to a document, each made of one to three changes that insert some snippets, and compares each reparse
+     * with a full parse. Edits that make the document invalid are checked and then dropped.
+     */
+    private static void checkRandomEdits(Grammar<Character> grammar, int k, String start, List<String> snippets, long seed) {
+        var pda = new ParserGenerator<>(grammar, k, k).build();
+        IncrementalParser<Character> parser = new IncrementalParser<>(pda);
+        ParsedDocument<Character> document = parser.parse(chars(start));
+        Random random = new Random(seed);
+        int valid = 0;
+        for (int i = 0; i < 1000; i++) {
+            List<Edit<Character>> edits = new ArrayList<>();
+            List<Character> expected = new ArrayList<>(document.tokens());
+            for (int n = 1 + random.nextInt(3); n > 0; n--) {
+                int offset = random.nextInt(expected.size() + 1);
+                int removed = random.nextInt(Math.min(3, expected.size() - offset) + 1);
+                List<Character> inserted = randomWord(random, snippets, random.nextInt(3));
+                edits.add(new Edit<>(offset, removed, inserted));
+                expected.subList(offset, offset + removed).clear();
+                expected.addAll(offset, inserted);
+            }
+            ParsedDocument<Character> previous = document;
+            Object reparsed = outcome(() -> parser.reparse(previous, edits).tree());
+            assertEquals(outcome(() -> pda.run(expected)), reparsed, () -> "after " + edits + " of " + previous.tokens());
+            if (reparsed instanceof AbstractSyntax<?>) {
+                document = parser.reparse(previous, edits);
+                assertEquals(expected, document.tokens());
+                valid++;
+            }
+        }
+        assertTrue(valid > 50, "too few edits kept the document valid");
+    }
+
+    @Test
+    void randomEditsOfExpressions() {
+        checkRandomEdits(Main.TE(), 1, "0+0*(0+0)", List.of("0", "+0", "*0", "(0)", "+(0", ")", "0+"), 32);
+    }
+
+    @Test
+    void randomEditsWithTwoTokensOfLookahead() {
+        checkRandomEdits(Main.LR2(), 2, "abaabcab", List.of("a", "b", "c", "ab", "abc"), 32);
+    }
+
+    @Test
+    void unchangedSubtreesAreShared() {
+        var pda = new ParserGenerator<>(Main.TE(), 1, 1).build();
+        IncrementalParser<Character> parser = new IncrementalParser<>(pda);
+        ParsedDocument<Character> document = parser.parse(chars("(0+0)*(0+0)+0"));
+        ParsedDocument<Character> edited = parser.reparse(document, List.of(new Edit<>(12, 1, chars("(0*0)"))));
+        assertEquals(pda.run(chars("(0+0)*(0+0)+(0*0)")), edited.tree());
+        // E -> E + T, whose left operand (0+0)*(0+0) is not affected by the edit
+        var before = (AbstractSyntaxTree<Character>) document.tree();
+        var after = (AbstractSyntaxTree<Character>) edited.tree();
+        assertSame(before.getChildren().get(0), after.getChildren().get(0));
+        assertSame(document, parser.reparse(document, List.of()));
+    }
+
+    @Test
+    void editsOutOfBounds() {
+        IncrementalParser<Character> parser = new IncrementalParser<>(new ParserGenerator<>(Main.TE(), 1, 1).build());
+        ParsedDocument<Character> document = parser.parse(chars("0+0"));
+        assertThrows(IllegalArgumentException.class, () -> parser.reparse(document, List.of(new Edit<>(2, 2, List.of()))));
+        assertThrows(IllegalArgumentException.class, () -> parser.reparse(document, List.of(new Edit<>(4, 0, chars("+0")))));
+    }
+}
@@ -0,0 +1,130 @@
+package jojomodding.parsergenerator.pda;
+
+import static jojomodding.parsergenerator.grammar.NonTerminal.n;
+import static jojomodding.parsergenerator.grammar.ProductionRule.of;
+import static jojomodding.parsergenerator.grammar.Terminal.t;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+import jojomodding.parsergenerator.converter.ParserGenerator;
+import jojomodding.parsergenerator.grammar.Grammar;
+import jojomodding.parsergenerator.grammar.NonTerminal;
+import jojomodding.parsergenerator.metrics.ParseMetricsCollector;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a {@link ParallelParser} gives the same trees and errors as running the PDA sequentially, however the input is split.
+ */
+class ParallelParserTest {
+
+    private static final NonTerminal<Character> LIST = n("L");
+
+    /**
+     * A list of statements s E ; with expressions E -> x | ( E ) | E + x.
+     *
+     * @param rightRecursive whether the list is L -> S L | ε or L -> L S | ε.
+     */
+    private static Grammar<Character> statements(boolean rightRecursive) {
+        Grammar<Character> grammar = new Grammar<>(List.of("L", "S", "E"), "L");
+        grammar.addProduction("L", of());
+        grammar.addProduction("L", rightRecursive ? of(n("S"), n("L")) : of(n("L"), n("S")));
+        grammar.addProduction("S", of(t('s'), n("E"), t(';')));
+        grammar.addProduction("E", of(t('x')));
+        grammar.addProduction("E", of(t('('), n("E"), t(')')));
+        grammar.addProduction("E", of(n("E"), t('+'), t('x')));
+        return grammar;
+    }
+
+    private static void expression(List<Character> tokens, Random random, int depth) {
+        if (depth > 0 && random.nextInt(3) == 0) {
+            tokens.add('(');
+            expression(tokens, random, depth - 1);
+            tokens.add(')');
+        } else {
+            tokens.add('x');
+        }
+        for (int i = random.nextInt(3); i > 0; i--) {
+            tokens.add('+');
+            tokens.add('x');
+        }
+    }
+
+    private static List<Character> program(Random random, int statements) {
+        List<Character> tokens = new ArrayList<>();
+        for (int i = 0; i < statements; i++) {
+            tokens.add('s');
+            expression(tokens, random, 4);
+            tokens.add(';');
+        }
+        return tokens;
+    }
+
+    private static void checkSameAsSequential(boolean rightRecursive, Predicate<Character> synchronizing) {
+        var pda = new ParserGenerator<>(statements(rightRecursive), 1, 1).build();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ParallelParser<Character> parallel = new ParallelParser<>(pda, LIST, synchronizing, pool, 8);
+            Random random = new Random(30);
+            for (int i = 0; i < 50; i++) {
+                List<Character> tokens = program(random, random.nextInt(100));
+                assertEquals(pda.run(tokens), parallel.run(tokens), () -> "parsing " + tokens);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void rightRecursiveList() {
+        checkSameAsSequential(true, c -> c == 's');
+    }
+
+    @Test
+    void leftRecursiveList() {
+        checkSameAsSequential(false, c -> c == 's');
+    }
+
+    @Test
+    void splitsInsideItems() {
+        // chunks starting with ( or + are no lists, so these inputs are parsed sequentially
+        checkSameAsSequential(true, c -> c == 's' || c == '(' || c == '+');
+        checkSameAsSequential(false, c -> c == '(');
+    }
+
+    @Test
+    void chunksAreParsedSeparately() {
+        var pda = new ParserGenerator<>(statements(true), 1, 1).build();
+        var metrics = new ParseMetricsCollector(pda.getProductionCount(), pda.getStateCount());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<Character> tokens = program(new Random(30), 200);
+            var parallel = new ParallelParser<>(pda.withMetrics(metrics), LIST, c -> c == 's', pool, 16);
+            assertEquals(pda.run(tokens), parallel.run(tokens));
+            assertTrue(metrics.parses() > 1, "the input was not split");
+            assertEquals(0, metrics.rejected());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void rejectedInput() {
+        var pda = new ParserGenerator<>(statements(true), 1, 1).build();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ParallelParser<Character> parallel = new ParallelParser<>(pda, LIST, c -> c == 's', pool, 8);
+            List<Character> tokens = program(new Random(30), 100);
+            tokens.set(tokens.size() / 2, ';');
+            assertThrows(IllegalArgumentException.class, () -> parallel.run(tokens));
+            assertThrows(IllegalArgumentException.class, () -> new ParallelParser<>(pda, LIST, c -> true, pool, 0));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
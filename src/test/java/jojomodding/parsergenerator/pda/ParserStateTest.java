@@ -0,0 +1,104 @@
+package jojomodding.parsergenerator.pda;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import jojomodding.parsergenerator.Main;
+import jojomodding.parsergenerator.converter.ParserGenerator;
+import jojomodding.parsergenerator.grammar.NonTerminal;
+import jojomodding.parsergenerator.parsed.AbstractSyntax;
+import jojomodding.parsergenerator.parsed.AbstractSyntaxTree;
+import jojomodding.parsergenerator.parsed.TreeInterner;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a {@link ParserState} can be checkpointed at any point and resumed with another PDA built from the same grammar.
+ */
+class ParserStateTest {
+
+    private static List<Character> chars(String word) {
+        return word.chars().mapToObj(c -> (char) c).toList();
+    }
+
+    /**
+     * Checkpoints a run after each prefix of a word, resumes it with another PDA, and checks that both runs give the same tree as
+     * parsing the word at once.
+     */
+    private static void checkRoundTrips(PushDownAutomaton<Character> pda, PushDownAutomaton<Character> other, String word) {
+        List<Character> tokens = chars(word);
+        AbstractSyntax<Character> expected = pda.run(tokens);
+        for (int cut = 0; cut <= tokens.size(); cut++) {
+            ParserState<Character> state = pda.start();
+            tokens.subList(0, cut).forEach(state::feed);
+            ParserState<Character> resumed = ParserState.resume(other, state.checkpoint(TokenCodec.characters()), TokenCodec.characters());
+            tokens.subList(cut, tokens.size()).forEach(resumed::feed);
+            tokens.subList(cut, tokens.size()).forEach(state::feed);
+            assertEquals(expected, resumed.finish(), "resumed after " + cut + " tokens");
+            assertEquals(expected, state.finish(), "continued after checkpoint at " + cut + " tokens");
+        }
+    }
+
+    @Test
+    void roundTripExpressions() {
+        var pda = new ParserGenerator<>(Main.TE(), 1, 1).build();
+        var other = new ParserGenerator<>(Main.TE(), 1, 1).build();
+        assertEquals(pda.fingerprint(), other.fingerprint());
+        checkRoundTrips(pda, other, "(0+0)*0+0*(0+(0*0))");
+    }
+
+    @Test
+    void roundTripWithPendingLookahead() {
+        var pda = new ParserGenerator<>(Main.LR2(), 2, 2).build();
+        var other = new ParserGenerator<>(Main.LR2(), 2, 2).build();
+        checkRoundTrips(pda, other, "abaabcab");
+    }
+
+    @Test
+    void roundTripSharedSubtrees() throws IOException {
+        var pda = new ParserGenerator<>(Main.TE(), 1, 1).build();
+        String word = "(0+0)*(0+0)+(0+0)*(0+0)+(0+0)*(0+0)+";
+        ParserState<Character> interned = pda.start(new TreeInterner<>());
+        ParserState<Character> plain = pda.start();
+        chars(word).forEach(interned::feed);
+        chars(word).forEach(plain::feed);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        interned.checkpoint(out, TokenCodec.characters());
+        // shared subtrees are only written once
+        assertTrue(out.size() < plain.checkpoint(TokenCodec.characters()).length);
+        ParserState<Character> resumed = ParserState.resume(pda, new ByteArrayInputStream(out.toByteArray()), TokenCodec.characters());
+        resumed.feed('0');
+        plain.feed('0');
+        assertEquals(plain.finish(), resumed.finish());
+    }
+
+    @Test
+    void roundTripOtherStartSymbol() {
+        NonTerminal<Character> factor = new NonTerminal<>("F");
+        var pda = new ParserGenerator<>(Main.TE(), List.of(new NonTerminal<>("E"), factor), 1, 1).build();
+        ParserState<Character> state = pda.start(factor, null);
+        chars("(0+").forEach(state::feed);
+        ParserState<Character> resumed = ParserState.resume(pda, state.checkpoint(TokenCodec.characters()), TokenCodec.characters());
+        chars("0)").forEach(resumed::feed);
+        AbstractSyntax<Character> tree = resumed.finish();
+        assertEquals(pda.run(factor, chars("(0+0)")), tree);
+        assertEquals(factor, ((AbstractSyntaxTree<Character>) tree).getElement());
+    }
+
+    @Test
+    void resumeRejectsOtherAutomaton() {
+        var pda = new ParserGenerator<>(Main.TE(), 1, 1).build();
+        var other = new ParserGenerator<>(Main.LR2(), 2, 2).build();
+        ParserState<Character> state = pda.start();
+        chars("(0+").forEach(state::feed);
+        byte[] checkpoint = state.checkpoint(TokenCodec.characters());
+        assertThrows(IllegalArgumentException.class, () -> ParserState.resume(other, checkpoint, TokenCodec.characters()));
+        byte[] truncated = Arrays.copyOf(checkpoint, checkpoint.length - 1);
+        assertThrows(IllegalArgumentException.class, () -> ParserState.resume(pda, truncated, TokenCodec.characters()));
+    }
+}
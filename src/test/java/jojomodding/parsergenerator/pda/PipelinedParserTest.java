@@ -0,0 +1,195 @@
+package jojomodding.parsergenerator.pda;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import jojomodding.parsergenerator.Main;
+import jojomodding.parsergenerator.converter.ParserGenerator;
+import jojomodding.parsergenerator.parsed.AbstractSyntax;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a {@link PipelinedParser} gives the same results as running the PDA directly, and that the reading thread stops
+ * whenever the run ends.
+ */
+class PipelinedParserTest {
+
+    private static final PushDownAutomaton<Character> PDA = new ParserGenerator<>(Main.TE(), 1, 1).build();
+
+    /**
+     * Runs each source on a new thread, and remembers the threads.
+     */
+    private static final class Threads implements Executor {
+
+        private final List<Thread> started = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            Thread thread = new Thread(command, "pipelined-parser-test");
+            thread.setDaemon(true);
+            started.add(thread);
+            thread.start();
+        }
+
+        private void assertStopped() throws InterruptedException {
+            for (Thread thread : started) {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+                assertFalse(thread.isAlive(), "the source is still read");
+            }
+        }
+    }
+
+    private static void expression(StringBuilder sb, Random random, int depth) {
+        int terms = 1 + random.nextInt(3);
+        for (int i = 0; i < terms; i++) {
+            if (i > 0) {
+                sb.append(random.nextBoolean() ? " + " : "*");
+            }
+            if (depth > 0 && random.nextInt(3) == 0) {
+                sb.append('(');
+                expression(sb, random, depth - 1);
+                sb.append(')');
+            } else {
+                sb.append(random.nextInt(1000));
+            }
+        }
+    }
+
+    /**
+     * Repeats "0+" forever.
+     */
+    private static Iterator<Character> endless() {
+        return new Iterator<>() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Character next() {
+                return i++ % 2 == 0 ? '0' : '+';
+            }
+        };
+    }
+
+    @Test
+    void sameAsSequential() throws InterruptedException {
+        Threads threads = new Threads();
+        PipelinedParser<Character> pipelined = new PipelinedParser<>(PDA, threads, 3, 2);
+        Random random = new Random(28);
+        for (int i = 0; i < 100; i++) {
+            StringBuilder sb = new StringBuilder();
+            expression(sb, random, 4);
+            List<Character> tokens = new ArrayList<>();
+            Main.TElexer().kinds(sb).forEachRemaining(tokens::add);
+            assertEquals(PDA.run(tokens), pipelined.run(Main.TElexer().kinds(sb)), sb::toString);
+        }
+        assertEquals(PDA.run(List.of('0')), new PipelinedParser<>(PDA).run(List.of('0').iterator()));
+        threads.assertStopped();
+    }
+
+    @Test
+    void rejectedInputStopsTheSource() throws InterruptedException {
+        Threads threads = new Threads();
+        PipelinedParser<Character> pipelined = new PipelinedParser<>(PDA, threads, 4, 2);
+        Iterator<Character> endless = endless();
+        Iterator<Character> source = new Iterator<>() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Character next() {
+                return i++ == 5 ? ')' : endless.next();
+            }
+        };
+        assertThrows(IllegalArgumentException.class, () -> pipelined.run(source));
+        threads.assertStopped();
+    }
+
+    @Test
+    void sourceFailureIsRethrown() throws InterruptedException {
+        Threads threads = new Threads();
+        PipelinedParser<Character> pipelined = new PipelinedParser<>(PDA, threads, 4, 2);
+        UnsupportedOperationException failure = new UnsupportedOperationException();
+        Iterator<Character> endless = endless();
+        Iterator<Character> source = new Iterator<>() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Character next() {
+                if (i++ == 20) {
+                    throw failure;
+                }
+                return endless.next();
+            }
+        };
+        assertSame(failure, assertThrows(UnsupportedOperationException.class, () -> pipelined.run(source)));
+        threads.assertStopped();
+    }
+
+    @Test
+    void interruptStopsTheSource() throws InterruptedException {
+        Threads threads = new Threads();
+        PipelinedParser<Character> pipelined = new PipelinedParser<>(PDA, threads, 4, 2);
+        CountDownLatch released = new CountDownLatch(1);
+        Iterator<Character> endless = endless();
+        Iterator<Character> source = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return true;
+            }
+
+            @Override
+            public Character next() {
+                return endless.next();
+            }
+        };
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(IllegalStateException.class, () -> pipelined.run(source));
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+            released.countDown();
+        }
+        threads.assertStopped();
+    }
+
+    @Test
+    void sourceOnTheParsingThread() {
+        PipelinedParser<Character> pipelined = new PipelinedParser<>(PDA, Runnable::run, 4, 2);
+        assertThrows(IllegalArgumentException.class, () -> pipelined.run(List.of('0').iterator()));
+    }
+
+    @Test
+    void invalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new PipelinedParser<>(PDA, Runnable::run, 0, 2));
+        assertThrows(IllegalArgumentException.class, () -> new PipelinedParser<>(PDA, Runnable::run, 4, 0));
+    }
+}
@@ -0,0 +1,72 @@
+package jojomodding.parsergenerator.pda;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import jojomodding.parsergenerator.Main;
+import jojomodding.parsergenerator.converter.ParserGenerator;
+import jojomodding.parsergenerator.grammar.NonTerminal;
+import jojomodding.parsergenerator.parsed.AbstractSyntax;
+import jojomodding.parsergenerator.parsed.AbstractSyntaxTree;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that every way of running a PDA with several start symbols parses the start symbol it is given.
+ */
+class StartSymbolTest {
+
+    private static final NonTerminal<Character> EXPRESSION = new NonTerminal<>("E");
+    private static final NonTerminal<Character> FACTOR = new NonTerminal<>("F");
+
+    private static List<Character> chars(String word) {
+        return word.chars().mapToObj(c -> (char) c).toList();
+    }
+
+    private static PushDownAutomaton<Character> pda() {
+        return new ParserGenerator<>(Main.TE(), List.of(EXPRESSION, FACTOR), 1, 1).build();
+    }
+
+    @Test
+    void runWithSpans() {
+        var pda = pda();
+        SpanTable spans = new SpanTable();
+        AbstractSyntax<Character> tree = pda.runWithSpans(FACTOR, chars("(0+0)").iterator(), spans);
+        assertEquals(pda.run(FACTOR, chars("(0+0)")), tree);
+        assertEquals(0, spans.start(tree));
+        assertEquals(5, spans.end(tree));
+        assertThrows(IllegalArgumentException.class, () -> pda.runWithSpans(FACTOR, chars("0+0").iterator(), new SpanTable()));
+        assertThrows(IllegalArgumentException.class, () -> pda.runWithSpans(new NonTerminal<>("T"), chars("0").iterator(), spans));
+    }
+
+    @Test
+    void eventReader() {
+        var pda = pda();
+        ParseEventReader<Character> reader = new ParseEventReader<>(pda, FACTOR, chars("(0+0)").iterator());
+        NonTerminal<Character> last = null;
+        while (reader.hasNext()) {
+            if (reader.next() == ParseEvent.REDUCE) {
+                last = reader.element();
+            }
+        }
+        assertEquals(FACTOR, last);
+        ParseEventReader<Character> rejecting = new ParseEventReader<>(pda, FACTOR, chars("0+0").iterator());
+        assertThrows(IllegalArgumentException.class, () -> {
+            while (rejecting.hasNext()) {
+                rejecting.next();
+            }
+        });
+    }
+
+    @Test
+    void incrementalParser() {
+        var pda = pda();
+        IncrementalParser<Character> parser = new IncrementalParser<>(pda, FACTOR);
+        ParsedDocument<Character> document = parser.parse(chars("((0+0)*(0+0))"));
+        assertEquals(FACTOR, ((AbstractSyntaxTree<Character>) document.tree()).getElement());
+        ParsedDocument<Character> edited = parser.reparse(document, List.of(new Edit<>(10, 1, chars("(0*0)"))));
+        assertEquals(chars("((0+0)*(0+(0*0)))"), edited.tokens());
+        assertEquals(pda.run(FACTOR, chars("((0+0)*(0+(0*0)))")), edited.tree());
+        assertThrows(IllegalArgumentException.class, () -> parser.reparse(edited, List.of(new Edit<>(0, 1, List.of()))));
+    }
+}
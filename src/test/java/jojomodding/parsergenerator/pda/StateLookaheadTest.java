@@ -0,0 +1,205 @@
+package jojomodding.parsergenerator.pda;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import jojomodding.parsergenerator.Main;
+import jojomodding.parsergenerator.converter.ParserGenerator;
+import jojomodding.parsergenerator.grammar.CompiledGrammar;
+import jojomodding.parsergenerator.grammar.Grammar;
+import jojomodding.parsergenerator.grammar.GrammarGenerator;
+import jojomodding.parsergenerator.grammar.NonTerminal;
+import jojomodding.parsergenerator.grammar.ProductionItem;
+import jojomodding.parsergenerator.grammar.SentenceGenerator;
+import jojomodding.parsergenerator.grammar.Terminal;
+import jojomodding.parsergenerator.parsed.AbstractSyntax;
+import jojomodding.parsergenerator.parsed.AbstractSyntaxToken;
+import jojomodding.parsergenerator.parsed.AbstractSyntaxTree;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that looking ahead only as far as each state needs gives the same results as an LR(k) parser with the full lookahead:
+ * The derivation tree for words of the language, and an {@link IllegalArgumentException} for all other words.
+ */
+class StateLookaheadTest {
+
+    /**
+     * Runs a parser, and gets the tree, or the class of the exception it threw.
+     */
+    private static Object outcome(Callable<AbstractSyntax<Character>> run) {
+        try {
+            return run.call();
+        } catch (Exception e) {
+            return e.getClass();
+        }
+    }
+
+    /**
+     * Decides whether a grammar generates a word, by computing which non-terminals derive which infixes until nothing changes.
+     */
+    private static boolean generates(CompiledGrammar<Character> grammar, List<Character> word) {
+        int n = word.size();
+        Map<NonTerminal<Character>, boolean[][]> derives = new HashMap<>();
+        for (var nt : grammar.getNonTerminals()) {
+            derives.put(nt, new boolean[n + 1][n + 1]);
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int p = 0; p < grammar.getProductionCount(); p++) {
+                boolean[][] lhs = derives.get(grammar.getLhs(p));
+                for (int from = 0; from <= n; from++) {
+                    // the positions up to which a prefix of the rule derives the input from the start position
+                    boolean[] reached = new boolean[n + 1];
+                    reached[from] = true;
+                    for (ProductionItem<Character> item : grammar.getRule(p).items()) {
+                        boolean[] next = new boolean[n + 1];
+                        for (int i = from; i <= n; i++) {
+                            if (!reached[i]) {
+                                continue;
+                            }
+                            if (item instanceof Terminal<Character> t) {
+                                if (i < n && word.get(i).equals(t.terminal())) {
+                                    next[i + 1] = true;
+                                }
+                            } else if (item instanceof NonTerminal<Character> nt) {
+                                for (int to = i; to <= n; to++) {
+                                    next[to] |= derives.get(nt)[i][to];
+                                }
+                            }
+                        }
+                        reached = next;
+                    }
+                    for (int to = from; to <= n; to++) {
+                        if (reached[to] && !lhs[from][to]) {
+                            lhs[from][to] = true;
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+        return derives.get(grammar.getInitial())[0][n];
+    }
+
+    /**
+     * Checks that a tree is a derivation of a word by the rules of a grammar, and returns the number of tokens it spans.
+     */
+    private static int checkDerivation(CompiledGrammar<Character> grammar, AbstractSyntax<Character> syntax, List<Character> word, int start) {
+        if (syntax instanceof AbstractSyntaxToken<Character> token) {
+            assertEquals(word.get(start), token.token());
+            return 1;
+        }
+        var tree = (AbstractSyntaxTree<Character>) syntax;
+        assertTrue(grammar.hasProductionRule(tree.getElement(), tree.getGenerated()), () -> "unknown rule in " + tree);
+        List<ProductionItem<Character>> items = tree.getGenerated().items();
+        assertEquals(items.size(), tree.getChildren().size());
+        int width = 0;
+        for (int i = 0; i < items.size(); i++) {
+            AbstractSyntax<Character> child = tree.getChildren().get(i);
+            if (items.get(i) instanceof Terminal<Character> t) {
+                assertEquals(t.terminal(), ((AbstractSyntaxToken<Character>) child).token());
+            } else {
+                assertEquals(items.get(i), ((AbstractSyntaxTree<Character>) child).getElement());
+            }
+            width += checkDerivation(grammar, child, word, start + width);
+        }
+        return width;
+    }
+
+    /**
+     * Parses a word eagerly, streaming and with a lazily built PDA, and checks that all of them either return the derivation tree
+     * of the word, or reject it if it is not in the language.
+     */
+    private static Object checkWord(CompiledGrammar<Character> grammar, PushDownAutomaton<Character> pda,
+            PushDownAutomaton<Character> lazy, List<Character> word) {
+        Object eager = outcome(() -> pda.run(word));
+        Object streaming = outcome(() -> {
+            ParserState<Character> state = pda.start();
+            word.forEach(state::feed);
+            return state.finish();
+        });
+        Object lazyResult = outcome(() -> lazy.run(word));
+        assertEquals(eager, streaming, () -> "streaming run on " + word);
+        assertEquals(eager, lazyResult, () -> "lazy run on " + word);
+        if (generates(grammar, word)) {
+            assertTrue(eager instanceof AbstractSyntax<?>, () -> word + " is in the language, but got " + eager);
+            assertEquals(word.size(), checkDerivation(grammar, (AbstractSyntax<Character>) eager, word, 0));
+        } else {
+            assertEquals(IllegalArgumentException.class, eager, () -> word + " is not in the language");
+        }
+        return eager;
+    }
+
+    @Test
+    void statesNeedLessThanTheFullLookahead() {
+        for (int k = 1; k <= 3; k++) {
+            var pda = new ParserGenerator<>(Main.TE(), k, k).build();
+            int less = 0;
+            for (int s = 0; s < pda.getStateCount(); s++) {
+                assertTrue(pda.lookahead(s) <= k);
+                if (pda.lookahead(s) < k) {
+                    less++;
+                }
+            }
+            assertTrue(less > 0, "some states of the expression grammar need less lookahead");
+        }
+    }
+
+    @Test
+    void randomGrammars() {
+        int checked = 0;
+        for (int k = 1; k <= 3; k++) {
+            for (long seed = 0; seed < 100; seed++) {
+                Grammar<Character> grammar = new GrammarGenerator().nonTerminals(4).rules(9).terminals(3).maxLength(3).nullable(0.2)
+                        .generate(new Random(seed));
+                PushDownAutomaton<Character> pda;
+                try {
+                    pda = new ParserGenerator<>(grammar, k, k).build();
+                } catch (IllegalArgumentException e) {
+                    continue;
+                }
+                var lazy = new ParserGenerator<>(grammar, k, k).buildLazy();
+                // the grammar is also LR(k+1), which must give the same trees and errors
+                var more = new ParserGenerator<>(grammar, k + 1, k + 1).build();
+                CompiledGrammar<Character> compiled = grammar.compile();
+                var sentences = new SentenceGenerator<>(grammar, 12);
+                Random random = new Random(seed);
+                for (int i = 0; i < 40; i++) {
+                    int n = random.nextInt(12);
+                    if (!sentences.hasSentence(n)) {
+                        continue;
+                    }
+                    List<Character> word = new ArrayList<>(sentences.generate(n, random));
+                    if (i % 2 == 1 && !word.isEmpty()) {
+                        word.set(random.nextInt(word.size()), (char) ('a' + random.nextInt(3)));
+                        if (random.nextBoolean()) {
+                            word.remove(random.nextInt(word.size()));
+                        }
+                    }
+                    Object result = checkWord(compiled, pda, lazy, word);
+                    assertEquals(result, outcome(() -> more.run(word)), () -> "more lookahead on " + word);
+                    checked++;
+                }
+            }
+        }
+        assertTrue(checked > 300, "too few grammars are adequate");
+    }
+
+    @Test
+    void needsFullLookahead() {
+        Grammar<Character> grammar = Main.LR2();
+        var pda = new ParserGenerator<>(grammar, 2, 2).build();
+        var lazy = new ParserGenerator<>(grammar, 2, 2).buildLazy();
+        CompiledGrammar<Character> compiled = grammar.compile();
+        for (String word : List.of("", "ab", "abaab", "abcab", "abaac", "aba", "abc", "ac", "abab", "abcc", "abaabcab")) {
+            checkWord(compiled, pda, lazy, word.chars().mapToObj(c -> (char) c).toList());
+        }
+    }
+}
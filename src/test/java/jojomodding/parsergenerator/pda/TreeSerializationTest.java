@@ -0,0 +1,159 @@
+package jojomodding.parsergenerator.pda;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import jojomodding.parsergenerator.Main;
+import jojomodding.parsergenerator.converter.ParserGenerator;
+import jojomodding.parsergenerator.parsed.AbstractSyntax;
+import jojomodding.parsergenerator.parsed.AbstractSyntaxToken;
+import jojomodding.parsergenerator.parsed.AbstractSyntaxTree;
+import jojomodding.parsergenerator.parsed.TreeInterner;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that trees written by a {@link TreeWriter} are read back unchanged by a {@link TreeReader}, and that a {@link TreeCursor}
+ * visits the same nodes as walking the tree.
+ */
+class TreeSerializationTest {
+
+    private static final PushDownAutomaton<Character> PDA = new ParserGenerator<>(Main.TE(), 1, 1).build();
+
+    private static List<Character> expression(Random random, int depth) {
+        StringBuilder sb = new StringBuilder();
+        expression(sb, random, depth);
+        return sb.chars().mapToObj(c -> (char) c).toList();
+    }
+
+    private static void expression(StringBuilder sb, Random random, int depth) {
+        for (int i = random.nextInt(3); i >= 0; i--) {
+            if (depth > 0 && random.nextInt(3) == 0) {
+                sb.append('(');
+                expression(sb, random, depth - 1);
+                sb.append(')');
+            } else {
+                sb.append('0');
+            }
+            if (i > 0) {
+                sb.append(random.nextBoolean() ? '+' : '*');
+            }
+        }
+    }
+
+    /**
+     * Describes a node and its descendants in preorder, including their states, which {@link AbstractSyntax#equals(Object)} ignores.
+     */
+    private static void describe(AbstractSyntax<Character> node, int depth, List<String> out) {
+        if (node instanceof AbstractSyntaxToken<Character> token) {
+            out.add(depth + " token " + token.token());
+        } else {
+            var tree = (AbstractSyntaxTree<Character>) node;
+            out.add(depth + " " + tree.getElement() + " -> " + tree.getGenerated() + " in " + tree.getState() + " with "
+                    + tree.getChildren().size());
+            for (var child : tree.getChildren()) {
+                describe(child, depth + 1, out);
+            }
+        }
+    }
+
+    /**
+     * Visits all nodes with a cursor in preorder, and checks that each node materializes to the subtree at the same position.
+     */
+    private static List<String> walk(TreeCursor<Character> cursor, List<AbstractSyntax<Character>> subtrees) {
+        List<String> out = new ArrayList<>();
+        while (true) {
+            if (cursor.isToken()) {
+                out.add(cursor.depth() + " token " + cursor.token());
+            } else {
+                out.add(cursor.depth() + " " + cursor.element() + " -> " + cursor.generated() + " in " + cursor.state() + " with "
+                        + cursor.childCount());
+            }
+            AbstractSyntax<Character> subtree = cursor.materialize();
+            assertEquals(subtrees.get(out.size() - 1), subtree);
+            if (cursor.firstChild()) {
+                continue;
+            }
+            while (!cursor.nextSibling()) {
+                if (!cursor.parent()) {
+                    return out;
+                }
+            }
+        }
+    }
+
+    private static void preorder(AbstractSyntax<Character> node, List<AbstractSyntax<Character>> out) {
+        out.add(node);
+        if (node instanceof AbstractSyntaxTree<Character> tree) {
+            tree.getChildren().forEach(child -> preorder(child, out));
+        }
+    }
+
+    @Test
+    void roundTrip() throws IOException {
+        TreeWriter<Character> writer = new TreeWriter<>(PDA, TokenCodec.characters());
+        TreeReader<Character> reader = new TreeReader<>(PDA, TokenCodec.characters());
+        Random random = new Random(35);
+        for (int i = 0; i < 100; i++) {
+            AbstractSyntax<Character> tree = PDA.run(expression(random, 4));
+            List<String> expected = new ArrayList<>();
+            describe(tree, 0, expected);
+            byte[] bytes = writer.toByteArray(tree);
+
+            List<String> read = new ArrayList<>();
+            describe(reader.read(new ByteArrayInputStream(bytes)), 0, read);
+            assertEquals(expected, read);
+            List<String> fromBuffer = new ArrayList<>();
+            describe(reader.read(ByteBuffer.wrap(bytes)), 0, fromBuffer);
+            assertEquals(expected, fromBuffer);
+
+            List<AbstractSyntax<Character>> subtrees = new ArrayList<>();
+            preorder(tree, subtrees);
+            assertEquals(expected, walk(TreeCursor.open(PDA, ByteBuffer.wrap(bytes), TokenCodec.characters()), subtrees));
+        }
+    }
+
+    @Test
+    void cursorStartsAtTheBufferPosition() throws IOException {
+        AbstractSyntax<Character> tree = PDA.run(expression(new Random(35), 3));
+        byte[] bytes = new TreeWriter<>(PDA, TokenCodec.characters()).toByteArray(tree);
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 7);
+        buffer.position(7);
+        buffer.put(bytes).position(7);
+        TreeCursor<Character> cursor = TreeCursor.open(PDA, buffer, TokenCodec.characters());
+        assertEquals(tree, cursor.materialize());
+        assertEquals(7, buffer.position());
+        assertFalse(cursor.parent());
+        assertFalse(cursor.nextSibling());
+    }
+
+    @Test
+    void sharedSubtrees() throws IOException {
+        List<Character> tokens = "(0+0)*(0+0)+(0+0)*(0+0)".chars().mapToObj(c -> (char) c).toList();
+        AbstractSyntax<Character> shared = PDA.run(tokens.iterator(), new TreeInterner<>());
+        byte[] bytes = new TreeWriter<>(PDA, TokenCodec.characters()).toByteArray(shared);
+        assertEquals(PDA.run(tokens), new TreeReader<>(PDA, TokenCodec.characters()).read(new ByteArrayInputStream(bytes)));
+        assertEquals(PDA.run(tokens), new TreeReader<>(PDA, TokenCodec.characters(), new TreeInterner<>()).read(ByteBuffer.wrap(bytes)));
+    }
+
+    @Test
+    void rejectsOtherInput() {
+        byte[] bytes = new TreeWriter<>(PDA, TokenCodec.characters()).toByteArray(PDA.run(expression(new Random(35), 3)));
+        var other = new ParserGenerator<>(Main.TE(), 1, 0).build();
+        assertThrows(IllegalArgumentException.class, () -> new TreeReader<>(other, TokenCodec.characters()).read(ByteBuffer.wrap(bytes)));
+        assertThrows(IllegalArgumentException.class, () -> TreeCursor.open(other, ByteBuffer.wrap(bytes), TokenCodec.characters()));
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 1);
+        TreeReader<Character> reader = new TreeReader<>(PDA, TokenCodec.characters());
+        assertThrows(IOException.class, () -> reader.read(new ByteArrayInputStream(truncated)));
+        assertThrows(IOException.class, () -> reader.read(ByteBuffer.wrap(truncated)));
+        bytes[0]++;
+        assertThrows(IOException.class, () -> reader.read(ByteBuffer.wrap(bytes)));
+    }
+}